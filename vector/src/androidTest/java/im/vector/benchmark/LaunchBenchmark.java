@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.benchmark;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.test.InstrumentationTestCase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.matrix.androidsdk.HomeserverConnectionConfig;
+import org.matrix.androidsdk.MXDataHandler;
+import org.matrix.androidsdk.data.MXFileStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import im.vector.Matrix;
+import im.vector.activity.LoginActivity;
+import im.vector.activity.VectorHomeActivity;
+import im.vector.services.EventStreamService;
+import im.vector.util.LaunchTimings;
+
+/**
+ * Launch benchmark with synthetic accounts of 10, 1000 and 5000 rooms.
+ * The account is stored in a file store and served by a local home server (empty incremental syncs),
+ * then the launcher activity is started until the home screen is drawn. LaunchTimings records each launch.
+ *
+ * The instrumentation runs in the application process, so a cold launch is simulated : the sessions are
+ * released and recreated from the stored account, i.e the process creation itself is not measured.
+ * A warm launch restarts the launcher activity with the loaded sessions.
+ *
+ * The benchmark is skipped when the device has a real account, because the launches log out the stored accounts.
+ * The launches are logged, reported as an instrumentation status and written as a JSON array
+ * in the launch_benchmark.json file of the application files directory.
+ */
+public class LaunchBenchmark extends InstrumentationTestCase {
+    private static final String LOG_TAG = "LaunchBenchmark";
+
+    // the benchmarked rooms counts
+    private static final int[] ROOMS_COUNTS = {10, 1000, 5000};
+    // the launches count per type and per rooms count
+    private static final int LAUNCHES_COUNT = 3;
+
+    // the max duration of a launch
+    private static final long LAUNCH_TIMEOUT_MS = 120 * 1000;
+    // the max duration of a store save
+    private static final long STORE_SAVE_TIMEOUT_MS = 120 * 1000;
+    private static final long POLLING_DELAY_MS = 250;
+
+    private static final String RESULTS_FILE_NAME = "launch_benchmark.json";
+
+    private LocalHomeServer mHomeServer;
+    private HomeserverConnectionConfig mHsConfig;
+    private Context mContext;
+
+    // true when the device has a real account, which must not be logged out
+    private boolean mHasRealAccounts;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mContext = getInstrumentation().getTargetContext().getApplicationContext();
+        mHasRealAccounts = hasRealAccounts();
+
+        if (mHasRealAccounts) {
+            return;
+        }
+
+        mHomeServer = new LocalHomeServer();
+        mHomeServer.start();
+        mHsConfig = SyntheticAccount.createHomeserverConfig(mHomeServer.getUrl());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (!mHasRealAccounts) {
+            releaseAccount();
+            mHomeServer.stop();
+        }
+
+        super.tearDown();
+    }
+
+    /**
+     * Measure the cold and warm launches at each account size.
+     * @throws Exception on failure
+     */
+    public void testLaunches() throws Exception {
+        if (mHasRealAccounts) {
+            Log.e(LOG_TAG, "## testLaunches() : skipped because the device has a real account");
+            return;
+        }
+
+        JSONArray results = new JSONArray();
+
+        for (int roomsCount : ROOMS_COUNTS) {
+            for (int i = 0; i < LAUNCHES_COUNT; i++) {
+                // the account is stored again because the warm launches update it
+                releaseAccount();
+                storeAccount(roomsCount);
+
+                LaunchTimings.onApplicationCreate();
+                results.put(launch(roomsCount));
+            }
+
+            for (int i = 0; i < LAUNCHES_COUNT; i++) {
+                results.put(launch(roomsCount));
+            }
+        }
+
+        String report = results.toString();
+        Log.d(LOG_TAG, "## testLaunches() : " + report);
+
+        FileOutputStream stream = new FileOutputStream(new File(mContext.getFilesDir(), RESULTS_FILE_NAME));
+
+        try {
+            stream.write(report.getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+
+        Bundle status = new Bundle();
+        status.putString(LOG_TAG, report);
+        getInstrumentation().sendStatus(0, status);
+    }
+
+    /**
+     * Tell if the device has an account which has not been stored by the benchmark.
+     * @return true if there is a real account
+     */
+    private boolean hasRealAccounts() {
+        for (HomeserverConnectionConfig config : Matrix.getInstance(mContext).getLoginStorage().getCredentialsList()) {
+            if ((null == config.getCredentials()) || !TextUtils.equals(config.getCredentials().userId, SyntheticAccount.USER_ID)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Log out the current accounts, the stores are deleted.
+     * There is only the synthetic account (see hasRealAccounts).
+     */
+    private void releaseAccount() {
+        mContext.stopService(new Intent(mContext, EventStreamService.class));
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Matrix.getInstance(mContext).clearSessions(mContext, true);
+            }
+        });
+    }
+
+    /**
+     * Store a synthetic account, as it would be after a previous run of the application.
+     * @param roomsCount the rooms count
+     * @throws Exception on failure
+     */
+    private void storeAccount(int roomsCount) throws Exception {
+        MXFileStore store = new MXFileStore(mHsConfig, mContext);
+        store.open();
+
+        long deadline = System.currentTimeMillis() + STORE_SAVE_TIMEOUT_MS;
+
+        while (!store.isReady()) {
+            assertTrue("the store is not opened", System.currentTimeMillis() < deadline);
+            Thread.sleep(POLLING_DELAY_MS);
+        }
+
+        SyntheticAccount.fillStore(store, new MXDataHandler(store, mHsConfig.getCredentials(), null), roomsCount);
+        // an incremental sync is triggered at launch
+        store.setEventStreamToken("s0");
+        store.commit();
+
+        // the store is saved in background : wait until its files are written
+        long diskUsage = -1;
+
+        while (diskUsage != store.diskUsage()) {
+            assertTrue("the store is not saved", System.currentTimeMillis() < deadline);
+            diskUsage = store.diskUsage();
+            Thread.sleep(POLLING_DELAY_MS * 4);
+        }
+
+        store.close();
+
+        Matrix.getInstance(mContext).getLoginStorage().addCredentials(mHsConfig);
+    }
+
+    /**
+     * Start the launcher activity and wait until the home screen is drawn.
+     * @param roomsCount the rooms count
+     * @return the launch description
+     * @throws Exception on failure
+     */
+    private JSONObject launch(int roomsCount) throws Exception {
+        Instrumentation.ActivityMonitor homeMonitor = getInstrumentation().addMonitor(VectorHomeActivity.class.getName(), null, false);
+        String previousResult = LaunchTimings.getLastResult();
+
+        Intent intent = new Intent(mContext, LoginActivity.class);
+        intent.setAction(Intent.ACTION_MAIN);
+        intent.addCategory(Intent.CATEGORY_LAUNCHER);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        mContext.startActivity(intent);
+
+        long deadline = System.currentTimeMillis() + LAUNCH_TIMEOUT_MS;
+        String result = LaunchTimings.getLastResult();
+
+        while (TextUtils.equals(previousResult, result)) {
+            assertTrue("the launch is not completed", System.currentTimeMillis() < deadline);
+            Thread.sleep(POLLING_DELAY_MS);
+            result = LaunchTimings.getLastResult();
+        }
+
+        // close the home screen before the next launch
+        Activity homeActivity = homeMonitor.waitForActivityWithTimeout(LAUNCH_TIMEOUT_MS);
+        getInstrumentation().removeMonitor(homeMonitor);
+
+        if (null != homeActivity) {
+            homeActivity.finish();
+        }
+
+        getInstrumentation().waitForIdleSync();
+
+        JSONObject launch = new JSONObject(result);
+        launch.put("rooms_count", roomsCount);
+
+        Log.d(LOG_TAG, "## launch() : " + launch);
+
+        return launch;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.benchmark;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Minimal home server answering the requests of a synthetic account, so the launches are measured
+ * without network latency.
+ * The syncs are empty incremental syncs : the launch only depends on the stored rooms.
+ * The other requests get an empty JSON object.
+ */
+public class LocalHomeServer {
+    private static final String LOG_TAG = "LocalHomeServer";
+
+    // the delay of the long polling syncs (i.e the syncs after the first one)
+    private static final long LONG_POLLING_DELAY_MS = 1000;
+
+    private static final String EMPTY_PUSH_RULES = "{\"global\":{\"content\":[],\"override\":[],\"room\":[],\"sender\":[],\"underride\":[]}}";
+
+    private ServerSocket mServerSocket = null;
+    private Thread mAcceptThread = null;
+
+    // the sync counter, used to build the next batch tokens
+    private int mSyncsCount = 0;
+
+    /**
+     * Start to listen on a loopback port.
+     * @throws Exception if the socket cannot be opened
+     */
+    public void start() throws Exception {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        final Socket socket = mServerSocket.accept();
+
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                handleConnection(socket);
+                            }
+                        }, LOG_TAG + "_connection").start();
+                    } catch (Exception e) {
+                        if (!mServerSocket.isClosed()) {
+                            Log.e(LOG_TAG, "## start() : accept failed " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }, LOG_TAG);
+
+        mAcceptThread.start();
+    }
+
+    /**
+     * Stop listening.
+     */
+    public void stop() {
+        try {
+            if (null != mServerSocket) {
+                mServerSocket.close();
+            }
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## stop() failed " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the home server url
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Answer a request.
+     * Each connection serves a single request.
+     * @param socket the connection socket
+     */
+    private void handleConnection(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String requestLine = reader.readLine();
+
+            if (null == requestLine) {
+                return;
+            }
+
+            // skip the headers (the request bodies are ignored)
+            String line;
+            while ((null != (line = reader.readLine())) && (0 != line.length())) {
+            }
+
+            String[] parts = requestLine.split(" ");
+            String path = (parts.length > 1) ? parts[1] : "";
+            String body;
+
+            if (path.startsWith("/_matrix/client/r0/sync")) {
+                int syncIndex;
+
+                synchronized (this) {
+                    syncIndex = ++mSyncsCount;
+                }
+
+                // the first sync of a launch is immediately answered, the next ones simulate the long polling
+                if (path.contains("timeout=0") || (1 == syncIndex)) {
+                    Log.d(LOG_TAG, "## handleConnection() : sync " + syncIndex);
+                } else {
+                    Thread.sleep(LONG_POLLING_DELAY_MS);
+                }
+
+                body = "{\"next_batch\":\"s" + syncIndex + "\",\"rooms\":{\"join\":{},\"invite\":{},\"leave\":{}},\"presence\":{\"events\":[]}}";
+            } else if (path.startsWith("/_matrix/client/r0/pushrules")) {
+                body = EMPTY_PUSH_RULES;
+            } else {
+                body = "{}";
+            }
+
+            byte[] bodyBytes = body.getBytes("UTF-8");
+
+            OutputStream stream = socket.getOutputStream();
+            stream.write(("HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: application/json\r\n" +
+                    "Content-Length: " + bodyBytes.length + "\r\n" +
+                    "Connection: close\r\n\r\n").getBytes("UTF-8"));
+            stream.write(bodyBytes);
+            stream.flush();
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## handleConnection() failed " + e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+}
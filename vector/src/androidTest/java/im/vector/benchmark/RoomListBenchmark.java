@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.benchmark;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.matrix.androidsdk.HomeserverConnectionConfig;
+import org.matrix.androidsdk.MXDataHandler;
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.MXMemoryStore;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomTag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import im.vector.RoomDisplayNamesCache;
+import im.vector.RoomSearchIndex;
+import im.vector.RoomTagsIndex;
+import im.vector.SessionEventsDispatcher;
+
+/**
+ * Micro benchmarks of the room list algorithms.
+ * They are measured with synthetic accounts (see SyntheticAccount) and the per session tags and search indexes.
+ * The measures are run in the UI thread, where the rooms list uses these algorithms.
+ *
+ * The reports are logged and reported as instrumentation statuses.
+ */
+public class RoomListBenchmark extends InstrumentationTestCase {
+    private static final String LOG_TAG = "RoomListBenchmark";
+
+    private static final String HOME_SERVER_URL = "http://localhost";
+
+    // the benchmarked rooms counts
+    private static final int[] ROOMS_COUNTS = {100, 1000, 5000, 10000};
+    // the number of runs per measure
+    private static final int RUNS_COUNT = 5;
+
+    private Context mContext;
+
+    /**
+     * A measured algorithm.
+     */
+    private interface Measure {
+        void run();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mContext = getInstrumentation().getTargetContext().getApplicationContext();
+    }
+
+    /**
+     * Run a measure several times in the UI thread.
+     * @param measure the measure
+     * @return the median duration in ms
+     */
+    private float median(final Measure measure) {
+        final long[] durations = new long[RUNS_COUNT];
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < RUNS_COUNT; i++) {
+                    long startTime = System.nanoTime();
+                    measure.run();
+                    durations[i] = System.nanoTime() - startTime;
+                }
+            }
+        });
+
+        Arrays.sort(durations);
+        return durations[RUNS_COUNT / 2] / 1000000.0f;
+    }
+
+    /**
+     * Report a benchmark.
+     * @param report the benchmark report
+     */
+    private void sendReport(String report) {
+        Bundle status = new Bundle();
+        status.putString(LOG_TAG, report);
+        getInstrumentation().sendStatus(0, status);
+    }
+
+    /**
+     * Create a session with a memory store filled with synthetic rooms.
+     * @param roomsCount the rooms count
+     * @return the session
+     */
+    private MXSession createSession(int roomsCount) {
+        HomeserverConnectionConfig hsConfig = SyntheticAccount.createHomeserverConfig(HOME_SERVER_URL);
+        MXMemoryStore store = new MXMemoryStore(hsConfig.getCredentials());
+        MXDataHandler dataHandler = new MXDataHandler(store, hsConfig.getCredentials(), null);
+
+        SyntheticAccount.fillStore(store, dataHandler, roomsCount);
+
+        return new MXSession(hsConfig, dataHandler, mContext);
+    }
+
+    /**
+     * Release a synthetic session and its per session instances.
+     * @param session the session
+     */
+    private void releaseSession(final MXSession session) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RoomTagsIndex.removeInstance(session);
+                RoomDisplayNamesCache.removeInstance(session);
+                RoomSearchIndex.removeInstance(session);
+                SessionEventsDispatcher.removeInstance(session);
+                session.clear(mContext);
+            }
+        });
+    }
+
+    /**
+     * Compare the tags grouping by list lookups (indexOf) with the tags index grouping.
+     */
+    public void testTagsGrouping() {
+        String report = "Tags grouping, synthetic account (median of " + RUNS_COUNT + " runs)\n";
+
+        for (int roomsCount : ROOMS_COUNTS) {
+            final MXSession session = createSession(roomsCount);
+
+            try {
+                final List<String> roomIds = new ArrayList<>();
+
+                for (Room room : session.getDataHandler().getStore().getRooms()) {
+                    roomIds.add(room.getRoomId());
+                }
+
+                final List<String> favouriteRoomIds = session.roomIdsWithTag(RoomTag.ROOM_TAG_FAVOURITE);
+                final List<String> lowPriorityRoomIds = session.roomIdsWithTag(RoomTag.ROOM_TAG_LOW_PRIORITY);
+                final RoomTagsIndex[] index = {null};
+
+                // the index is built from the store before the measures
+                getInstrumentation().runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        index[0] = RoomTagsIndex.getInstance(session);
+                        index[0].getTag(roomIds.get(0));
+                    }
+                });
+
+                // the previous algorithm : the tagged lists are padded with dummy items
+                float listLookupsMs = median(new Measure() {
+                    @Override
+                    public void run() {
+                        String dummy = "";
+                        ArrayList<String> favourites = new ArrayList<>(Collections.nCopies(favouriteRoomIds.size(), dummy));
+                        ArrayList<String> lowPriorities = new ArrayList<>(Collections.nCopies(lowPriorityRoomIds.size(), dummy));
+                        ArrayList<String> noTags = new ArrayList<>();
+
+                        for (String roomId : roomIds) {
+                            int pos;
+
+                            if ((pos = favouriteRoomIds.indexOf(roomId)) >= 0) {
+                                favourites.set(pos, roomId);
+                            } else if ((pos = lowPriorityRoomIds.indexOf(roomId)) >= 0) {
+                                lowPriorities.set(pos, roomId);
+                            } else {
+                                noTags.add(roomId);
+                            }
+                        }
+
+                        while (favourites.remove(dummy));
+                        while (lowPriorities.remove(dummy));
+                    }
+                });
+
+                // the tags index algorithm : a single pass then the tagged lists are sorted
+                float indexMs = median(new Measure() {
+                    @Override
+                    public void run() {
+                        ArrayList<String> favourites = new ArrayList<>();
+                        ArrayList<String> lowPriorities = new ArrayList<>();
+                        ArrayList<String> noTags = new ArrayList<>();
+
+                        for (String roomId : roomIds) {
+                            RoomTagsIndex.TagEntry tagEntry = index[0].getTag(roomId);
+
+                            if (null == tagEntry) {
+                                noTags.add(roomId);
+                            } else if (RoomTag.ROOM_TAG_FAVOURITE.equals(tagEntry.mTag)) {
+                                favourites.add(roomId);
+                            } else {
+                                lowPriorities.add(roomId);
+                            }
+                        }
+
+                        Comparator<String> comparator = new Comparator<String>() {
+                            @Override
+                            public int compare(String roomId1, String roomId2) {
+                                return Double.compare(index[0].getTag(roomId1).mOrder, index[0].getTag(roomId2).mOrder);
+                            }
+                        };
+
+                        Collections.sort(favourites, comparator);
+                        Collections.sort(lowPriorities, comparator);
+                    }
+                });
+
+                report += roomsCount + " rooms : list lookups " + String.format("%.2f", listLookupsMs) + " ms, tags index " + String.format("%.2f", indexMs) + " ms\n";
+            } finally {
+                releaseSession(session);
+            }
+        }
+
+        Log.d(LOG_TAG, "## testTagsGrouping() : " + report);
+        sendReport(report);
+    }
+
+    // the benchmarked search patterns
+    private static final String[] SEARCH_PATTERNS = {"m", "de", "caf", "general", "team 4", "synapse ops", "unknown room"};
+
+    /**
+     * Compare the rooms search by scanning the room display names with the search index (names, aliases and topics).
+     */
+    public void testRoomsSearch() {
+        String report = "Rooms search, synthetic account, " + SEARCH_PATTERNS.length + " patterns (median of " + RUNS_COUNT + " runs)\n";
+
+        for (int roomsCount : ROOMS_COUNTS) {
+            final MXSession session = createSession(roomsCount);
+
+            try {
+                final List<String> roomIds = new ArrayList<>();
+                final List<String> roomNames = new ArrayList<>();
+                final RoomSearchIndex[] index = {null};
+                final long[] indexBuildMs = {0};
+
+                // the display names are computed and the index is built from the store before the measures
+                getInstrumentation().runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        RoomDisplayNamesCache namesCache = RoomDisplayNamesCache.getInstance(session);
+
+                        for (Room room : session.getDataHandler().getStore().getRooms()) {
+                            roomIds.add(room.getRoomId());
+                            roomNames.add(namesCache.getDisplayName(mContext, room));
+                        }
+
+                        index[0] = RoomSearchIndex.getInstance(session);
+
+                        long startTime = System.nanoTime();
+                        index[0].search(SEARCH_PATTERNS[0]);
+                        indexBuildMs[0] = (System.nanoTime() - startTime) / 1000000;
+                    }
+                });
+
+                // the previous algorithm : the room display names are lowercased and scanned
+                float scanMs = median(new Measure() {
+                    @Override
+                    public void run() {
+                        for (String pattern : SEARCH_PATTERNS) {
+                            HashSet<String> matchedRoomIds = new HashSet<>();
+
+                            for (int i = 0; i < roomNames.size(); i++) {
+                                if (roomNames.get(i).toLowerCase().indexOf(pattern) >= 0) {
+                                    matchedRoomIds.add(roomIds.get(i));
+                                }
+                            }
+                        }
+                    }
+                });
+
+                // the session search index
+                float indexMs = median(new Measure() {
+                    @Override
+                    public void run() {
+                        for (String pattern : SEARCH_PATTERNS) {
+                            index[0].search(pattern);
+                        }
+                    }
+                });
+
+                report += roomsCount + " rooms : names scan " + String.format("%.2f", scanMs) + " ms, search index " + String.format("%.2f", indexMs) + " ms (built in " + indexBuildMs[0] + " ms)\n";
+            } finally {
+                releaseSession(session);
+            }
+        }
+
+        Log.d(LOG_TAG, "## testRoomsSearch() : " + report);
+        sendReport(report);
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.benchmark;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.widget.FrameLayout;
+
+import org.matrix.androidsdk.HomeserverConnectionConfig;
+import org.matrix.androidsdk.MXDataHandler;
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.MXMemoryStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import im.vector.R;
+import im.vector.RoomDisplayNamesCache;
+import im.vector.RoomSearchIndex;
+import im.vector.RoomTagsIndex;
+import im.vector.SessionEventsDispatcher;
+import im.vector.adapters.VectorRoomSummaryAdapter;
+
+/**
+ * Benchmark of the rooms list adapter with synthetic accounts of 500, 1000, 2000 and 5000 rooms.
+ * The accounts are stored in memory stores (see SyntheticAccount).
+ * The adapter is driven through its public API, so a refresh is measured from the request until the
+ * refreshed list is displayed (the computation is scheduled at the next frame then done in background).
+ *
+ * The durations are reported as percentiles: the report is the regression baseline for the rooms list work.
+ * It is logged and reported as an instrumentation status.
+ */
+public class RoomSummaryAdapterBenchmark extends InstrumentationTestCase {
+    private static final String LOG_TAG = "RoomSummaryAdapterBench";
+
+    private static final String HOME_SERVER_URL = "http://localhost";
+
+    // the benchmarked rooms counts
+    private static final int[] ROOMS_COUNTS = {500, 1000, 2000, 5000};
+    // the number of runs per refresh measure
+    private static final int RUNS_COUNT = 20;
+    // the number of bound rows per measure
+    private static final int BOUND_ROWS_COUNT = 200;
+
+    // the max duration of a refresh
+    private static final long REFRESH_TIMEOUT_MS = 60 * 1000;
+
+    // the benchmarked search patterns (typed letter by letter)
+    private static final String[] SEARCH_PATTERNS = {"s", "sy", "syn", "syna", "synap", "synaps", "synapse"};
+
+    private Context mContext;
+
+    // released when the adapter displays a refreshed list
+    private volatile CountDownLatch mRefreshLatch;
+
+    private final VectorRoomSummaryAdapter.RoomEventListener mAdapterListener = new VectorRoomSummaryAdapter.RoomEventListener() {
+        @Override
+        public void onPreviewRoom(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void onRejectInvitation(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void onToggleRoomNotifications(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void moveToFavorites(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void moveToConversations(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void moveToLowPriority(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void onLeaveRoom(MXSession session, String roomId) {
+        }
+
+        @Override
+        public void onGroupCollapsedNotif(int aGroupPosition) {
+        }
+
+        @Override
+        public void onGroupExpandedNotif(int aGroupPosition) {
+        }
+
+        @Override
+        public void onSummariesListRefreshed() {
+            if (null != mRefreshLatch) {
+                mRefreshLatch.countDown();
+            }
+        }
+    };
+
+    /**
+     * A measured request, it is called in the UI thread.
+     */
+    private interface Measure {
+        void run();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mContext = getInstrumentation().getTargetContext().getApplicationContext();
+    }
+
+    /**
+     * Measure the adapter at each account size.
+     * @throws Exception on failure
+     */
+    public void testAdapter() throws Exception {
+        String report = "Rooms list adapter, synthetic account (p50 / p90 / p99 ms)\n";
+
+        for (int roomsCount : ROOMS_COUNTS) {
+            MXSession session = createSession(roomsCount);
+
+            try {
+                report += measureAdapter(session, roomsCount);
+            } finally {
+                releaseSession(session);
+            }
+        }
+
+        Log.d(LOG_TAG, "## testAdapter() : " + report);
+
+        Bundle status = new Bundle();
+        status.putString(LOG_TAG, report);
+        getInstrumentation().sendStatus(0, status);
+    }
+
+    /**
+     * Create a session with a memory store filled with synthetic rooms.
+     * @param roomsCount the rooms count
+     * @return the session
+     */
+    private MXSession createSession(int roomsCount) {
+        HomeserverConnectionConfig hsConfig = SyntheticAccount.createHomeserverConfig(HOME_SERVER_URL);
+        MXMemoryStore store = new MXMemoryStore(hsConfig.getCredentials());
+        MXDataHandler dataHandler = new MXDataHandler(store, hsConfig.getCredentials(), null);
+
+        SyntheticAccount.fillStore(store, dataHandler, roomsCount);
+
+        return new MXSession(hsConfig, dataHandler, mContext);
+    }
+
+    /**
+     * Release a synthetic session and its per session instances.
+     * @param session the session
+     */
+    private void releaseSession(final MXSession session) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RoomTagsIndex.removeInstance(session);
+                RoomDisplayNamesCache.removeInstance(session);
+                RoomSearchIndex.removeInstance(session);
+                SessionEventsDispatcher.removeInstance(session);
+                session.clear(mContext);
+            }
+        });
+    }
+
+    /**
+     * Create an adapter in the UI thread.
+     * @param session the session
+     * @param isSearchMode true for the search adapter
+     * @return the adapter
+     */
+    private VectorRoomSummaryAdapter createAdapter(final MXSession session, final boolean isSearchMode) {
+        final VectorRoomSummaryAdapter[] adapter = {null};
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter[0] = new VectorRoomSummaryAdapter(mContext, session, isSearchMode, !isSearchMode, R.layout.adapter_item_vector_recent_room, R.layout.adapter_item_vector_recent_header, mAdapterListener);
+            }
+        });
+
+        return adapter[0];
+    }
+
+    /**
+     * Measure refresh requests until the refreshed lists are displayed.
+     * @param measure the refresh request
+     * @param runsCount the runs count
+     * @return the durations in ns
+     * @throws Exception on failure
+     */
+    private long[] measureRefreshes(final Measure measure, int runsCount) throws Exception {
+        long[] durations = new long[runsCount];
+
+        for (int i = 0; i < runsCount; i++) {
+            mRefreshLatch = new CountDownLatch(1);
+
+            long startTime = System.nanoTime();
+
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    measure.run();
+                }
+            });
+
+            assertTrue("the list is not refreshed", mRefreshLatch.await(REFRESH_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            durations[i] = System.nanoTime() - startTime;
+        }
+
+        mRefreshLatch = null;
+
+        return durations;
+    }
+
+    /**
+     * Measure the adapter with a synthetic session.
+     * @param session the synthetic session
+     * @param roomsCount the rooms count
+     * @return the report lines
+     * @throws Exception on failure
+     */
+    private String measureAdapter(MXSession session, int roomsCount) throws Exception {
+        final VectorRoomSummaryAdapter recentsAdapter = createAdapter(session, false);
+        final VectorRoomSummaryAdapter searchAdapter = createAdapter(session, true);
+
+        // full refresh : the sections are sorted and the previews are rendered
+        long[] refreshDurations = measureRefreshes(new Measure() {
+            @Override
+            public void run() {
+                recentsAdapter.notifySummariesChanged();
+            }
+        }, RUNS_COUNT);
+
+        // a letter is typed at each call
+        final int[] patternIndex = {0};
+
+        long[] searchDurations = measureRefreshes(new Measure() {
+            @Override
+            public void run() {
+                searchAdapter.setSearchPattern(SEARCH_PATTERNS[patternIndex[0]++ % SEARCH_PATTERNS.length]);
+            }
+        }, RUNS_COUNT * SEARCH_PATTERNS.length);
+
+        // rows binding with a recycled view holder, the previews have been rendered by the refreshes
+        final long[][] bindDurations = {null};
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameLayout parent = new FrameLayout(mContext);
+                ArrayList<Integer> rowPositions = new ArrayList<>();
+
+                for (int position = 0; (position < recentsAdapter.getItemCount()) && (rowPositions.size() < BOUND_ROWS_COUNT); position++) {
+                    int groupPosition = recentsAdapter.getGroupPositionAt(position);
+
+                    if ((recentsAdapter.getChildPositionAt(position) >= 0) &&
+                            !recentsAdapter.isDirectoryGroupPosition(groupPosition) && !recentsAdapter.isRoomByIdGroupPosition(groupPosition)) {
+                        rowPositions.add(position);
+                    }
+                }
+
+                RecyclerView.ViewHolder viewHolder = null;
+                bindDurations[0] = new long[rowPositions.size()];
+
+                for (int i = 0; i < rowPositions.size(); i++) {
+                    int position = rowPositions.get(i);
+
+                    if (null == viewHolder) {
+                        viewHolder = recentsAdapter.onCreateViewHolder(parent, recentsAdapter.getItemViewType(position));
+                    }
+
+                    long startTime = System.nanoTime();
+                    recentsAdapter.onBindViewHolder(viewHolder, position);
+                    bindDurations[0][i] = System.nanoTime() - startTime;
+                }
+            }
+        });
+
+        return roomsCount + " rooms :\n" +
+                "  notifySummariesChanged (full refresh) " + percentiles(refreshDurations) + "\n" +
+                "  setSearchPattern (search refresh) " + percentiles(searchDurations) + "\n" +
+                "  onBindViewHolder (row bind) " + percentiles(bindDurations[0]) + "\n";
+    }
+
+    /**
+     * Describe the p50, p90 and p99 of some durations.
+     * @param durations the durations in ns
+     * @return the percentiles description in ms
+     */
+    private static String percentiles(long[] durations) {
+        if (0 == durations.length) {
+            return "-";
+        }
+
+        long[] sortedDurations = Arrays.copyOf(durations, durations.length);
+        Arrays.sort(sortedDurations);
+
+        String text = "";
+
+        for (int percentile : new int[]{50, 90, 99}) {
+            // nearest rank
+            int index = Math.max(0, (int) Math.ceil(percentile * sortedDurations.length / 100.0) - 1);
+            text += ((0 != text.length()) ? " / " : "") + String.format("%.2f", sortedDurations[index] / 1000000.0f);
+        }
+
+        return text;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.benchmark;
+
+import android.net.Uri;
+
+import com.google.gson.JsonObject;
+
+import org.matrix.androidsdk.HomeserverConnectionConfig;
+import org.matrix.androidsdk.MXDataHandler;
+import org.matrix.androidsdk.data.IMXStore;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomAccountData;
+import org.matrix.androidsdk.data.RoomSummary;
+import org.matrix.androidsdk.data.RoomTag;
+import org.matrix.androidsdk.rest.model.Event;
+import org.matrix.androidsdk.rest.model.RoomMember;
+import org.matrix.androidsdk.rest.model.login.Credentials;
+
+import java.util.Arrays;
+
+/**
+ * Synthetic account used by the benchmarks.
+ * A store is filled with synthetic rooms (names, members, tags, invites, unread counts and latest messages).
+ * 2% of the rooms are invitations, 10% are favourites and 10% are low priority rooms.
+ * 20% of the rooms have no name (their display name is computed from their members).
+ */
+public class SyntheticAccount {
+    // the synthetic user
+    public static final String USER_ID = "@benchmark:localhost";
+
+    // the words used to build the synthetic room names
+    private static final String[] NAME_WORDS = {"Matrix", "Vector", "Café", "Général", "Android", "iOS", "Riot", "Synapse", "Dev", "Team", "Ops", "Crypto", "Design", "Random", "Über"};
+
+    /**
+     * Build the synthetic account home server config.
+     * @param homeServerUrl the home server url
+     * @return the home server config
+     */
+    public static HomeserverConnectionConfig createHomeserverConfig(String homeServerUrl) {
+        Credentials credentials = new Credentials();
+        credentials.userId = USER_ID;
+        credentials.homeServer = homeServerUrl;
+        credentials.accessToken = "benchmark";
+
+        return new HomeserverConnectionConfig(Uri.parse(homeServerUrl), credentials);
+    }
+
+    /**
+     * Fill a store with synthetic rooms.
+     * The rooms are flagged to be saved, so a file store must be committed after this call.
+     * @param store the store
+     * @param dataHandler the data handler of the rooms
+     * @param roomsCount the rooms count
+     */
+    public static void fillStore(IMXStore store, MXDataHandler dataHandler, int roomsCount) {
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < roomsCount; i++) {
+            String roomId = "!room" + i + ":localhost";
+            String otherUserId = "@user" + i + ":localhost";
+            boolean isInvited = (i % 50) == 0;
+
+            Room room = new Room();
+            room.init(roomId, dataHandler);
+
+            // the members
+            RoomMember myMember = new RoomMember();
+            myMember.setUserId(USER_ID);
+            myMember.membership = isInvited ? RoomMember.MEMBERSHIP_INVITE : RoomMember.MEMBERSHIP_JOIN;
+            room.getLiveState().setMember(USER_ID, myMember);
+
+            RoomMember otherMember = new RoomMember();
+            otherMember.setUserId(otherUserId);
+            otherMember.displayname = NAME_WORDS[(i / 7) % NAME_WORDS.length] + " " + i;
+            otherMember.membership = RoomMember.MEMBERSHIP_JOIN;
+            room.getLiveState().setMember(otherUserId, otherMember);
+
+            // the state
+            if ((i % 5) != 4) {
+                room.getLiveState().name = NAME_WORDS[i % NAME_WORDS.length] + " " + NAME_WORDS[(i / NAME_WORDS.length) % NAME_WORDS.length] + " " + i;
+            }
+            room.getLiveState().alias = "#room" + i + ":localhost";
+            room.getLiveState().aliases = Arrays.asList(room.getLiveState().alias);
+            room.getLiveState().topic = "The topic of the room " + i;
+
+            store.storeRoom(room);
+            store.storeLiveStateForRoom(roomId);
+
+            // the tags
+            if (!isInvited && (((i % 10) == 1) || ((i % 10) == 2))) {
+                JsonObject order = new JsonObject();
+                order.addProperty("order", (double) i / roomsCount);
+                JsonObject tags = new JsonObject();
+                tags.add(((i % 10) == 1) ? RoomTag.ROOM_TAG_FAVOURITE : RoomTag.ROOM_TAG_LOW_PRIORITY, order);
+                JsonObject content = new JsonObject();
+                content.add("tags", tags);
+
+                Event tagEvent = new Event();
+                tagEvent.type = Event.EVENT_TYPE_TAGS;
+                tagEvent.content = content;
+                tagEvent.roomId = roomId;
+
+                RoomAccountData accountData = new RoomAccountData();
+                accountData.handleEvent(tagEvent);
+                room.setAccountData(accountData);
+                store.storeAccountData(roomId, accountData);
+            }
+
+            // the latest message
+            JsonObject messageContent = new JsonObject();
+            messageContent.addProperty("msgtype", "m.text");
+            messageContent.addProperty("body", "The message " + i + " of " + otherMember.displayname);
+
+            Event event = new Event();
+            event.type = Event.EVENT_TYPE_MESSAGE;
+            event.content = messageContent;
+            event.eventId = "$event" + i + ":localhost";
+            event.roomId = roomId;
+            event.sender = otherUserId;
+            event.userId = otherUserId;
+            event.originServerTs = now - (i * 60 * 1000L);
+
+            store.storeLiveRoomEvent(event);
+            RoomSummary summary = store.storeSummary(roomId, event, room.getLiveState(), USER_ID);
+
+            if (isInvited) {
+                summary.setInviterUserId(otherUserId);
+            }
+
+            // the unread counts
+            if ((i % 3) == 0) {
+                summary.setUnreadEventsCount(1 + (i % 20));
+            }
+
+            if ((i % 20) == 0) {
+                summary.setHighlighted(true);
+            }
+
+            store.flushSummary(summary);
+        }
+    }
+}
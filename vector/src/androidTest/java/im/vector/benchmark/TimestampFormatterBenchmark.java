@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.benchmark;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+
+import im.vector.adapters.AdapterUtils;
+import im.vector.adapters.TimestampFormatter;
+
+/**
+ * Compare the timestamps formatting of each row (AdapterUtils.tsToString) with a TimestampFormatter.
+ * The rows are bound {@link #BINDINGS_COUNT} times, their timestamps are spread over the last 30 days.
+ * The formatter is a private instance, so the texts cached for the displayed lists are not evicted.
+ *
+ * The allocated bytes are read from the ART runtime statistics (API 23+), they include the other threads allocations.
+ * The report is logged and reported as an instrumentation status.
+ */
+public class TimestampFormatterBenchmark extends InstrumentationTestCase {
+    private static final String LOG_TAG = "TimestampFormatterBench";
+
+    // the benchmarked rows counts
+    private static final int[] ROWS_COUNTS = {100, 1000, 5000, 10000};
+    // the number of runs per measure
+    private static final int RUNS_COUNT = 5;
+    // the number of list bindings per measure (i.e. scrolls)
+    private static final int BINDINGS_COUNT = 3;
+
+    // the runtime statistic of the allocated bytes since the process start
+    private static final String BYTES_ALLOCATED_STAT = "art.gc.bytes-allocated";
+
+    private Context mContext;
+
+    /**
+     * A measured formatting.
+     */
+    private interface Measure {
+        void run();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        mContext = getInstrumentation().getTargetContext().getApplicationContext();
+    }
+
+    /**
+     * Run a measure several times.
+     * @param measure the measure
+     * @return the median duration in ms
+     */
+    private static float median(Measure measure) {
+        long[] durations = new long[RUNS_COUNT];
+
+        for (int i = 0; i < RUNS_COUNT; i++) {
+            long startTime = System.nanoTime();
+            measure.run();
+            durations[i] = System.nanoTime() - startTime;
+        }
+
+        Arrays.sort(durations);
+        return durations[RUNS_COUNT / 2] / 1000000.0f;
+    }
+
+    /**
+     * @return the allocated bytes since the process start, -1 if it is not supported
+     */
+    private static long getAllocatedBytes() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String value = Debug.getRuntimeStat(BYTES_ALLOCATED_STAT);
+
+            if (null != value) {
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    Log.e(LOG_TAG, "## getAllocatedBytes() failed " + e.getMessage());
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Count the bytes allocated while running a measure.
+     * @param measure the measure
+     * @return the allocated kilobytes description
+     */
+    private static String countAllocations(Measure measure) {
+        long startBytes = getAllocatedBytes();
+        measure.run();
+        long endBytes = getAllocatedBytes();
+
+        if ((startBytes < 0) || (endBytes < 0)) {
+            return "-";
+        }
+
+        return ((endBytes - startBytes) / 1024) + " KB";
+    }
+
+    /**
+     * Measure the timestamps formatting at each rows count.
+     */
+    public void testTimestampsFormatting() {
+        String report = "Timestamps formatting, " + BINDINGS_COUNT + " bindings (allocations, median of " + RUNS_COUNT + " runs)\n";
+        long now = System.currentTimeMillis();
+
+        for (int rowsCount : ROWS_COUNTS) {
+            final long[] timestamps = new long[rowsCount];
+
+            for (int i = 0; i < rowsCount; i++) {
+                timestamps[i] = now - (i * 7919L * 1000L) % (30 * AdapterUtils.MS_IN_DAY);
+            }
+
+            Measure tsToStringMeasure = new Measure() {
+                @Override
+                public void run() {
+                    for (int binding = 0; binding < BINDINGS_COUNT; binding++) {
+                        for (long ts : timestamps) {
+                            AdapterUtils.tsToString(mContext, ts, false);
+                        }
+                    }
+                }
+            };
+
+            final TimestampFormatter formatter = new TimestampFormatter();
+
+            Measure formatterMeasure = new Measure() {
+                @Override
+                public void run() {
+                    for (int binding = 0; binding < BINDINGS_COUNT; binding++) {
+                        for (long ts : timestamps) {
+                            formatter.format(mContext, ts, TimestampFormatter.FORMAT_DATE_TIME);
+                        }
+                    }
+                }
+            };
+
+            String tsToStringAllocs = countAllocations(tsToStringMeasure);
+            float tsToStringMs = median(tsToStringMeasure);
+            String formatterAllocs = countAllocations(formatterMeasure);
+            float formatterMs = median(formatterMeasure);
+
+            report += rowsCount + " rows : tsToString " + tsToStringAllocs + " " + String.format("%.2f", tsToStringMs) + " ms, formatter " + formatterAllocs + " " + String.format("%.2f", formatterMs) + " ms\n";
+        }
+
+        Log.d(LOG_TAG, "## testTimestampsFormatting() : " + report);
+
+        Bundle status = new Bundle();
+        status.putString(LOG_TAG, report);
+        getInstrumentation().sendStatus(0, status);
+    }
+}
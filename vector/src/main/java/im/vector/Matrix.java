@@ -34,7 +34,6 @@ import org.matrix.androidsdk.call.MXCallsManager;
 import org.matrix.androidsdk.data.IMXStore;
 import org.matrix.androidsdk.data.MXFileStore;
 import org.matrix.androidsdk.data.MXMemoryStore;
-import org.matrix.androidsdk.data.Room;
 import org.matrix.androidsdk.data.RoomState;
 import org.matrix.androidsdk.db.MXLatestChatMessageCache;
 import org.matrix.androidsdk.db.MXMediasCache;
@@ -55,6 +54,8 @@ import im.vector.util.RageShake;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * Singleton to control access to the Matrix SDK and providing point of control for MXSessions.
@@ -78,6 +79,9 @@ public class Matrix {
     // GCM registration manager
     private GcmRegistrationManager mGcmRegistrationManager;
 
+    // the rooms with unread notifications, used to compute the badge when GCM is not used
+    private final UnreadRoomsTracker mUnreadRoomsTracker = new UnreadRoomsTracker();
+
     // list of store : some sessions or activities use tmp stores
     // provide an storage to exchange them
     private ArrayList<IMXStore> mTmpStores;
@@ -97,11 +101,30 @@ public class Matrix {
             VectorHomeActivity.mClearCacheRequired = true;
         }
 
-        private boolean mRefreshUnreadCounter = false;
+        // the rooms updated by the current events chunk
+        private final HashSet<String> mUpdatedRoomIds = new HashSet<>();
 
         @Override
         public void onLiveEvent(Event event, RoomState roomState) {
-            mRefreshUnreadCounter |=  Event.EVENT_TYPE_MESSAGE.equals(event.type) || Event.EVENT_TYPE_RECEIPT.equals(event.type);
+            // any live event (message, invitation, call, receipt...) can update the room notification counts
+            if (null != event.roomId) {
+                mUpdatedRoomIds.add(event.roomId);
+            }
+        }
+
+        @Override
+        public void onReceiptEvent(String roomId, List<String> senderIds) {
+            mUpdatedRoomIds.add(roomId);
+        }
+
+        @Override
+        public void onJoinRoom(String roomId) {
+            mUpdatedRoomIds.add(roomId);
+        }
+
+        @Override
+        public void onLeaveRoom(String roomId) {
+            mUpdatedRoomIds.add(roomId);
         }
 
         @Override
@@ -109,33 +132,34 @@ public class Matrix {
             // when the client does not use GCM
             // we need to compute the application badge values
 
-            if ((null != instance) && (null != instance.mMXSessions) && mRefreshUnreadCounter) {
+            if ((null != instance) && (null != instance.mMXSessions) && !mUpdatedRoomIds.isEmpty()) {
                 GcmRegistrationManager gcmMgr = instance.getSharedGcmRegistrationManager();
 
                 // check if the GCM is not available
                 if ((null != gcmMgr) && (!gcmMgr.useGCM() || !gcmMgr.hasPushKey())) {
-                    int unreadCount = 0;
+                    ArrayList<MXSession> sessions;
+
+                    synchronized (LOG_TAG) {
+                        sessions = new ArrayList<>(instance.mMXSessions);
+                    }
 
-                    for(MXSession session :  instance.mMXSessions) {
+                    // only the updated rooms are checked
+                    for(MXSession session : sessions) {
                         if (session.isAlive()) {
-                            Collection<Room> rooms = session.getDataHandler().getStore().getRooms();
-
-                            if (null != rooms) {
-                                for(Room room : rooms) {
-                                    if ((0 != room.getNotificationCount()) || (0 != room.getHighlightCount())) {
-                                        unreadCount++;
-                                    }
-                                }
-                            }
+                            instance.mUnreadRoomsTracker.update(session, mUpdatedRoomIds);
                         }
                     }
 
+                    if (BuildConfig.DEBUG) {
+                        instance.mUnreadRoomsTracker.checkConsistency(sessions);
+                    }
+
                     // update the badge counter
-                    CommonActivityUtils.updateBadgeCount(instance.mAppContext, unreadCount);
+                    CommonActivityUtils.updateBadgeCount(instance.mAppContext, instance.mUnreadRoomsTracker.getUnreadRoomsCount(sessions));
                 }
             }
 
-            mRefreshUnreadCounter = false;
+            mUpdatedRoomIds.clear();
 
             Log.d(LOG_TAG, "onLiveEventsChunkProcessed ");
             EventStreamService.checkDisplayedNotification();
@@ -486,8 +510,14 @@ public class Matrix {
             mLoginStorage.removeCredentials(session.getHomeserverConfig());
         }
 
-        session.getDataHandler().removeListener(mLiveEventListener);
+        SessionEventsDispatcher.getInstance(session).removeListener(mLiveEventListener);
+        RoomTagsIndex.removeInstance(session);
+        RoomDisplayNamesCache.removeInstance(session);
+        RoomSearchIndex.removeInstance(session);
+        SessionEventsDispatcher.removeInstance(session);
         session.mCallsManager.removeListener(mCallsManagerListener);
+        mUnreadRoomsTracker.removeSession(session.getMyUserId());
+        StoresStartupManager.getInstance().removeAccount(session.getMyUserId());
         session.clear(context);
 
         synchronized (LOG_TAG) {
@@ -554,7 +584,12 @@ public class Matrix {
             }
         }), mAppContext);
 
-        session.getDataHandler().addListener(mLiveEventListener);
+        SessionEventsDispatcher.getInstance(session).addListener(mLiveEventListener);
+        // the tags index, the display names cache and the search index must be updated before the screens listeners are called
+        // (the search index uses the display names cache)
+        RoomTagsIndex.getInstance(session);
+        RoomDisplayNamesCache.getInstance(session);
+        RoomSearchIndex.getInstance(session);
         session.mCallsManager.addListener(mCallsManagerListener);
         return session;
     }
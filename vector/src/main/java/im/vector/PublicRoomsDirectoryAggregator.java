@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector;
+
+import android.os.Handler;
+import android.util.Log;
+
+import org.matrix.androidsdk.rest.callback.ApiCallback;
+import org.matrix.androidsdk.rest.client.EventsRestClient;
+import org.matrix.androidsdk.rest.model.MatrixError;
+import org.matrix.androidsdk.rest.model.PublicRoom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Download the public rooms directories of several servers at the same time.
+ * The results are merged as they arrive: a public room listed by several servers is kept once,
+ * with the definition of the first server of the list (i.e. the user home server).
+ * A server which does not answer before SERVER_TIMEOUT_MS is ignored.
+ * The merge is done in the thread of the provided handler.
+ */
+public class PublicRoomsDirectoryAggregator {
+    private static final String LOG_TAG = "PublicRoomsAggregator";
+
+    // a server directory is ignored after this delay
+    private static final long SERVER_TIMEOUT_MS = 20 * 1000;
+
+    public interface AggregatorListener {
+        /**
+         * A server directory has been merged and some servers have not yet answered.
+         * @param publicRooms the merged public rooms
+         */
+        void onPartialResult(List<PublicRoom> publicRooms);
+
+        /**
+         * All the servers have answered, failed or timed out.
+         * @param publicRooms the merged public rooms
+         * @param respondedServersCount the number of servers which have answered
+         */
+        void onComplete(List<PublicRoom> publicRooms, int respondedServersCount);
+    }
+
+    // the servers
+    private final List<String> mServerUrls;
+    private final List<EventsRestClient> mRestClients;
+
+    // the merge thread
+    private final Handler mMergeHandler;
+    private final AggregatorListener mListener;
+
+    // the merged public rooms by room id
+    private final HashMap<String, PublicRoom> mPublicRoomByRoomId = new HashMap<>();
+    // the index of the server which provided the merged public room definition
+    private final HashMap<String, Integer> mServerIndexByRoomId = new HashMap<>();
+
+    // the servers statuses
+    private final boolean[] mIsServerDone;
+    private final Runnable[] mTimeoutRunnables;
+    private int mPendingServersCount;
+    private int mRespondedServersCount = 0;
+    // set by cancel() in the caller thread
+    private volatile boolean mIsCancelled = false;
+
+    private long mStartTime;
+
+    /**
+     * Constructor
+     * @param serverUrls the servers urls, by definition priority
+     * @param restClients the rest clients of the servers
+     * @param mergeHandler the merge thread handler
+     * @param listener the listener, called in the merge thread
+     */
+    public PublicRoomsDirectoryAggregator(List<String> serverUrls, List<EventsRestClient> restClients, Handler mergeHandler, AggregatorListener listener) {
+        mServerUrls = serverUrls;
+        mRestClients = restClients;
+        mMergeHandler = mergeHandler;
+        mListener = listener;
+
+        mIsServerDone = new boolean[serverUrls.size()];
+        mTimeoutRunnables = new Runnable[serverUrls.size()];
+        mPendingServersCount = serverUrls.size();
+    }
+
+    /**
+     * Start the downloads.
+     */
+    public void start() {
+        mStartTime = System.currentTimeMillis();
+
+        for (int index = 0; index < mServerUrls.size(); index++) {
+            final int fIndex = index;
+
+            mTimeoutRunnables[index] = new Runnable() {
+                @Override
+                public void run() {
+                    onServerDone(fIndex, null, "timeout");
+                }
+            };
+
+            mMergeHandler.postDelayed(mTimeoutRunnables[index], SERVER_TIMEOUT_MS);
+
+            mRestClients.get(index).loadPublicRooms(new ApiCallback<List<PublicRoom>>() {
+                private void onDone(final List<PublicRoom> publicRooms, final String error) {
+                    mMergeHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onServerDone(fIndex, publicRooms, error);
+                        }
+                    });
+                }
+
+                @Override
+                public void onSuccess(List<PublicRoom> publicRooms) {
+                    onDone(publicRooms, null);
+                }
+
+                @Override
+                public void onNetworkError(Exception e) {
+                    onDone(null, e.getLocalizedMessage());
+                }
+
+                @Override
+                public void onMatrixError(MatrixError e) {
+                    onDone(null, e.getLocalizedMessage());
+                }
+
+                @Override
+                public void onUnexpectedError(Exception e) {
+                    onDone(null, e.getLocalizedMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Ignore the pending servers answers.
+     * The listener is not called after this call, even for the answers which are being merged.
+     */
+    public void cancel() {
+        mIsCancelled = true;
+
+        for (Runnable runnable : mTimeoutRunnables) {
+            if (null != runnable) {
+                mMergeHandler.removeCallbacks(runnable);
+            }
+        }
+    }
+
+    /**
+     * A server has answered, failed or timed out (merge thread).
+     * @param index the server index
+     * @param publicRooms the server public rooms, null on failure
+     * @param error the error description
+     */
+    private void onServerDone(int index, List<PublicRoom> publicRooms, String error) {
+        if (mIsCancelled || mIsServerDone[index]) {
+            return;
+        }
+
+        mIsServerDone[index] = true;
+        mPendingServersCount--;
+        mMergeHandler.removeCallbacks(mTimeoutRunnables[index]);
+
+        if (null != publicRooms) {
+            mRespondedServersCount++;
+
+            for (PublicRoom publicRoom : publicRooms) {
+                Integer serverIndex = mServerIndexByRoomId.get(publicRoom.roomId);
+
+                // prefer the definition of the first servers
+                if ((null == serverIndex) || (index < serverIndex)) {
+                    mPublicRoomByRoomId.put(publicRoom.roomId, publicRoom);
+                    mServerIndexByRoomId.put(publicRoom.roomId, index);
+                }
+            }
+
+            Log.d(LOG_TAG, "## onServerDone() : " + mServerUrls.get(index) + " : " + publicRooms.size() + " public rooms in " + (System.currentTimeMillis() - mStartTime) + " ms (" + mPublicRoomByRoomId.size() + " merged rooms)");
+        } else {
+            Log.e(LOG_TAG, "## onServerDone() : " + mServerUrls.get(index) + " failed after " + (System.currentTimeMillis() - mStartTime) + " ms : " + error);
+        }
+
+        // the download might have been cancelled during the merge
+        if (mIsCancelled) {
+            return;
+        }
+
+        if (0 == mPendingServersCount) {
+            mListener.onComplete(new ArrayList<>(mPublicRoomByRoomId.values()), mRespondedServersCount);
+        } else if (null != publicRooms) {
+            mListener.onPartialResult(new ArrayList<>(mPublicRoomByRoomId.values()));
+        }
+    }
+}
@@ -16,58 +16,174 @@
 
 package im.vector;
 
+import android.content.Context;
 import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.text.TextUtils;
 import android.util.Log;
 
 import org.matrix.androidsdk.HomeserverConnectionConfig;
 import org.matrix.androidsdk.MXSession;
-import org.matrix.androidsdk.rest.callback.ApiCallback;
-import org.matrix.androidsdk.rest.callback.SimpleApiCallback;
 import org.matrix.androidsdk.rest.client.EventsRestClient;
-import org.matrix.androidsdk.rest.client.ThirdPidRestClient;
-import org.matrix.androidsdk.rest.model.MatrixError;
 import org.matrix.androidsdk.rest.model.PublicRoom;
-import org.matrix.androidsdk.rest.model.ThreePid;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Manage the public rooms
+ * The directory is saved on the disk in pages of public rooms sorted by members count.
+ * At launch, the first saved page is displayed as soon as it is read, then the other pages are appended.
+ * The directory is downloaded again only when it is older than DIRECTORY_TTL_MS. If the downloaded
+ * directory has the same validator (content hash) as the saved one, only its timestamp is updated.
+ * Only the MAX_IN_MEMORY_ROOMS most joined public rooms are kept in memory, the other ones are
+ * searched in the saved pages (see {@link #searchSavedPublicRooms(List, String, CancellationSignal)}).
+ * The directories of the home server and of the extra servers are downloaded at the same time
+ * and merged as they arrive (see {@link PublicRoomsDirectoryAggregator}).
  */
 public class PublicRoomsManager {
     private static final String LOG_TAG = "PublicRoomsManager";
 
     public interface PublicRoomsManagerListener {
         /**
-         * Called when the public rooms list have been refreshed
+         * Called when the public rooms list have been refreshed.
+         * It can be called several times per refresh, when a new part of the list is available.
          */
         void onRefresh();
     }
 
+    // the directory is not downloaded again during this delay
+    private static final long DIRECTORY_TTL_MS = 5 * 60 * 1000;
+    // the number of public rooms per saved page
+    private static final int PAGE_SIZE = 500;
+    // the max number of public rooms kept in memory (the most joined ones)
+    private static final int MAX_IN_MEMORY_ROOMS = 5000;
+
+    // the cache files
+    private static final String CACHE_FOLDER = "PublicRoomsCache";
+    private static final String CACHE_METADATA_FILE = "metadata";
+    private static final String CACHE_PAGE_FILE_PREFIX = "page_";
+
     // session
     private static MXSession mSession;
 
+    // the cache folder
+    private static File mCacheFolder;
+
     // current public Rooms List
     private static List<PublicRoom> mPublicRoomsList = null;
 
+    // the displayed directory
+    private static volatile String mDirectoryHomeServerUrl = null;
+    private static int mDirectoryRoomsCount = 0;
+
+    // the saved directory timestamp and validator (only used in the cache thread)
+    private static long mDirectoryTs = 0;
+    private static String mDirectoryValidator = null;
+
     // refresh status
     private static boolean mRefreshInProgress = false;
 
     // public room listeners
     private static final ArrayList<PublicRoomsManagerListener> mListeners = new ArrayList<PublicRoomsManagerListener>();
 
-    // when the homeserver url is set to vector.im
-    // the manager lists the public rooms from vector.im and matrix.org
-    private static EventsRestClient mMatrixEventsRestClient = null;
+    // the other servers whose directory is merged with the home server one, by home server url prefix
+    // e.g. when the homeserver url is set to vector.im, the manager lists the public rooms from vector.im and matrix.org
+    private static final HashMap<String, List<String>> mExtraDirectoryServerUrls = new HashMap<String, List<String>>();
+
+    static {
+        mExtraDirectoryServerUrls.put("https://vector.im", Arrays.asList("https://matrix.org"));
+    }
+
+    // the events rest clients of the other servers
+    private static final HashMap<String, EventsRestClient> mDirectoryRestClients = new HashMap<String, EventsRestClient>();
+
+    // the running download
+    private static PublicRoomsDirectoryAggregator mDirectoryAggregator = null;
+
+    // true when the displayed directory has been partially downloaded
+    private static boolean mIsPartialDirectoryDisplayed = false;
+
+    // the saved pages are also read by the searches
+    private static final Object mCacheLock = new Object();
+
+    // the disk cache thread
+    private static HandlerThread mCacheThread = null;
+    private static Handler mCacheThreadHandler = null;
+    private static Handler mUIHandler = null;
+
+    // the public rooms order
+    private static final Comparator<PublicRoom> mMembersCountComparator = new Comparator<PublicRoom>() {
+        @Override
+        public int compare(PublicRoom r1, PublicRoom r2) {
+            return r2.numJoinedMembers - r1.numJoinedMembers;
+        }
+    };
 
     /**
-     * Set the current session
+     * Set the current session.
+     * The saved directory of its home server is loaded.
+     * @param context the context
      * @param session the session
      */
-    public static void setSession(MXSession session) {
+    public static void setSession(Context context, MXSession session) {
         mSession = session;
+
+        if (null == mCacheThread) {
+            mCacheFolder = new File(context.getApplicationContext().getCacheDir(), CACHE_FOLDER);
+            mCacheThread = new HandlerThread("PublicRoomsCacheThread", Thread.MIN_PRIORITY);
+            mCacheThread.start();
+            mCacheThreadHandler = new Handler(mCacheThread.getLooper());
+            mUIHandler = new Handler(Looper.getMainLooper());
+        }
+
+        final String homeServerUrl = getHomeServerUrl();
+
+        if (!TextUtils.equals(homeServerUrl, mDirectoryHomeServerUrl)) {
+            mPublicRoomsList = null;
+            mDirectoryHomeServerUrl = homeServerUrl;
+            mDirectoryRoomsCount = 0;
+            mIsPartialDirectoryDisplayed = false;
+
+            // the running download is the previous home server one
+            if (null != mDirectoryAggregator) {
+                mDirectoryAggregator.cancel();
+                mDirectoryAggregator = null;
+                mRefreshInProgress = false;
+            }
+
+            mCacheThreadHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mDirectoryTs = 0;
+                    mDirectoryValidator = null;
+                    loadCache(homeServerUrl);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the current session home server url.
+     */
+    private static String getHomeServerUrl() {
+        return (null != mSession) ? mSession.getHomeserverConfig().getHomeserverUri().toString() : null;
     }
 
     /**
@@ -78,133 +194,559 @@ public class PublicRoomsManager {
     }
 
     /**
-     * Refresh the public rooms list
+     * @return the public rooms count of the directory (some of them might not be kept in memory).
+     */
+    public static int getDirectoryRoomsCount() {
+        return mDirectoryRoomsCount;
+    }
+
+    /**
+     * Notify the listeners (UI thread).
+     * @param isRefreshed true when the refresh is done, false if the list is partially updated.
+     */
+    private static void notifyListeners(boolean isRefreshed) {
+        // the listeners might be removed while being called
+        ArrayList<PublicRoomsManagerListener> listeners = new ArrayList<PublicRoomsManagerListener>(mListeners);
+
+        if (isRefreshed) {
+            mListeners.clear();
+            mRefreshInProgress = false;
+        }
+
+        for (PublicRoomsManagerListener listener : listeners) {
+            try {
+                listener.onRefresh();
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "## notifyListeners() failed " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Refresh the public rooms list.
+     * The saved directory is used if it is not too old.
      * @param listener the update listener
      */
     public static void refresh(final PublicRoomsManagerListener listener) {
         if (null != mSession) {
-            if (mRefreshInProgress) {
-                if (null != listener) {
-                    mListeners.add(listener);
-                }
-            } else {
-                mRefreshInProgress = true;
+            if (null != listener) {
+                mListeners.add(listener);
+            }
 
-                final long t0 = System.currentTimeMillis();
+            if (!mRefreshInProgress) {
+                mRefreshInProgress = true;
 
-                // use any session to get the public rooms list
-                mSession.getEventsApiClient().loadPublicRooms(new SimpleApiCallback<List<PublicRoom>>() {
+                // wait that the saved directory is loaded
+                mCacheThreadHandler.post(new Runnable() {
                     @Override
-                    public void onSuccess(final List<PublicRoom> publicRooms) {
-
-                        // when the home server is vector.im
-                        // get the public rooms list from matrix.org
-                        if (mSession.getHomeserverConfig().getHomeserverUri().toString().startsWith("https://vector.im")) {
-                            Log.d(LOG_TAG, "Got the vector.im public rooms in " + (System.currentTimeMillis() - t0) + " ms");
-                            refreshMatrixPublicRoomsList(t0, publicRooms);
-                        } else {
-                            Log.d(LOG_TAG, "Got the rooms public list : " + publicRooms.size() + " rooms in " + (System.currentTimeMillis() - t0) + " ms");
-                            mPublicRoomsList = publicRooms;
-
-                            for (PublicRoomsManagerListener listener : mListeners) {
-                                listener.onRefresh();
+                    public void run() {
+                        final boolean isFresh = (0 != mDirectoryTs) && ((System.currentTimeMillis() - mDirectoryTs) < DIRECTORY_TTL_MS);
+
+                        mUIHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (isFresh) {
+                                    Log.d(LOG_TAG, "## refresh() : the saved directory is used");
+                                    notifyListeners(true);
+                                } else {
+                                    downloadPublicRooms();
+                                }
                             }
-                            mListeners.clear();
-                            mRefreshInProgress = false;
-                        }
+                        });
                     }
+                });
+            }
+        }
+    }
 
-                    @Override
-                    public void onNetworkError(Exception e) {
-                        super.onNetworkError(e);
-                        mRefreshInProgress = false;
-                        Log.e(LOG_TAG, "fails to retrieve the public room list " + e.getLocalizedMessage());
+    /**
+     * Provide the servers whose directory is displayed.
+     * @return the servers urls, the home server first.
+     */
+    private static List<String> getDirectoryServerUrls() {
+        String homeServerUrl = getHomeServerUrl();
+        ArrayList<String> serverUrls = new ArrayList<String>();
+        serverUrls.add(homeServerUrl);
+
+        for (String prefix : mExtraDirectoryServerUrls.keySet()) {
+            if (homeServerUrl.startsWith(prefix)) {
+                for (String serverUrl : mExtraDirectoryServerUrls.get(prefix)) {
+                    if (!serverUrls.contains(serverUrl)) {
+                        serverUrls.add(serverUrl);
                     }
+                }
+            }
+        }
+
+        return serverUrls;
+    }
+
+    /**
+     * Set the other servers whose directory is merged with the home server one.
+     * @param homeServerUrlPrefix the home server url prefix
+     * @param serverUrls the servers urls, null to merge no other directory
+     */
+    public static void setExtraDirectoryServerUrls(String homeServerUrlPrefix, List<String> serverUrls) {
+        if (null == serverUrls) {
+            mExtraDirectoryServerUrls.remove(homeServerUrlPrefix);
+        } else {
+            mExtraDirectoryServerUrls.put(homeServerUrlPrefix, new ArrayList<String>(serverUrls));
+        }
+    }
+
+    /**
+     * Download the public rooms list.
+     * The directories of the servers are downloaded at the same time.
+     */
+    private static void downloadPublicRooms() {
+        final String homeServerUrl = getHomeServerUrl();
+        List<String> serverUrls = getDirectoryServerUrls();
+        ArrayList<EventsRestClient> restClients = new ArrayList<EventsRestClient>();
+
+        for (String serverUrl : serverUrls) {
+            if (TextUtils.equals(serverUrl, homeServerUrl)) {
+                restClients.add(mSession.getEventsApiClient());
+            } else {
+                // create a dedicated events rest client
+                EventsRestClient restClient = mDirectoryRestClients.get(serverUrl);
+
+                if (null == restClient) {
+                    restClient = new EventsRestClient(new HomeserverConnectionConfig(Uri.parse(serverUrl)));
+                    mDirectoryRestClients.put(serverUrl, restClient);
+                }
+
+                restClients.add(restClient);
+            }
+        }
+
+        Log.d(LOG_TAG, "## downloadPublicRooms() : from " + serverUrls);
+
+        mDirectoryAggregator = new PublicRoomsDirectoryAggregator(serverUrls, restClients, mCacheThreadHandler, new PublicRoomsDirectoryAggregator.AggregatorListener() {
+            @Override
+            public void onPartialResult(List<PublicRoom> publicRooms) {
+                final ArrayList<PublicRoom> sortedPublicRooms = new ArrayList<PublicRoom>(publicRooms);
+                Collections.sort(sortedPublicRooms, mMembersCountComparator);
 
+                final List<PublicRoom> inMemoryPublicRooms = new ArrayList<PublicRoom>(sortedPublicRooms.subList(0, Math.min(sortedPublicRooms.size(), MAX_IN_MEMORY_ROOMS)));
+
+                mUIHandler.post(new Runnable() {
                     @Override
-                    public void onMatrixError(MatrixError e) {
-                        super.onMatrixError(e);
-                        mRefreshInProgress = false;
-                        Log.e(LOG_TAG, "fails to retrieve the public room list " + e.getLocalizedMessage());
+                    public void run() {
+                        // a saved directory is not replaced by a partial one
+                        if (TextUtils.equals(homeServerUrl, mDirectoryHomeServerUrl) && ((null == mPublicRoomsList) || mIsPartialDirectoryDisplayed)) {
+                            mPublicRoomsList = inMemoryPublicRooms;
+                            mDirectoryRoomsCount = sortedPublicRooms.size();
+                            mIsPartialDirectoryDisplayed = true;
+                            notifyListeners(false);
+                        }
                     }
+                });
+            }
+
+            @Override
+            public void onComplete(List<PublicRoom> publicRooms, int respondedServersCount) {
+                if (0 != respondedServersCount) {
+                    Log.d(LOG_TAG, "## downloadPublicRooms() : got " + publicRooms.size() + " public rooms from " + respondedServersCount + " servers");
+                    onDownloaded(homeServerUrl, publicRooms);
+                } else {
+                    mUIHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            Log.e(LOG_TAG, "## downloadPublicRooms() : fails to retrieve the public room list");
+
+                            // the refresh of another home server might be in progress
+                            if (TextUtils.equals(homeServerUrl, mDirectoryHomeServerUrl)) {
+                                mRefreshInProgress = false;
+                            }
+                        }
+                    });
+                }
+            }
+        });
+
+        mDirectoryAggregator.start();
+    }
+
+    /**
+     * A new directory has been downloaded.
+     * It is compared to the saved one, then saved if it has been updated.
+     * @param homeServerUrl the home server url when the download was started
+     * @param publicRooms the downloaded public rooms
+     */
+    private static void onDownloaded(final String homeServerUrl, final List<PublicRoom> publicRooms) {
+        mCacheThreadHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // the session has been updated during the download : the saved directory is the new home server one
+                if (!TextUtils.equals(homeServerUrl, mDirectoryHomeServerUrl)) {
+                    Log.d(LOG_TAG, "## onDownloaded() : the directory of " + homeServerUrl + " is ignored");
+                    return;
+                }
+
+                final ArrayList<PublicRoom> sortedPublicRooms = new ArrayList<PublicRoom>(publicRooms);
+                Collections.sort(sortedPublicRooms, mMembersCountComparator);
+
+                final String validator = computeValidator(sortedPublicRooms);
+                final long now = System.currentTimeMillis();
+                // the saved directory is fully loaded before a download is started
+                final boolean isModified = (null == validator) || !TextUtils.equals(validator, mDirectoryValidator);
+
+                if (isModified) {
+                    saveCache(homeServerUrl, now, validator, sortedPublicRooms);
+                } else {
+                    Log.d(LOG_TAG, "## onDownloaded() : the directory is not modified");
+                    saveMetadata(homeServerUrl, now, validator, sortedPublicRooms.size());
+                }
+
+                mDirectoryTs = now;
+                mDirectoryValidator = validator;
+
+                final List<PublicRoom> inMemoryPublicRooms = new ArrayList<PublicRoom>(sortedPublicRooms.subList(0, Math.min(sortedPublicRooms.size(), MAX_IN_MEMORY_ROOMS)));
 
+                mUIHandler.post(new Runnable() {
                     @Override
-                    public void onUnexpectedError(Exception e) {
-                        super.onUnexpectedError(e);
-                        mRefreshInProgress = false;
-                        Log.e(LOG_TAG, "fails to retrieve the public room list " + e.getLocalizedMessage());
+                    public void run() {
+                        // the session might have been updated
+                        if (TextUtils.equals(homeServerUrl, mDirectoryHomeServerUrl)) {
+                            mDirectoryRoomsCount = sortedPublicRooms.size();
+
+                            // a partial directory might have been displayed
+                            if (isModified || mIsPartialDirectoryDisplayed) {
+                                mPublicRoomsList = inMemoryPublicRooms;
+                            }
+
+                            mIsPartialDirectoryDisplayed = false;
+                            notifyListeners(true);
+                        }
                     }
                 });
             }
+        });
+    }
+
+    /**
+     * Compute the validator of a directory i.e. a hash of its content.
+     * @param publicRooms the public rooms
+     * @return the validator
+     */
+    private static String computeValidator(List<PublicRoom> publicRooms) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+
+            for (PublicRoom publicRoom : publicRooms) {
+                String description = publicRoom.roomId + "|" + publicRoom.numJoinedMembers + "|" + publicRoom.name + "|" + publicRoom.topic + "|" + publicRoom.alias + "|" + publicRoom.aliases + "|" + publicRoom.avatar_url + "|" + publicRoom.worldReadable + "|" + publicRoom.guestCanJoin;
+                digest.update(description.getBytes("UTF-8"));
+            }
+
+            StringBuilder builder = new StringBuilder();
+
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+
+            return builder.toString();
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## computeValidator() failed " + e.getMessage());
         }
+
+        return null;
+    }
+
+    /**
+     * The saved directory metadata.
+     */
+    private static class CacheMetadata {
+        public String mHomeServerUrl;
+        public long mTs;
+        public String mValidator;
+        public int mRoomsCount;
     }
 
     /**
-     * List the matrix.org public rooms.
-     * @param t0 public rooms request start time
-     * @param publicRooms the known public rooms
+     * Save the directory metadata (cache thread).
+     * @param homeServerUrl the home server url
+     * @param ts the directory timestamp
+     * @param validator the directory validator
+     * @param roomsCount the directory rooms count
+     * @return true if the metadata is saved
      */
-    private static void refreshMatrixPublicRoomsList(final long t0, final List<PublicRoom> publicRooms) {
+    private static boolean saveMetadata(String homeServerUrl, long ts, String validator, int roomsCount) {
+        synchronized (mCacheLock) {
+            ObjectOutputStream out = null;
+            boolean res = false;
+
+            try {
+                mCacheFolder.mkdirs();
+                out = new ObjectOutputStream(new FileOutputStream(new File(mCacheFolder, CACHE_METADATA_FILE)));
+                out.writeObject(homeServerUrl);
+                out.writeLong(ts);
+                out.writeObject(validator);
+                out.writeInt(roomsCount);
+                res = true;
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "## saveMetadata() failed " + e.getMessage());
+            } finally {
+                if (null != out) {
+                    try {
+                        out.close();
+                    } catch (Exception e) {
+                        Log.e(LOG_TAG, "## saveMetadata() : close failed " + e.getMessage());
+                    }
+                }
+            }
 
-        // create a dedicated events rest client
-        if (null == mMatrixEventsRestClient) {
-            final HomeserverConnectionConfig hsConfig = new HomeserverConnectionConfig(Uri.parse("https://matrix.org"));
-            mMatrixEventsRestClient = new EventsRestClient(hsConfig);
+            return res;
         }
+    }
 
-        Log.d(LOG_TAG, "refresh the matrix.org public rooms");
+    /**
+     * Read the saved directory metadata.
+     * @return the metadata, null if there is no saved directory
+     */
+    private static CacheMetadata readMetadata() {
+        synchronized (mCacheLock) {
+            File metadataFile = new File(mCacheFolder, CACHE_METADATA_FILE);
 
-        mMatrixEventsRestClient.loadPublicRooms(new ApiCallback<List<PublicRoom>>() {
-            private void onMerged(List<PublicRoom> publicRooms) {
-                Log.d(LOG_TAG,"Got the merged rooms public list : "+publicRooms.size()+" rooms in "+(System.currentTimeMillis()-t0)+" ms");
-                mPublicRoomsList = publicRooms;
+            if (!metadataFile.exists()) {
+                return null;
+            }
 
-                for(PublicRoomsManagerListener listener :mListeners) {
-                    listener.onRefresh();
+            ObjectInputStream in = null;
+
+            try {
+                in = new ObjectInputStream(new FileInputStream(metadataFile));
+
+                CacheMetadata metadata = new CacheMetadata();
+                metadata.mHomeServerUrl = (String) in.readObject();
+                metadata.mTs = in.readLong();
+                metadata.mValidator = (String) in.readObject();
+                metadata.mRoomsCount = in.readInt();
+                return metadata;
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "## readMetadata() failed " + e.getMessage());
+            } finally {
+                if (null != in) {
+                    try {
+                        in.close();
+                    } catch (Exception e) {
+                        Log.e(LOG_TAG, "## readMetadata() : close failed " + e.getMessage());
+                    }
                 }
+            }
+
+            return null;
+        }
+    }
 
-                mListeners.clear();
-                mRefreshInProgress=false;
+    /**
+     * Read a saved page.
+     * @param page the page index
+     * @return the page public rooms, null on failure
+     */
+    private static List<PublicRoom> readPage(int page) {
+        synchronized (mCacheLock) {
+            ObjectInputStream in = null;
+
+            try {
+                in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(new File(mCacheFolder, CACHE_PAGE_FILE_PREFIX + page))));
+                return (List<PublicRoom>) in.readObject();
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "## readPage() : page " + page + " failed " + e.getMessage());
+            } finally {
+                if (null != in) {
+                    try {
+                        in.close();
+                    } catch (Exception e) {
+                        Log.e(LOG_TAG, "## readPage() : close failed " + e.getMessage());
+                    }
+                }
             }
 
-            @Override
-            public void onSuccess(List<PublicRoom> matrixPublicRooms) {
-                ArrayList<PublicRoom> mergedPublicRooms = new ArrayList<PublicRoom>();
-                mergedPublicRooms.addAll(publicRooms);
-                mergedPublicRooms.addAll(matrixPublicRooms);
+            return null;
+        }
+    }
+
+    /**
+     * Save the directory (cache thread).
+     * @param homeServerUrl the home server url
+     * @param ts the directory timestamp
+     * @param validator the directory validator
+     * @param sortedPublicRooms the public rooms sorted by members count
+     */
+    private static void saveCache(String homeServerUrl, long ts, String validator, List<PublicRoom> sortedPublicRooms) {
+        synchronized (mCacheLock) {
+            long startTime = System.currentTimeMillis();
+
+            // the metadata is removed first so a partially saved directory is never loaded
+            new File(mCacheFolder, CACHE_METADATA_FILE).delete();
+            mCacheFolder.mkdirs();
+
+            int pagesCount = (sortedPublicRooms.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+
+            for (int page = 0; page < pagesCount; page++) {
+                ObjectOutputStream out = null;
+
+                try {
+                    ArrayList<PublicRoom> pageRooms = new ArrayList<PublicRoom>(sortedPublicRooms.subList(page * PAGE_SIZE, Math.min(sortedPublicRooms.size(), (page + 1) * PAGE_SIZE)));
+                    out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(new File(mCacheFolder, CACHE_PAGE_FILE_PREFIX + page))));
+                    out.writeObject(pageRooms);
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "## saveCache() failed " + e.getMessage());
+                    return;
+                } finally {
+                    if (null != out) {
+                        try {
+                            out.close();
+                        } catch (Exception e) {
+                            Log.e(LOG_TAG, "## saveCache() : close failed " + e.getMessage());
+                        }
+                    }
+                }
+            }
+
+            deleteStalePages(pagesCount);
+
+            if (saveMetadata(homeServerUrl, ts, validator, sortedPublicRooms.size())) {
+                Log.d(LOG_TAG, "## saveCache() : " + sortedPublicRooms.size() + " public rooms saved in " + (System.currentTimeMillis() - startTime) + " ms");
+            }
+        }
+    }
 
-                // avoid duplicated definitions
-                HashMap<String, PublicRoom> publicRoomsMap = new HashMap<String, PublicRoom>();
+    /**
+     * Remove the pages of the previous larger directories (cache thread).
+     * @param pagesCount the saved directory pages count
+     */
+    private static void deleteStalePages(int pagesCount) {
+        File[] files = mCacheFolder.listFiles();
 
-                for(PublicRoom publicRoom : mergedPublicRooms) {
+        if (null != files) {
+            for (File file : files) {
+                String name = file.getName();
 
-                    // prefer the vector.im public room definition
-                    if (!publicRoomsMap.containsKey(publicRoom.roomId)) {
-                        publicRoomsMap.put(publicRoom.roomId, publicRoom);
+                if (name.startsWith(CACHE_PAGE_FILE_PREFIX)) {
+                    try {
+                        if (Integer.parseInt(name.substring(CACHE_PAGE_FILE_PREFIX.length())) >= pagesCount) {
+                            file.delete();
+                        }
+                    } catch (NumberFormatException e) {
+                        Log.e(LOG_TAG, "## deleteStalePages() : unexpected file " + name);
                     }
                 }
+            }
+        }
+    }
 
-                onMerged(new ArrayList<PublicRoom>(publicRoomsMap.values()));
+    /**
+     * Load the saved directory page by page (cache thread).
+     * The listeners are notified after each page.
+     * @param homeServerUrl the home server url
+     */
+    private static void loadCache(final String homeServerUrl) {
+        long startTime = System.currentTimeMillis();
+        CacheMetadata metadata = readMetadata();
+
+        if (null == metadata) {
+            return;
+        }
+
+        if (!TextUtils.equals(metadata.mHomeServerUrl, homeServerUrl)) {
+            Log.d(LOG_TAG, "## loadCache() : the saved directory is not the home server one");
+            return;
+        }
+
+        final int roomsCount = metadata.mRoomsCount;
+        final ArrayList<PublicRoom> publicRooms = new ArrayList<PublicRoom>();
+        int pagesCount = (Math.min(roomsCount, MAX_IN_MEMORY_ROOMS) + PAGE_SIZE - 1) / PAGE_SIZE;
+
+        for (int page = 0; page < pagesCount; page++) {
+            List<PublicRoom> pageRooms = readPage(page);
+
+            if (null == pageRooms) {
+                return;
             }
 
-            @Override
-            public void onNetworkError(Exception e) {
-                Log.e(LOG_TAG, "fails to retrieve the matrix public room list " + e.getLocalizedMessage());
-                onMerged(publicRooms);
+            publicRooms.addAll(pageRooms);
+
+            final List<PublicRoom> loadedPublicRooms = new ArrayList<PublicRoom>(publicRooms);
+
+            // display the loaded pages
+            mUIHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // the session might have been updated
+                    if (TextUtils.equals(homeServerUrl, mDirectoryHomeServerUrl)) {
+                        mPublicRoomsList = loadedPublicRooms;
+                        mDirectoryRoomsCount = roomsCount;
+                        notifyListeners(false);
+                    }
+                }
+            });
+        }
+
+        // the saved directory is valid
+        mDirectoryValidator = metadata.mValidator;
+        mDirectoryTs = metadata.mTs;
+
+        Log.d(LOG_TAG, "## loadCache() : " + publicRooms.size() + " / " + roomsCount + " public rooms loaded in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Search the saved public rooms which are not kept in memory i.e. the rooms beyond the MAX_IN_MEMORY_ROOMS most joined ones.
+     * The saved pages are read from the disk, so it must be called in a background thread.
+     * @param publicRooms the in-memory public rooms
+     * @param pattern the pattern
+     * @param cancellationSignal the cancellation signal, can be null
+     * @return the matched public rooms sorted by members count, null if the search has been cancelled
+     */
+    public static ArrayList<PublicRoom> searchSavedPublicRooms(List<PublicRoom> publicRooms, String pattern, CancellationSignal cancellationSignal) {
+        ArrayList<PublicRoom> matchedPublicRooms = new ArrayList<PublicRoom>();
+        String normalisedPattern = SearchTextUtils.normalise((null != pattern) ? pattern.trim() : null);
+
+        // the whole directory is in memory
+        if (TextUtils.isEmpty(normalisedPattern) || (null == publicRooms) || (publicRooms.size() < MAX_IN_MEMORY_ROOMS) || (null == mCacheFolder)) {
+            return matchedPublicRooms;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        synchronized (mCacheLock) {
+            CacheMetadata metadata = readMetadata();
+
+            if ((null == metadata) || !TextUtils.equals(metadata.mHomeServerUrl, mDirectoryHomeServerUrl)) {
+                return matchedPublicRooms;
             }
 
-            @Override
-            public void onMatrixError(MatrixError e) {
-                Log.e(LOG_TAG, "fails to retrieve the matrix public room list " + e.getLocalizedMessage());
-                onMerged(publicRooms);
+            // the displayed directory might be more recent than the saved one
+            HashSet<String> inMemoryRoomIds = new HashSet<String>();
+
+            for (PublicRoom publicRoom : publicRooms) {
+                inMemoryRoomIds.add(publicRoom.roomId);
             }
 
-            @Override
-            public void onUnexpectedError(Exception e) {
-                Log.e(LOG_TAG, "fails to retrieve the matrix public room list " + e.getLocalizedMessage());
-                onMerged(publicRooms);
+            int pagesCount = (metadata.mRoomsCount + PAGE_SIZE - 1) / PAGE_SIZE;
+
+            // MAX_IN_MEMORY_ROOMS is a multiple of PAGE_SIZE
+            for (int page = MAX_IN_MEMORY_ROOMS / PAGE_SIZE; page < pagesCount; page++) {
+                if ((null != cancellationSignal) && cancellationSignal.isCanceled()) {
+                    return null;
+                }
+
+                List<PublicRoom> pageRooms = readPage(page);
+
+                if (null == pageRooms) {
+                    break;
+                }
+
+                for (PublicRoom publicRoom : pageRooms) {
+                    if (!inMemoryRoomIds.contains(publicRoom.roomId) && PublicRoomsSearchIndex.matches(publicRoom, normalisedPattern)) {
+                        matchedPublicRooms.add(publicRoom);
+                    }
+                }
             }
-        });
+        }
+
+        Log.d(LOG_TAG, "## searchSavedPublicRooms() : " + matchedPublicRooms.size() + " saved public rooms matched in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        return matchedPublicRooms;
     }
 }
-
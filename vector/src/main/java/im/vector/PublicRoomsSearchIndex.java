@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.os.CancellationSignal;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.matrix.androidsdk.rest.model.PublicRoom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import im.vector.util.VectorUtils;
+
+/**
+ * Full text index of a public rooms directory.
+ * The public rooms are indexed by their display name, their aliases and their topic,
+ * like the session rooms in {@link RoomSearchIndex}.
+ * The public rooms are ranked once (members count then display name) when the index is built,
+ * and each trigram lists the ranks of its rooms in ascending order, so the matched rooms are
+ * already ranked.
+ * The index is immutable: it is built again when the directory is refreshed.
+ */
+public class PublicRoomsSearchIndex {
+    private static final String LOG_TAG = "PublicRoomsSearchIndex";
+
+    // the cancellation is checked every CANCELLATION_CHECK_PERIOD rooms
+    private static final int CANCELLATION_CHECK_PERIOD = 256;
+
+    // the last built index
+    private static PublicRoomsSearchIndex mLastIndex = null;
+
+    // the indexed directory
+    private final List<PublicRoom> mPublicRooms;
+
+    // the ranked public rooms
+    private final ArrayList<PublicRoom> mRankedPublicRooms;
+
+    // the normalised indexed text by rank
+    private final String[] mTextByRank;
+
+    // the ascending ranks by trigram
+    private final HashMap<String, int[]> mRanksByNgram = new HashMap<>();
+
+    /**
+     * Build the index of a directory.
+     * It must be called in a background thread.
+     * @param publicRooms the public rooms
+     */
+    public PublicRoomsSearchIndex(List<PublicRoom> publicRooms) {
+        long startTime = System.currentTimeMillis();
+
+        mPublicRooms = publicRooms;
+        mRankedPublicRooms = (null != publicRooms) ? new ArrayList<>(publicRooms) : new ArrayList<PublicRoom>();
+
+        final HashMap<String, String> displayNameByRoomId = new HashMap<>();
+
+        for (PublicRoom publicRoom : mRankedPublicRooms) {
+            displayNameByRoomId.put(publicRoom.roomId, VectorUtils.getPublicRoomDisplayName(publicRoom));
+        }
+
+        Collections.sort(mRankedPublicRooms, new Comparator<PublicRoom>() {
+            @Override
+            public int compare(PublicRoom r1, PublicRoom r2) {
+                int diff = r2.numJoinedMembers - r1.numJoinedMembers;
+
+                if (0 == diff) {
+                    diff = displayNameByRoomId.get(r1.roomId).compareTo(displayNameByRoomId.get(r2.roomId));
+                }
+
+                return diff;
+            }
+        });
+
+        mTextByRank = new String[mRankedPublicRooms.size()];
+        HashMap<String, ArrayList<Integer>> ranksListByNgram = new HashMap<>();
+
+        for (int rank = 0; rank < mTextByRank.length; rank++) {
+            PublicRoom publicRoom = mRankedPublicRooms.get(rank);
+            mTextByRank[rank] = buildText(displayNameByRoomId.get(publicRoom.roomId), publicRoom);
+
+            for (String ngram : SearchTextUtils.getNgrams(mTextByRank[rank])) {
+                ArrayList<Integer> ranks = ranksListByNgram.get(ngram);
+
+                if (null == ranks) {
+                    ranks = new ArrayList<>();
+                    ranksListByNgram.put(ngram, ranks);
+                }
+
+                ranks.add(rank);
+            }
+        }
+
+        for (String ngram : ranksListByNgram.keySet()) {
+            ArrayList<Integer> ranksList = ranksListByNgram.get(ngram);
+            int[] ranks = new int[ranksList.size()];
+
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] = ranksList.get(i);
+            }
+
+            mRanksByNgram.put(ngram, ranks);
+        }
+
+        Log.d(LOG_TAG, "## PublicRoomsSearchIndex() : " + mTextByRank.length + " public rooms indexed in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    /**
+     * Provide the index of a directory.
+     * The index is built only when the directory has been refreshed (i.e. it is a new list).
+     * It must be called in a background thread.
+     * @param publicRooms the public rooms
+     * @return the index
+     */
+    public static synchronized PublicRoomsSearchIndex getIndex(List<PublicRoom> publicRooms) {
+        if ((null == mLastIndex) || (mLastIndex.mPublicRooms != publicRooms)) {
+            mLastIndex = new PublicRoomsSearchIndex(publicRooms);
+        }
+
+        return mLastIndex;
+    }
+
+    /**
+     * Build the normalised indexed text of a public room.
+     * @param displayName the public room display name
+     * @param publicRoom the public room
+     * @return the normalised text
+     */
+    private static String buildText(String displayName, PublicRoom publicRoom) {
+        ArrayList<String> aliases = new ArrayList<>();
+
+        if (!TextUtils.isEmpty(publicRoom.alias)) {
+            aliases.add(publicRoom.alias);
+        }
+
+        if (null != publicRoom.aliases) {
+            aliases.addAll(publicRoom.aliases);
+        }
+
+        return SearchTextUtils.buildText(displayName, aliases, publicRoom.topic);
+    }
+
+    /**
+     * Tell if a public room which is not indexed matches a pattern.
+     * @param publicRoom the public room
+     * @param normalisedPattern the normalised pattern (see {@link SearchTextUtils#normalise(String)})
+     * @return true if its display name, aliases or topic contains the pattern
+     */
+    static boolean matches(PublicRoom publicRoom, String normalisedPattern) {
+        return buildText(VectorUtils.getPublicRoomDisplayName(publicRoom), publicRoom).contains(normalisedPattern);
+    }
+
+    /**
+     * Tell if a sorted ranks array contains a rank.
+     * @param ranks the ascending ranks
+     * @param fromIndex the first index to check
+     * @param rank the rank
+     * @return the index of the rank, or -(insertion index) - 1 if it is not found
+     */
+    private static int indexOf(int[] ranks, int fromIndex, int rank) {
+        int low = fromIndex;
+        int high = ranks.length - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (ranks[mid] < rank) {
+                low = mid + 1;
+            } else if (ranks[mid] > rank) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * @return the indexed public rooms count
+     */
+    public int getPublicRoomsCount() {
+        return mTextByRank.length;
+    }
+
+    /**
+     * Search the public rooms whose display name, aliases or topic contains a pattern.
+     * The search is case and accent insensitive.
+     * @param pattern the pattern, all the public rooms are returned if it is empty
+     * @param cancellationSignal the cancellation signal, can be null
+     * @return the matched public rooms ranked by members count, null if the search has been cancelled
+     */
+    public ArrayList<PublicRoom> search(String pattern, CancellationSignal cancellationSignal) {
+        String normalisedPattern = SearchTextUtils.normalise((null != pattern) ? pattern.trim() : null);
+
+        if (TextUtils.isEmpty(normalisedPattern)) {
+            return new ArrayList<>(mRankedPublicRooms);
+        }
+
+        ArrayList<PublicRoom> matchedPublicRooms = new ArrayList<>();
+        int checkedCount = 0;
+
+        if (normalisedPattern.length() < SearchTextUtils.NGRAM_LENGTH) {
+            // too short to use the index
+            for (int rank = 0; rank < mTextByRank.length; rank++) {
+                if ((0 == (++checkedCount % CANCELLATION_CHECK_PERIOD)) && (null != cancellationSignal) && cancellationSignal.isCanceled()) {
+                    return null;
+                }
+
+                if (mTextByRank[rank].contains(normalisedPattern)) {
+                    matchedPublicRooms.add(mRankedPublicRooms.get(rank));
+                }
+            }
+
+            return matchedPublicRooms;
+        }
+
+        ArrayList<int[]> ranksList = new ArrayList<>();
+
+        for (String ngram : SearchTextUtils.getNgrams(normalisedPattern)) {
+            int[] ranks = mRanksByNgram.get(ngram);
+
+            // no public room contains this trigram
+            if (null == ranks) {
+                return matchedPublicRooms;
+            }
+
+            ranksList.add(ranks);
+        }
+
+        // the smallest ranks array first
+        Collections.sort(ranksList, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] ranks1, int[] ranks2) {
+                return ranks1.length - ranks2.length;
+            }
+        });
+
+        int[] candidates = ranksList.get(0);
+        // the ranks are ascending so the next lookups start from the previous match
+        int[] fromIndexes = new int[ranksList.size()];
+
+        for (int rank : candidates) {
+            if ((0 == (++checkedCount % CANCELLATION_CHECK_PERIOD)) && (null != cancellationSignal) && cancellationSignal.isCanceled()) {
+                return null;
+            }
+
+            boolean isCandidate = true;
+
+            for (int i = 1; (i < ranksList.size()) && isCandidate; i++) {
+                int index = indexOf(ranksList.get(i), fromIndexes[i], rank);
+                isCandidate = (index >= 0);
+                fromIndexes[i] = isCandidate ? index : (-index - 1);
+            }
+
+            // check the trigrams order
+            if (isCandidate && mTextByRank[rank].contains(normalisedPattern)) {
+                matchedPublicRooms.add(mRankedPublicRooms.get(rank));
+            }
+        }
+
+        return matchedPublicRooms;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.matrix.androidsdk.data.Room;
+
+import java.util.HashMap;
+
+/**
+ * Singleton class which schedules the read receipts of the displayed rooms.
+ * A live event used to trigger a read receipt request, so a busy room sent a request per received event.
+ * The requests of a room are now delayed by DEBOUNCE_DELAY_MS and coalesced : a single receipt is
+ * sent for the latest event of the room at that time, and at most one receipt is sent per MIN_INTERVAL_MS.
+ * It must be used from the UI thread.
+ */
+public class ReadMarkerScheduler {
+    private static final String LOG_TAG = "ReadMarkerScheduler";
+
+    // the delay to wait for the next events
+    private static final long DEBOUNCE_DELAY_MS = 500;
+
+    // the min delay between two receipts of a room
+    private static final long MIN_INTERVAL_MS = 3000;
+
+    private static ReadMarkerScheduler instance = null;
+
+    /**
+     * The read receipt status of a room.
+     */
+    private class RoomReadMarker implements Runnable {
+        Room mRoom;
+        boolean mIsPending = false;
+        long mLastSentTs = 0;
+
+        @Override
+        public void run() {
+            send(this);
+        }
+    }
+
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+
+    // the read markers by room id
+    private final HashMap<String, RoomReadMarker> mReadMarkerByRoomId = new HashMap<>();
+
+    // the statistics
+    private int mRequestsCount = 0;
+    private int mSentCount = 0;
+
+    private ReadMarkerScheduler() {
+    }
+
+    public static synchronized ReadMarkerScheduler getInstance() {
+        if (instance == null) {
+            instance = new ReadMarkerScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Provide the read marker of a room.
+     * @param room the room
+     * @return the read marker
+     */
+    private RoomReadMarker getReadMarker(Room room) {
+        RoomReadMarker readMarker = mReadMarkerByRoomId.get(room.getRoomId());
+
+        if (null == readMarker) {
+            readMarker = new RoomReadMarker();
+            mReadMarkerByRoomId.put(room.getRoomId(), readMarker);
+        }
+
+        readMarker.mRoom = room;
+        return readMarker;
+    }
+
+    /**
+     * Send the read receipt of a room.
+     * @param readMarker the room read marker
+     */
+    private void send(RoomReadMarker readMarker) {
+        mUiHandler.removeCallbacks(readMarker);
+        readMarker.mIsPending = false;
+        readMarker.mLastSentTs = System.currentTimeMillis();
+
+        // the receipt is sent for the latest event of the room
+        // nothing is sent if it has already been read
+        if (readMarker.mRoom.sendReadReceipt(null)) {
+            mSentCount++;
+        }
+    }
+
+    /**
+     * Request a read receipt for the latest event of a room.
+     * @param room the room
+     */
+    public void requestReadReceipt(Room room) {
+        if (null == room) {
+            return;
+        }
+
+        mRequestsCount++;
+
+        RoomReadMarker readMarker = getReadMarker(room);
+
+        // coalesced with the pending request
+        if (readMarker.mIsPending) {
+            return;
+        }
+
+        readMarker.mIsPending = true;
+
+        long delay = Math.max(DEBOUNCE_DELAY_MS, readMarker.mLastSentTs + MIN_INTERVAL_MS - System.currentTimeMillis());
+        mUiHandler.postDelayed(readMarker, delay);
+    }
+
+    /**
+     * Send the read receipt of a room now e.g. when the room is displayed.
+     * A pending request is cancelled.
+     * @param room the room
+     */
+    public void sendReadReceipt(Room room) {
+        if (null == room) {
+            return;
+        }
+
+        mRequestsCount++;
+        send(getReadMarker(room));
+    }
+
+    /**
+     * Send the pending read receipt of a room when it is no more displayed.
+     * @param room the room
+     */
+    public void flush(Room room) {
+        if (null == room) {
+            return;
+        }
+
+        // the room is released
+        RoomReadMarker readMarker = mReadMarkerByRoomId.remove(room.getRoomId());
+
+        if ((null != readMarker) && readMarker.mIsPending) {
+            send(readMarker);
+        }
+
+        Log.d(LOG_TAG, "## flush() : " + mRequestsCount + " requests, " + mSentCount + " receipts sent");
+    }
+
+    /**
+     * @return the number of requested read receipts
+     */
+    public int getRequestsCount() {
+        return mRequestsCount;
+    }
+
+    /**
+     * @return the number of read receipts sent to the server
+     */
+    public int getSentCount() {
+        return mSentCount;
+    }
+}
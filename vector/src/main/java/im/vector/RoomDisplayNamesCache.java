@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomState;
+import org.matrix.androidsdk.listeners.IMXEventListener;
+import org.matrix.androidsdk.listeners.MXEventListener;
+import org.matrix.androidsdk.rest.model.Event;
+
+import java.util.HashMap;
+
+import im.vector.util.VectorUtils;
+
+/**
+ * Cache the display names of the rooms of a session.
+ * The display name of a room without name is computed from its members list, so it is computed
+ * only once, then it is invalidated by the name, aliases, canonical alias and member events of the room.
+ */
+public class RoomDisplayNamesCache {
+
+    private static final SessionInstances<RoomDisplayNamesCache> instances = new SessionInstances<RoomDisplayNamesCache>() {
+        @Override
+        protected RoomDisplayNamesCache create(MXSession session) {
+            return new RoomDisplayNamesCache(session);
+        }
+
+        @Override
+        protected IMXEventListener getEventsListener(RoomDisplayNamesCache cache) {
+            return cache.mEventsListener;
+        }
+    };
+
+    /**
+     * The cached names of a room.
+     */
+    private static class NamesEntry {
+        public final String mDisplayName;
+
+        public NamesEntry(String displayName) {
+            mDisplayName = displayName;
+        }
+    }
+
+    // the session
+    private final MXSession mSession;
+
+    // the names by room id
+    private final HashMap<String, NamesEntry> mNamesByRoomId = new HashMap<>();
+
+    // statistics
+    private int mHitsCount = 0;
+    private int mMissesCount = 0;
+    private int mInvalidationsCount = 0;
+
+    private final MXEventListener mEventsListener = new MXEventListener() {
+        @Override
+        public void onLiveEvent(Event event, RoomState roomState) {
+            if ((null != event.roomId) && isDisplayNameEvent(event)) {
+                invalidate(event.roomId);
+            }
+        }
+
+        @Override
+        public void onNewRoom(String roomId) {
+            invalidate(roomId);
+        }
+
+        @Override
+        public void onJoinRoom(String roomId) {
+            invalidate(roomId);
+        }
+
+        @Override
+        public void onLeaveRoom(String roomId) {
+            invalidate(roomId);
+        }
+
+        @Override
+        public void onRoomInitialSyncComplete(String roomId) {
+            invalidate(roomId);
+        }
+
+        @Override
+        public void onRoomSyncWithLimitedTimeline(String roomId) {
+            // some state events might have been skipped
+            invalidate(roomId);
+        }
+
+        @Override
+        public void onStoreReady() {
+            clear();
+        }
+
+        @Override
+        public void onInitialSyncComplete() {
+            clear();
+        }
+    };
+
+    private RoomDisplayNamesCache(MXSession session) {
+        mSession = session;
+    }
+
+    /**
+     * Provide the display names cache of a session.
+     * @param session the session
+     * @return the cache
+     */
+    public static RoomDisplayNamesCache getInstance(MXSession session) {
+        return instances.get(session);
+    }
+
+    /**
+     * Release the display names cache of a session.
+     * @param session the session
+     */
+    public static void removeInstance(MXSession session) {
+        instances.remove(session);
+    }
+
+    /**
+     * Tell if an event might update the display name of its room.
+     * @param event the event
+     * @return true if the display name must be computed again
+     */
+    private static boolean isDisplayNameEvent(Event event) {
+        return TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_NAME) ||
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_ALIASES) ||
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_CANONICAL_ALIAS) ||
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_MEMBER);
+    }
+
+    /**
+     * Provide the cached names of a room, compute them if they are not cached.
+     * @param context the context
+     * @param room the room
+     * @return the names entry
+     */
+    private synchronized NamesEntry getEntry(Context context, Room room) {
+        NamesEntry entry = mNamesByRoomId.get(room.getRoomId());
+
+        if (null != entry) {
+            mHitsCount++;
+        } else {
+            mMissesCount++;
+            entry = new NamesEntry(VectorUtils.getRoomDisplayname(context, mSession, room));
+            mNamesByRoomId.put(room.getRoomId(), entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Provide the display name of a room.
+     * @param context the context
+     * @param room the room
+     * @return the room display name
+     */
+    public String getDisplayName(Context context, Room room) {
+        if (null == room) {
+            return null;
+        }
+
+        return getEntry(context, room).mDisplayName;
+    }
+
+    /**
+     * Forget the cached names of a room.
+     * @param roomId the room id
+     */
+    public synchronized void invalidate(String roomId) {
+        if (null != mNamesByRoomId.remove(roomId)) {
+            mInvalidationsCount++;
+        }
+    }
+
+    /**
+     * Forget all the cached names.
+     */
+    public synchronized void clear() {
+        mNamesByRoomId.clear();
+    }
+
+    /**
+     * @return the cache statistics description.
+     */
+    public synchronized String getStats() {
+        int requestsCount = mHitsCount + mMissesCount;
+        int hitRate = (0 != requestsCount) ? (mHitsCount * 100 / requestsCount) : 0;
+
+        return mNamesByRoomId.size() + " rooms, " + mHitsCount + " hits, " + mMissesCount + " misses (hit rate " + hitRate + "%), " + mInvalidationsCount + " invalidations";
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomState;
+import org.matrix.androidsdk.listeners.IMXEventListener;
+import org.matrix.androidsdk.listeners.MXEventListener;
+import org.matrix.androidsdk.rest.model.Event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Full text index of the rooms of a session.
+ * The rooms are indexed by their display name, their aliases and their topic.
+ * The texts are normalised (lowercase, without accents) and split into trigrams,
+ * so a substring (or prefix) query only checks the rooms which contain all the trigrams of the pattern.
+ * The index is built from the store at the first query, then it is kept up to date with the state events.
+ */
+public class RoomSearchIndex {
+    private static final String LOG_TAG = "RoomSearchIndex";
+
+    private static final SessionInstances<RoomSearchIndex> instances = new SessionInstances<RoomSearchIndex>() {
+        @Override
+        protected RoomSearchIndex create(MXSession session) {
+            return new RoomSearchIndex(session);
+        }
+
+        @Override
+        protected IMXEventListener getEventsListener(RoomSearchIndex index) {
+            return index.mEventsListener;
+        }
+    };
+
+    // the session
+    private final MXSession mSession;
+
+    // the normalised indexed text by room id
+    private final HashMap<String, String> mTextByRoomId = new HashMap<>();
+
+    // the room ids by trigram
+    private final HashMap<String, HashSet<String>> mRoomIdsByNgram = new HashMap<>();
+
+    // true when the index must be rebuilt from the store
+    private boolean mIsDirty = true;
+
+    private final MXEventListener mEventsListener = new MXEventListener() {
+        @Override
+        public void onLiveEvent(Event event, RoomState roomState) {
+            if ((null != event.roomId) && isIndexedEvent(event)) {
+                updateRoom(event.roomId);
+            }
+        }
+
+        @Override
+        public void onNewRoom(String roomId) {
+            updateRoom(roomId);
+        }
+
+        @Override
+        public void onJoinRoom(String roomId) {
+            updateRoom(roomId);
+        }
+
+        @Override
+        public void onRoomInitialSyncComplete(String roomId) {
+            updateRoom(roomId);
+        }
+
+        @Override
+        public void onRoomSyncWithLimitedTimeline(String roomId) {
+            updateRoom(roomId);
+        }
+
+        @Override
+        public void onLeaveRoom(String roomId) {
+            removeRoom(roomId);
+        }
+
+        @Override
+        public void onStoreReady() {
+            invalidate();
+        }
+
+        @Override
+        public void onInitialSyncComplete() {
+            invalidate();
+        }
+    };
+
+    private RoomSearchIndex(MXSession session) {
+        mSession = session;
+    }
+
+    /**
+     * Provide the search index of a session.
+     * @param session the session
+     * @return the index
+     */
+    public static RoomSearchIndex getInstance(MXSession session) {
+        return instances.get(session);
+    }
+
+    /**
+     * Release the search index of a session.
+     * @param session the session
+     */
+    public static void removeInstance(MXSession session) {
+        instances.remove(session);
+    }
+
+    /**
+     * Tell if an event might update the indexed texts of its room.
+     * @param event the event
+     * @return true if the room must be indexed again
+     */
+    private static boolean isIndexedEvent(Event event) {
+        return TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_NAME) ||
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_ALIASES) ||
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_CANONICAL_ALIAS) ||
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_TOPIC) ||
+                // the display name of a room without name is computed from its members
+                TextUtils.equals(event.type, Event.EVENT_TYPE_STATE_ROOM_MEMBER);
+    }
+
+    /**
+     * Add a room to the index (the room must not be indexed).
+     * @param roomId the room id
+     * @param text the normalised text
+     */
+    private void addText(String roomId, String text) {
+        mTextByRoomId.put(roomId, text);
+
+        for (String ngram : SearchTextUtils.getNgrams(text)) {
+            HashSet<String> roomIds = mRoomIdsByNgram.get(ngram);
+
+            if (null == roomIds) {
+                roomIds = new HashSet<>();
+                mRoomIdsByNgram.put(ngram, roomIds);
+            }
+
+            roomIds.add(roomId);
+        }
+    }
+
+    /**
+     * Remove a room from the index.
+     * @param roomId the room id
+     */
+    private void removeText(String roomId) {
+        String text = mTextByRoomId.remove(roomId);
+
+        if (null != text) {
+            for (String ngram : SearchTextUtils.getNgrams(text)) {
+                HashSet<String> roomIds = mRoomIdsByNgram.get(ngram);
+
+                if (null != roomIds) {
+                    roomIds.remove(roomId);
+
+                    if (roomIds.isEmpty()) {
+                        mRoomIdsByNgram.remove(ngram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the normalised text of a room.
+     * @param room the room
+     * @return the normalised text
+     */
+    private String buildText(Room room) {
+        RoomState roomState = room.getLiveState();
+        ArrayList<String> aliases = new ArrayList<>();
+
+        if (!TextUtils.isEmpty(roomState.alias)) {
+            aliases.add(roomState.alias);
+        }
+
+        if (null != roomState.aliases) {
+            aliases.addAll(roomState.aliases);
+        }
+
+        return SearchTextUtils.buildText(RoomDisplayNamesCache.getInstance(mSession).getDisplayName(VectorApp.getInstance(), room), aliases, roomState.topic);
+    }
+
+    /**
+     * Rebuild the index from the store if it is dirty.
+     */
+    private void checkIndex() {
+        if (mIsDirty && mSession.isAlive()) {
+            long startTime = System.currentTimeMillis();
+
+            mTextByRoomId.clear();
+            mRoomIdsByNgram.clear();
+
+            Collection<Room> rooms = mSession.getDataHandler().getStore().getRooms();
+
+            if (null != rooms) {
+                for (Room room : rooms) {
+                    addText(room.getRoomId(), buildText(room));
+                }
+            }
+
+            mIsDirty = false;
+
+            Log.d(LOG_TAG, "## checkIndex() : " + mTextByRoomId.size() + " rooms indexed in " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+    }
+
+    /**
+     * Force the index to be rebuilt at the next query.
+     */
+    public synchronized void invalidate() {
+        mIsDirty = true;
+    }
+
+    /**
+     * Index again a room.
+     * @param roomId the room id
+     */
+    public synchronized void updateRoom(String roomId) {
+        if (mIsDirty || !mSession.isAlive()) {
+            return;
+        }
+
+        removeText(roomId);
+
+        Room room = mSession.getDataHandler().getStore().getRoom(roomId);
+
+        if (null != room) {
+            addText(roomId, buildText(room));
+        }
+    }
+
+    /**
+     * Remove a room from the index.
+     * @param roomId the room id
+     */
+    public synchronized void removeRoom(String roomId) {
+        removeText(roomId);
+    }
+
+    /**
+     * Search the rooms whose display name, aliases or topic contains a pattern.
+     * The search is case and accent insensitive.
+     * @param pattern the pattern
+     * @return the matched room ids
+     */
+    public synchronized HashSet<String> search(String pattern) {
+        checkIndex();
+
+        HashSet<String> matchedRoomIds = new HashSet<>();
+        String normalisedPattern = SearchTextUtils.normalise((null != pattern) ? pattern.trim() : null);
+
+        if (TextUtils.isEmpty(normalisedPattern)) {
+            return matchedRoomIds;
+        }
+
+        Collection<String> candidates;
+
+        if (normalisedPattern.length() < SearchTextUtils.NGRAM_LENGTH) {
+            // too short to use the index
+            candidates = mTextByRoomId.keySet();
+        } else {
+            ArrayList<HashSet<String>> roomIdsList = new ArrayList<>();
+
+            for (String ngram : SearchTextUtils.getNgrams(normalisedPattern)) {
+                HashSet<String> roomIds = mRoomIdsByNgram.get(ngram);
+
+                // no room contains this trigram
+                if (null == roomIds) {
+                    return matchedRoomIds;
+                }
+
+                roomIdsList.add(roomIds);
+            }
+
+            // the smallest rooms set first
+            Collections.sort(roomIdsList, new Comparator<HashSet<String>>() {
+                @Override
+                public int compare(HashSet<String> set1, HashSet<String> set2) {
+                    return set1.size() - set2.size();
+                }
+            });
+
+            candidates = new ArrayList<>();
+
+            for (String roomId : roomIdsList.get(0)) {
+                boolean isCandidate = true;
+
+                for (int i = 1; (i < roomIdsList.size()) && isCandidate; i++) {
+                    isCandidate = roomIdsList.get(i).contains(roomId);
+                }
+
+                if (isCandidate) {
+                    candidates.add(roomId);
+                }
+            }
+        }
+
+        // check the trigrams order
+        for (String roomId : candidates) {
+            if (mTextByRoomId.get(roomId).contains(normalisedPattern)) {
+                matchedRoomIds.add(roomId);
+            }
+        }
+
+        return matchedRoomIds;
+    }
+}
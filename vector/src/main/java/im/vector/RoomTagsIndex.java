@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomTag;
+import org.matrix.androidsdk.listeners.IMXEventListener;
+import org.matrix.androidsdk.listeners.MXEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Index the favourite and low priority tags of the rooms of a session.
+ * It maps a room id to its tag and its tag order in O(1).
+ * The index is built from the store at the first request, then it is kept up to date
+ * with the room tag events.
+ */
+public class RoomTagsIndex {
+
+    private static final SessionInstances<RoomTagsIndex> instances = new SessionInstances<RoomTagsIndex>() {
+        @Override
+        protected RoomTagsIndex create(MXSession session) {
+            return new RoomTagsIndex(session);
+        }
+
+        @Override
+        protected IMXEventListener getEventsListener(RoomTagsIndex index) {
+            return index.mEventsListener;
+        }
+    };
+
+    /**
+     * The tag of a room.
+     */
+    public static class TagEntry {
+        // RoomTag.ROOM_TAG_FAVOURITE or RoomTag.ROOM_TAG_LOW_PRIORITY
+        public final String mTag;
+        // the tag order, Double.MAX_VALUE if the tag has no order
+        public final double mOrder;
+
+        public TagEntry(String tag, double order) {
+            mTag = tag;
+            mOrder = order;
+        }
+    }
+
+    // the session
+    private final MXSession mSession;
+
+    // the tagged rooms by room id
+    private final HashMap<String, TagEntry> mTagByRoomId = new HashMap<>();
+
+    // true when the index must be rebuilt from the store
+    private boolean mIsDirty = true;
+
+    private final MXEventListener mEventsListener = new MXEventListener() {
+        @Override
+        public void onRoomTagEvent(String roomId) {
+            updateRoom(roomId);
+        }
+
+        @Override
+        public void onLeaveRoom(String roomId) {
+            removeRoom(roomId);
+        }
+
+        @Override
+        public void onJoinRoom(String roomId) {
+            updateRoom(roomId);
+        }
+
+        @Override
+        public void onStoreReady() {
+            invalidate();
+        }
+
+        @Override
+        public void onInitialSyncComplete() {
+            invalidate();
+        }
+    };
+
+    private RoomTagsIndex(MXSession session) {
+        mSession = session;
+    }
+
+    /**
+     * Provide the tags index of a session.
+     * @param session the session
+     * @return the index
+     */
+    public static RoomTagsIndex getInstance(MXSession session) {
+        return instances.get(session);
+    }
+
+    /**
+     * Release the tags index of a session.
+     * @param session the session
+     */
+    public static void removeInstance(MXSession session) {
+        instances.remove(session);
+    }
+
+    /**
+     * Build the tag entry of a room.
+     * The favourite tag takes precedence over the low priority one.
+     * @param room the room
+     * @return the tag entry, null if the room has no favourite or low priority tag.
+     */
+    private static TagEntry buildEntry(Room room) {
+        RoomTag tag = room.getAccountData().roomTag(RoomTag.ROOM_TAG_FAVOURITE);
+
+        if (null == tag) {
+            tag = room.getAccountData().roomTag(RoomTag.ROOM_TAG_LOW_PRIORITY);
+        }
+
+        if (null == tag) {
+            return null;
+        }
+
+        return new TagEntry(tag.mName, (null != tag.mOrder) ? tag.mOrder : Double.MAX_VALUE);
+    }
+
+    /**
+     * Rebuild the index from the store if it is dirty.
+     */
+    private void checkIndex() {
+        if (mIsDirty && mSession.isAlive()) {
+            mTagByRoomId.clear();
+
+            Collection<Room> rooms = mSession.getDataHandler().getStore().getRooms();
+
+            if (null != rooms) {
+                for (Room room : rooms) {
+                    TagEntry entry = buildEntry(room);
+
+                    if (null != entry) {
+                        mTagByRoomId.put(room.getRoomId(), entry);
+                    }
+                }
+            }
+
+            mIsDirty = false;
+        }
+    }
+
+    /**
+     * Force the index to be rebuilt at the next request.
+     */
+    public synchronized void invalidate() {
+        mIsDirty = true;
+    }
+
+    /**
+     * Update the tag of a room.
+     * @param roomId the room id
+     */
+    public synchronized void updateRoom(String roomId) {
+        if (mIsDirty || !mSession.isAlive()) {
+            return;
+        }
+
+        Room room = mSession.getDataHandler().getStore().getRoom(roomId);
+        TagEntry entry = (null != room) ? buildEntry(room) : null;
+
+        if (null != entry) {
+            mTagByRoomId.put(roomId, entry);
+        } else {
+            mTagByRoomId.remove(roomId);
+        }
+    }
+
+    /**
+     * Remove a room from the index.
+     * @param roomId the room id
+     */
+    public synchronized void removeRoom(String roomId) {
+        mTagByRoomId.remove(roomId);
+    }
+
+    /**
+     * Provide the tag of a room.
+     * @param roomId the room id
+     * @return the tag entry, null if the room has no favourite or low priority tag.
+     */
+    public synchronized TagEntry getTag(String roomId) {
+        checkIndex();
+        return mTagByRoomId.get(roomId);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector;
+
+import android.text.TextUtils;
+
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+/**
+ * Texts of the rooms search indexes ({@link RoomSearchIndex} and {@link PublicRoomsSearchIndex}).
+ * The indexed texts are normalised (lowercase, without accents) and split into trigrams.
+ */
+class SearchTextUtils {
+    // the indexed substrings length
+    static final int NGRAM_LENGTH = 3;
+
+    // the fields separator in the indexed text (never in a normalised pattern)
+    private static final String FIELDS_SEPARATOR = "\n";
+
+    private static final Pattern DIACRITICAL_MARKS_PATTERN = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    /**
+     * Normalise a text i.e. lowercase it and remove its accents.
+     * @param text the text
+     * @return the normalised text
+     */
+    static String normalise(String text) {
+        if (null == text) {
+            return null;
+        }
+
+        return DIACRITICAL_MARKS_PATTERN.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+    }
+
+    /**
+     * Build the normalised indexed text of a room.
+     * @param displayName the room display name
+     * @param aliases the room aliases
+     * @param topic the room topic
+     * @return the normalised text
+     */
+    static String buildText(String displayName, Collection<String> aliases, String topic) {
+        StringBuilder builder = new StringBuilder();
+
+        if (!TextUtils.isEmpty(displayName)) {
+            builder.append(displayName).append(FIELDS_SEPARATOR);
+        }
+
+        if (null != aliases) {
+            for (String alias : aliases) {
+                if (!TextUtils.isEmpty(alias)) {
+                    builder.append(alias).append(FIELDS_SEPARATOR);
+                }
+            }
+        }
+
+        if (!TextUtils.isEmpty(topic)) {
+            builder.append(topic);
+        }
+
+        return normalise(builder.toString());
+    }
+
+    /**
+     * Provide the distinct trigrams of a text.
+     * @param text the text
+     * @return the trigrams
+     */
+    static HashSet<String> getNgrams(String text) {
+        HashSet<String> ngrams = new HashSet<>();
+
+        for (int pos = 0; (pos + NGRAM_LENGTH) <= text.length(); pos++) {
+            ngrams.add(text.substring(pos, pos + NGRAM_LENGTH));
+        }
+
+        return ngrams;
+    }
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.MyUser;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomState;
+import org.matrix.androidsdk.listeners.IMXEventListener;
+import org.matrix.androidsdk.listeners.MXEventListener;
+import org.matrix.androidsdk.rest.model.Event;
+import org.matrix.androidsdk.rest.model.User;
+import org.matrix.androidsdk.rest.model.bingrules.BingRule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import im.vector.util.ListenersProfiler;
+
+/**
+ * Dispatch the events of a session to the application listeners.
+ * The SDK calls its listeners one after the other, inside its events handling, so a slow listener delays
+ * the events handling of every session.
+ * This dispatcher is the only application listener of a session data handler : the SDK callbacks are queued
+ * in an ordered queue per session, which is drained in the UI thread by slices of {@link #DRAIN_SLICE_MS}.
+ * So the sessions queues interleave with each other (and with the frames) instead of nesting inside the SDK callbacks.
+ * The listeners are called in the UI thread because the SDK is not thread safe.
+ * The room listeners (Room.addEventListener) are also dispatched : they are registered with addRoomListener().
+ * The queue depth, the queue delay and the per listener latency are monitored (see getReport).
+ * The calls are also reported to the ListenersProfiler when it is enabled.
+ */
+public class SessionEventsDispatcher implements IMXEventListener {
+    private static final String LOG_TAG = "SessionEventsDispatcher";
+
+    // a listener call which is slower than this value is logged (ms)
+    private static final long SLOW_LISTENER_CALL_MS = 50;
+
+    // the max duration of a queue drain before yielding to the other sessions and to the UI (ms)
+    private static final long DRAIN_SLICE_MS = 8;
+
+    private static final HashMap<String, SessionEventsDispatcher> instances = new HashMap<>();
+
+    /**
+     * A listener call.
+     */
+    private interface ListenerCall {
+        void call(IMXEventListener listener);
+    }
+
+    /**
+     * Forward the events of a room to a listener.
+     * It filters the events like the listener registered by Room.addEventListener.
+     */
+    private static class RoomEventsFilter extends MXEventListener {
+        private final Room mRoom;
+        private final IMXEventListener mListener;
+
+        RoomEventsFilter(Room room, IMXEventListener listener) {
+            mRoom = room;
+            mListener = listener;
+        }
+
+        private boolean isRoomEvent(String roomId) {
+            return TextUtils.equals(mRoom.getRoomId(), roomId);
+        }
+
+        @Override
+        public void onPresenceUpdate(Event event, User user) {
+            // only the room members presences
+            if ((null != user) && (null != mRoom.getMember(user.user_id))) {
+                mListener.onPresenceUpdate(event, user);
+            }
+        }
+
+        @Override
+        public void onLiveEvent(Event event, RoomState roomState) {
+            if (isRoomEvent(event.roomId)) {
+                mListener.onLiveEvent(event, roomState);
+            }
+        }
+
+        @Override
+        public void onLiveEventsChunkProcessed() {
+            mListener.onLiveEventsChunkProcessed();
+        }
+
+        @Override
+        public void onSentEvent(Event event) {
+            if (isRoomEvent(event.roomId)) {
+                mListener.onSentEvent(event);
+            }
+        }
+
+        @Override
+        public void onFailedSendingEvent(Event event) {
+            if (isRoomEvent(event.roomId)) {
+                mListener.onFailedSendingEvent(event);
+            }
+        }
+
+        @Override
+        public void onRoomInitialSyncComplete(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onRoomInitialSyncComplete(roomId);
+            }
+        }
+
+        @Override
+        public void onRoomInternalUpdate(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onRoomInternalUpdate(roomId);
+            }
+        }
+
+        @Override
+        public void onNewRoom(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onNewRoom(roomId);
+            }
+        }
+
+        @Override
+        public void onJoinRoom(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onJoinRoom(roomId);
+            }
+        }
+
+        @Override
+        public void onReceiptEvent(String roomId, List<String> senderIds) {
+            if (isRoomEvent(roomId)) {
+                mListener.onReceiptEvent(roomId, senderIds);
+            }
+        }
+
+        @Override
+        public void onRoomTagEvent(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onRoomTagEvent(roomId);
+            }
+        }
+
+        @Override
+        public void onRoomSyncWithLimitedTimeline(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onRoomSyncWithLimitedTimeline(roomId);
+            }
+        }
+
+        @Override
+        public void onLeaveRoom(String roomId) {
+            if (isRoomEvent(roomId)) {
+                mListener.onLeaveRoom(roomId);
+            }
+        }
+    }
+
+    /**
+     * The latency statistics of a listener.
+     */
+    private static class ListenerStats {
+        int mCallsCount = 0;
+        long mTotalDurationMs = 0;
+        long mMaxDurationMs = 0;
+    }
+
+    /**
+     * A queued SDK callback.
+     */
+    private static class PendingCall {
+        final String mCallName;
+        final ListenerCall mCall;
+        final long mQueuedTs;
+
+        PendingCall(String callName, ListenerCall call) {
+            mCallName = callName;
+            mCall = call;
+            mQueuedTs = System.currentTimeMillis();
+        }
+    }
+
+    // the matrix id
+    private final String mMatrixId;
+
+    // the listeners, the list is replaced when it is updated so it is not copied for each dispatched call
+    private List<IMXEventListener> mListeners = Collections.emptyList();
+
+    // the room events filters by room listener
+    private final HashMap<IMXEventListener, RoomEventsFilter> mRoomFilterByListener = new HashMap<>();
+
+    // the statistics by listener
+    private final HashMap<IMXEventListener, ListenerStats> mStatsByListener = new HashMap<>();
+
+    // the queued calls, in the events order
+    private final ArrayDeque<PendingCall> mPendingCalls = new ArrayDeque<>();
+    // true when a drain is posted
+    private boolean mIsDrainPosted = false;
+    // true when the dispatcher is released
+    private boolean mIsReleased = false;
+
+    // the queue monitoring
+    private int mMaxQueueDepth = 0;
+    private long mMaxQueueDelayMs = 0;
+
+    private final Handler mUIHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private SessionEventsDispatcher(MXSession session) {
+        mMatrixId = session.getMyUserId();
+    }
+
+    /**
+     * Provide the dispatcher of a session.
+     * It is registered to the session data handler at creation.
+     * An unregistered dispatcher is returned for a released session.
+     * @param session the session
+     * @return the dispatcher
+     */
+    public static synchronized SessionEventsDispatcher getInstance(MXSession session) {
+        // the session has been released : provide an unregistered dispatcher
+        if (!session.isAlive()) {
+            return new SessionEventsDispatcher(session);
+        }
+
+        SessionEventsDispatcher dispatcher = instances.get(session.getMyUserId());
+
+        if (null == dispatcher) {
+            dispatcher = new SessionEventsDispatcher(session);
+            instances.put(session.getMyUserId(), dispatcher);
+            session.getDataHandler().addListener(dispatcher);
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Release the dispatcher of a session.
+     * @param session the session
+     */
+    public static synchronized void removeInstance(MXSession session) {
+        SessionEventsDispatcher dispatcher = instances.remove(session.getMyUserId());
+
+        if (null != dispatcher) {
+            if (session.isAlive()) {
+                session.getDataHandler().removeListener(dispatcher);
+            }
+
+            dispatcher.release();
+        }
+    }
+
+    /**
+     * Drop the queued calls and the listeners.
+     */
+    private synchronized void release() {
+        mIsReleased = true;
+        mPendingCalls.clear();
+        mUIHandler.removeCallbacks(mDrainRunnable);
+        mIsDrainPosted = false;
+
+        mListeners = Collections.emptyList();
+        mRoomFilterByListener.clear();
+    }
+
+    /**
+     * Add a listener, it is called in the UI thread.
+     * @param listener the listener
+     */
+    public synchronized void addListener(IMXEventListener listener) {
+        if ((null != listener) && !mListeners.contains(listener)) {
+            ArrayList<IMXEventListener> listeners = new ArrayList<>(mListeners);
+            listeners.add(listener);
+            mListeners = listeners;
+        }
+    }
+
+    /**
+     * Add a listener of the events of a room, called in the UI thread.
+     * It replaces Room.addEventListener, which registers the listener to the session data handler.
+     * The typing users of the room are not updated : they must be read from the typing events.
+     * @param room the room
+     * @param listener the listener
+     */
+    public synchronized void addRoomListener(Room room, IMXEventListener listener) {
+        if ((null != room) && (null != listener) && !mRoomFilterByListener.containsKey(listener)) {
+            RoomEventsFilter filter = new RoomEventsFilter(room, listener);
+            mRoomFilterByListener.put(listener, filter);
+            addListener(filter);
+        }
+    }
+
+    /**
+     * Remove a listener.
+     * The queued calls are not dispatched to a removed listener.
+     * @param listener the listener
+     */
+    public synchronized void removeListener(IMXEventListener listener) {
+        ArrayList<IMXEventListener> listeners = new ArrayList<>(mListeners);
+        RoomEventsFilter filter = mRoomFilterByListener.remove(listener);
+
+        if (null != filter) {
+            listeners.remove(filter);
+            mStatsByListener.remove(filter);
+        }
+
+        listeners.remove(listener);
+        mStatsByListener.remove(listener);
+        mListeners = listeners;
+    }
+
+    /**
+     * Provide the name of a listener in the statistics.
+     * @param listener the listener
+     * @return the class name of the listener (of the room listener for a room events filter)
+     */
+    private static String getListenerName(IMXEventListener listener) {
+        if (listener instanceof RoomEventsFilter) {
+            return ((RoomEventsFilter) listener).mListener.getClass().getName();
+        }
+
+        return listener.getClass().getName();
+    }
+
+    /**
+     * Describe the dispatcher monitoring : the queue depth and delay, and the slowest listener.
+     * @return the monitoring description
+     */
+    public synchronized String getReport() {
+        String slowestListener = null;
+        ListenerStats slowestStats = null;
+
+        for (IMXEventListener listener : mStatsByListener.keySet()) {
+            ListenerStats stats = mStatsByListener.get(listener);
+
+            if ((null == slowestStats) || (stats.mMaxDurationMs > slowestStats.mMaxDurationMs)) {
+                slowestListener = getListenerName(listener);
+                slowestStats = stats;
+            }
+        }
+
+        String report = "queue depth " + mPendingCalls.size() + " (max " + mMaxQueueDepth + "), max queue delay " + mMaxQueueDelayMs + " ms";
+
+        if (null != slowestStats) {
+            report += ", slowest listener " + slowestListener + " (max " + slowestStats.mMaxDurationMs + " ms, " + slowestStats.mTotalDurationMs + " ms in " + slowestStats.mCallsCount + " calls)";
+        }
+
+        return report;
+    }
+
+    /**
+     * Call the listeners and monitor their latencies (UI thread).
+     * @param pendingCall the call
+     */
+    private void callListeners(PendingCall pendingCall) {
+        List<IMXEventListener> listeners;
+
+        synchronized (this) {
+            listeners = mListeners;
+        }
+
+        for (IMXEventListener listener : listeners) {
+            long startTime = System.nanoTime();
+
+            try {
+                pendingCall.mCall.call(listener);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "## callListeners() : " + pendingCall.mCallName + " failed " + e.getMessage());
+            }
+
+            long durationNs = System.nanoTime() - startTime;
+            long duration = durationNs / 1000000L;
+
+            ListenersProfiler.getInstance().record(getListenerName(listener), pendingCall.mCallName, durationNs);
+
+            synchronized (this) {
+                ListenerStats stats = mStatsByListener.get(listener);
+
+                if (null == stats) {
+                    stats = new ListenerStats();
+                    mStatsByListener.put(listener, stats);
+                }
+
+                stats.mCallsCount++;
+                stats.mTotalDurationMs += duration;
+                stats.mMaxDurationMs = Math.max(stats.mMaxDurationMs, duration);
+            }
+
+            if (duration > SLOW_LISTENER_CALL_MS) {
+                Log.d(LOG_TAG, "## callListeners() : " + mMatrixId + " " + getListenerName(listener) + "." + pendingCall.mCallName + " took " + duration + " ms");
+            }
+        }
+    }
+
+    /**
+     * Queue a call to the listeners.
+     * @param callName the call name
+     * @param call the call
+     */
+    private synchronized void dispatch(String callName, ListenerCall call) {
+        if (mIsReleased || mListeners.isEmpty()) {
+            return;
+        }
+
+        mPendingCalls.add(new PendingCall(callName, call));
+        mMaxQueueDepth = Math.max(mMaxQueueDepth, mPendingCalls.size());
+
+        if (!mIsDrainPosted) {
+            mIsDrainPosted = true;
+            mUIHandler.post(mDrainRunnable);
+        }
+    }
+
+    /**
+     * Dispatch the queued calls in the events order during {@link #DRAIN_SLICE_MS} (UI thread).
+     * The remaining calls are dispatched in another slice, after the messages posted by the other sessions.
+     */
+    private void drain() {
+        long sliceEndTs = System.currentTimeMillis() + DRAIN_SLICE_MS;
+
+        while (true) {
+            PendingCall pendingCall;
+
+            synchronized (this) {
+                pendingCall = mPendingCalls.poll();
+
+                if (null == pendingCall) {
+                    mIsDrainPosted = false;
+                    return;
+                }
+
+                if (System.currentTimeMillis() >= sliceEndTs) {
+                    // let the other sessions and the UI run
+                    mPendingCalls.addFirst(pendingCall);
+                    mUIHandler.post(mDrainRunnable);
+                    return;
+                }
+
+                mMaxQueueDelayMs = Math.max(mMaxQueueDelayMs, System.currentTimeMillis() - pendingCall.mQueuedTs);
+            }
+
+            callListeners(pendingCall);
+        }
+    }
+
+    //==============================================================================================================
+    // IMXEventListener
+    //==============================================================================================================
+
+    @Override
+    public void onStoreReady() {
+        dispatch("onStoreReady", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onStoreReady();
+            }
+        });
+    }
+
+    @Override
+    public void onPresenceUpdate(final Event event, final User user) {
+        dispatch("onPresenceUpdate", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onPresenceUpdate(event, user);
+            }
+        });
+    }
+
+    @Override
+    public void onAccountInfoUpdate(final MyUser myUser) {
+        dispatch("onAccountInfoUpdate", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onAccountInfoUpdate(myUser);
+            }
+        });
+    }
+
+    @Override
+    public void onIgnoredUsersListUpdate() {
+        dispatch("onIgnoredUsersListUpdate", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onIgnoredUsersListUpdate();
+            }
+        });
+    }
+
+    @Override
+    public void onLiveEvent(final Event event, final RoomState roomState) {
+        dispatch("onLiveEvent", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onLiveEvent(event, roomState);
+            }
+        });
+    }
+
+    @Override
+    public void onLiveEventsChunkProcessed() {
+        dispatch("onLiveEventsChunkProcessed", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onLiveEventsChunkProcessed();
+            }
+        });
+    }
+
+    @Override
+    public void onBingEvent(final Event event, final RoomState roomState, final BingRule bingRule) {
+        dispatch("onBingEvent", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onBingEvent(event, roomState, bingRule);
+            }
+        });
+    }
+
+    @Override
+    public void onSentEvent(final Event event) {
+        dispatch("onSentEvent", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onSentEvent(event);
+            }
+        });
+    }
+
+    @Override
+    public void onFailedSendingEvent(final Event event) {
+        dispatch("onFailedSendingEvent", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onFailedSendingEvent(event);
+            }
+        });
+    }
+
+    @Override
+    public void onBingRulesUpdate() {
+        dispatch("onBingRulesUpdate", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onBingRulesUpdate();
+            }
+        });
+    }
+
+    @Override
+    public void onInitialSyncComplete() {
+        dispatch("onInitialSyncComplete", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onInitialSyncComplete();
+            }
+        });
+    }
+
+    @Override
+    public void onNewRoom(final String roomId) {
+        dispatch("onNewRoom", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onNewRoom(roomId);
+            }
+        });
+    }
+
+    @Override
+    public void onJoinRoom(final String roomId) {
+        dispatch("onJoinRoom", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onJoinRoom(roomId);
+            }
+        });
+    }
+
+    @Override
+    public void onRoomInitialSyncComplete(final String roomId) {
+        dispatch("onRoomInitialSyncComplete", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onRoomInitialSyncComplete(roomId);
+            }
+        });
+    }
+
+    @Override
+    public void onRoomInternalUpdate(final String roomId) {
+        dispatch("onRoomInternalUpdate", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onRoomInternalUpdate(roomId);
+            }
+        });
+    }
+
+    @Override
+    public void onLeaveRoom(final String roomId) {
+        dispatch("onLeaveRoom", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onLeaveRoom(roomId);
+            }
+        });
+    }
+
+    @Override
+    public void onReceiptEvent(final String roomId, final List<String> senderIds) {
+        dispatch("onReceiptEvent", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onReceiptEvent(roomId, senderIds);
+            }
+        });
+    }
+
+    @Override
+    public void onRoomTagEvent(final String roomId) {
+        dispatch("onRoomTagEvent", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onRoomTagEvent(roomId);
+            }
+        });
+    }
+
+    @Override
+    public void onRoomSyncWithLimitedTimeline(final String roomId) {
+        dispatch("onRoomSyncWithLimitedTimeline", new ListenerCall() {
+            @Override
+            public void call(IMXEventListener listener) {
+                listener.onRoomSyncWithLimitedTimeline(roomId);
+            }
+        });
+    }
+}
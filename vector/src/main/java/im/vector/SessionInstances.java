@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.listeners.IMXEventListener;
+
+import java.util.HashMap;
+
+/**
+ * Registry of the per session instances kept up to date by the session events
+ * (e.g. {@link RoomTagsIndex}, {@link RoomDisplayNamesCache} and {@link RoomSearchIndex}).
+ * The instance of an alive session is registered with its events listener in the {@link SessionEventsDispatcher}
+ * until it is removed. The instance of a dead session is not registered.
+ * @param <T> the instances type
+ */
+abstract class SessionInstances<T> {
+
+    // the instances by user id
+    private final HashMap<String, T> mInstances = new HashMap<>();
+
+    /**
+     * Create the instance of a session.
+     * @param session the session
+     * @return the instance
+     */
+    protected abstract T create(MXSession session);
+
+    /**
+     * Provide the events listener of an instance.
+     * @param instance the instance
+     * @return the events listener
+     */
+    protected abstract IMXEventListener getEventsListener(T instance);
+
+    /**
+     * Provide the instance of a session.
+     * @param session the session
+     * @return the instance
+     */
+    synchronized T get(MXSession session) {
+        T instance = mInstances.get(session.getMyUserId());
+
+        if (null == instance) {
+            instance = create(session);
+
+            if (session.isAlive()) {
+                mInstances.put(session.getMyUserId(), instance);
+                SessionEventsDispatcher.getInstance(session).addListener(getEventsListener(instance));
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Release the instance of a session.
+     * @param session the session
+     */
+    synchronized void remove(MXSession session) {
+        T instance = mInstances.remove(session.getMyUserId());
+
+        if ((null != instance) && session.isAlive()) {
+            SessionEventsDispatcher.getInstance(session).removeListener(getEventsListener(instance));
+        }
+    }
+}
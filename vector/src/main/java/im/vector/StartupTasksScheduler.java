@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Singleton class running the non critical application startup tasks.
+ * The tasks are launched by priority once the UI thread is idle (i.e the first activity has been drawn),
+ * either in the UI thread or in a low priority background thread.
+ * Each task execution time is logged and can be retrieved with {@link #getTimings()}.
+ */
+public class StartupTasksScheduler {
+    private static final String LOG_TAG = "StartupTasksScheduler";
+
+    // the tasks priorities (the lowest value is run first)
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    private static StartupTasksScheduler instance = null;
+
+    /**
+     * A startup task description.
+     */
+    private static class StartupTask {
+        public final String mName;
+        public final int mPriority;
+        public final boolean mInBackground;
+        public final Runnable mRunnable;
+
+        public StartupTask(String name, int priority, boolean inBackground, Runnable runnable) {
+            mName = name;
+            mPriority = priority;
+            mInBackground = inBackground;
+            mRunnable = runnable;
+        }
+    }
+
+    // the tasks which are not yet launched
+    private final ArrayList<StartupTask> mPendingTasks = new ArrayList<>();
+
+    // the tasks execution times in ms by task name
+    private final LinkedHashMap<String, Long> mTimings = new LinkedHashMap<>();
+
+    // true when the idle handler is set
+    private boolean mIsWaitingForIdle = false;
+
+    // the background thread
+    private HandlerThread mStartupThread = null;
+    private Handler mStartupThreadHandler = null;
+
+    private StartupTasksScheduler() {
+    }
+
+    public static synchronized StartupTasksScheduler getInstance() {
+        if (instance == null) {
+            instance = new StartupTasksScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Schedule a task to be run in the UI thread when it is idle.
+     * This method must be called from the UI thread.
+     * @param name the task name
+     * @param priority the task priority
+     * @param runnable the task
+     */
+    public void scheduleOnIdle(String name, int priority, Runnable runnable) {
+        schedule(new StartupTask(name, priority, false, runnable));
+    }
+
+    /**
+     * Schedule a task to be run in a background thread when the UI thread is idle.
+     * This method must be called from the UI thread.
+     * @param name the task name
+     * @param priority the task priority
+     * @param runnable the task
+     */
+    public void scheduleInBackground(String name, int priority, Runnable runnable) {
+        schedule(new StartupTask(name, priority, true, runnable));
+    }
+
+    /**
+     * @return a copy of the executed tasks timings in ms by task name.
+     */
+    public synchronized Map<String, Long> getTimings() {
+        return new LinkedHashMap<>(mTimings);
+    }
+
+    /**
+     * Add a task to the pending tasks list.
+     * @param task the task
+     */
+    private void schedule(StartupTask task) {
+        synchronized (this) {
+            mPendingTasks.add(task);
+        }
+
+        if (!mIsWaitingForIdle) {
+            mIsWaitingForIdle = true;
+
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    mIsWaitingForIdle = false;
+                    launchPendingTasks();
+                    return false;
+                }
+            });
+        }
+    }
+
+    /**
+     * Launch the pending tasks by priority.
+     */
+    private void launchPendingTasks() {
+        ArrayList<StartupTask> tasks;
+
+        synchronized (this) {
+            tasks = new ArrayList<>(mPendingTasks);
+            mPendingTasks.clear();
+        }
+
+        Collections.sort(tasks, new Comparator<StartupTask>() {
+            @Override
+            public int compare(StartupTask task1, StartupTask task2) {
+                return task1.mPriority - task2.mPriority;
+            }
+        });
+
+        for (final StartupTask task : tasks) {
+            if (task.mInBackground) {
+                if (null == mStartupThread) {
+                    mStartupThread = new HandlerThread("StartupThread", Thread.MIN_PRIORITY);
+                    mStartupThread.start();
+                    mStartupThreadHandler = new Handler(mStartupThread.getLooper());
+                }
+
+                mStartupThreadHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        runTask(task);
+                    }
+                });
+            } else {
+                runTask(task);
+            }
+        }
+    }
+
+    /**
+     * Run a task and store its execution time.
+     * @param task the task
+     */
+    private void runTask(StartupTask task) {
+        long startTime = System.currentTimeMillis();
+
+        try {
+            task.mRunnable.run();
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## runTask() : " + task.mName + " failed " + e.getMessage());
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+
+        synchronized (this) {
+            mTimings.put(task.mName, duration);
+        }
+
+        Log.d(LOG_TAG, "## runTask() : " + task.mName + " done in " + duration + " ms");
+    }
+}
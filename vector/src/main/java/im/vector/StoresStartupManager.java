@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.IMXStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Singleton class coordinating the stores opening at application launch.
+ * All the stores are opened before waiting for any of them, and each store readiness is dispatched
+ * to every registered callback (an IMXStore supports only one listener).
+ * It also logs a per account timeline (open, ready, initial sync complete).
+ */
+public class StoresStartupManager {
+    private static final String LOG_TAG = "StoresStartupManager";
+
+    private static StoresStartupManager instance = null;
+
+    /**
+     * The startup timeline of an account.
+     */
+    private static class AccountTimeline {
+        // the store open timestamp
+        public long mOpenTs = -1;
+        // the store ready timestamp
+        public long mReadyTs = -1;
+        // the initial sync complete timestamp
+        public long mInitialSyncCompleteTs = -1;
+        // true if the store is ready or corrupted
+        public boolean mIsReady = false;
+        // the callbacks to run when the store is ready
+        public final ArrayList<Runnable> mPendingCallbacks = new ArrayList<>();
+    }
+
+    // the timelines by matrix id
+    private final HashMap<String, AccountTimeline> mTimelineByMatrixId = new HashMap<>();
+
+    private StoresStartupManager() {
+    }
+
+    public static synchronized StoresStartupManager getInstance() {
+        if (instance == null) {
+            instance = new StoresStartupManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Provide the timeline of an account.
+     * @param matrixId the matrix id
+     * @return the timeline
+     */
+    private AccountTimeline getTimeline(String matrixId) {
+        AccountTimeline timeline = mTimelineByMatrixId.get(matrixId);
+
+        if (null == timeline) {
+            timeline = new AccountTimeline();
+            mTimelineByMatrixId.put(matrixId, timeline);
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Open the stores of some sessions.
+     * Each store is loaded in its own thread so they are all opened before any readiness check.
+     * @param sessions the sessions
+     */
+    public void openStores(Collection<MXSession> sessions) {
+        for (MXSession session : sessions) {
+            if (session.isAlive()) {
+                openStore(session);
+            }
+        }
+    }
+
+    /**
+     * Open the store of a session if it is not yet ready.
+     * @param session the session
+     */
+    public void openStore(MXSession session) {
+        final String matrixId = session.getMyUserId();
+        final IMXStore store = session.getDataHandler().getStore();
+
+        synchronized (this) {
+            AccountTimeline timeline = getTimeline(matrixId);
+
+            // already opened
+            if (timeline.mOpenTs > 0) {
+                return;
+            }
+
+            timeline.mOpenTs = System.currentTimeMillis();
+            timeline.mIsReady = store.isReady();
+
+            if (timeline.mIsReady) {
+                timeline.mReadyTs = timeline.mOpenTs;
+            }
+        }
+
+        if (!store.isReady()) {
+            store.setMXStoreListener(new IMXStore.MXStoreListener() {
+                @Override
+                public void onStoreReady(String accountId) {
+                    onStoreLoaded(matrixId, null);
+                }
+
+                @Override
+                public void onStoreCorrupted(String accountId, String description) {
+                    onStoreLoaded(matrixId, description);
+                }
+            });
+
+            store.open();
+        }
+    }
+
+    /**
+     * A store is loaded.
+     * @param matrixId the matrix id
+     * @param corruptionDescription the corruption description, null if the store is valid.
+     */
+    private void onStoreLoaded(String matrixId, String corruptionDescription) {
+        ArrayList<Runnable> callbacks;
+
+        synchronized (this) {
+            AccountTimeline timeline = getTimeline(matrixId);
+            timeline.mIsReady = true;
+            timeline.mReadyTs = System.currentTimeMillis();
+
+            callbacks = new ArrayList<>(timeline.mPendingCallbacks);
+            timeline.mPendingCallbacks.clear();
+
+            if (null != corruptionDescription) {
+                Log.e(LOG_TAG, "## onStoreLoaded() : the store of " + matrixId + " is corrupted : " + corruptionDescription);
+            }
+
+            Log.d(LOG_TAG, "## onStoreLoaded() : " + matrixId + " store ready in " + (timeline.mReadyTs - timeline.mOpenTs) + " ms");
+        }
+
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Run a callback as soon as the store of a session is ready (or corrupted).
+     * The callback is run immediately if the store is already ready.
+     * @param session the session
+     * @param callback the callback
+     */
+    public void runWhenStoreReady(MXSession session, Runnable callback) {
+        boolean isReady;
+
+        synchronized (this) {
+            AccountTimeline timeline = getTimeline(session.getMyUserId());
+
+            isReady = timeline.mIsReady || session.getDataHandler().getStore().isReady();
+
+            if (!isReady) {
+                timeline.mPendingCallbacks.add(callback);
+            }
+        }
+
+        if (isReady) {
+            callback.run();
+        } else {
+            // the store has not been opened yet
+            openStore(session);
+        }
+    }
+
+    /**
+     * The initial sync of a session is complete.
+     * @param session the session
+     */
+    public synchronized void onInitialSyncComplete(MXSession session) {
+        AccountTimeline timeline = getTimeline(session.getMyUserId());
+        timeline.mInitialSyncCompleteTs = System.currentTimeMillis();
+
+        if (timeline.mOpenTs > 0) {
+            Log.d(LOG_TAG, "## onInitialSyncComplete() : " + session.getMyUserId() + " timeline : store ready in " + (timeline.mReadyTs - timeline.mOpenTs) + " ms, initial sync complete in " + (timeline.mInitialSyncCompleteTs - timeline.mOpenTs) + " ms");
+        }
+    }
+
+    /**
+     * Forget an account (e.g. after a logout).
+     * @param matrixId the matrix id
+     */
+    public synchronized void removeAccount(String matrixId) {
+        mTimelineByMatrixId.remove(matrixId);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.vector;
+
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.IMXStore;
+import org.matrix.androidsdk.data.Room;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Track the rooms with some unread notifications or highlights, per session.
+ * The rooms list is fully scanned once per session, then it is only updated
+ * with the rooms which have been updated by the live events.
+ */
+public class UnreadRoomsTracker {
+    private static final String LOG_TAG = "UnreadRoomsTracker";
+
+    // the unread room ids by matrix id
+    private final HashMap<String, HashSet<String>> mUnreadRoomIdsByMatrixId = new HashMap<>();
+
+    /**
+     * Tells if a room has some unread notifications or highlights.
+     * @param room the room
+     * @return true if the room must be counted in the badge.
+     */
+    private static boolean isUnread(Room room) {
+        return (0 != room.getNotificationCount()) || (0 != room.getHighlightCount());
+    }
+
+    /**
+     * Scan all the rooms of a session.
+     * @param session the session
+     * @return the unread room ids
+     */
+    private static HashSet<String> scanRooms(MXSession session) {
+        HashSet<String> unreadRoomIds = new HashSet<>();
+        Collection<Room> rooms = session.getDataHandler().getStore().getRooms();
+
+        if (null != rooms) {
+            for (Room room : rooms) {
+                if (isUnread(room)) {
+                    unreadRoomIds.add(room.getRoomId());
+                }
+            }
+        }
+
+        return unreadRoomIds;
+    }
+
+    /**
+     * Update the unread rooms of a session.
+     * A full scan is performed the first time the session is updated.
+     * @param session the session
+     * @param roomIds the updated room ids
+     */
+    public synchronized void update(MXSession session, Collection<String> roomIds) {
+        String matrixId = session.getMyUserId();
+        HashSet<String> unreadRoomIds = mUnreadRoomIdsByMatrixId.get(matrixId);
+
+        if (null == unreadRoomIds) {
+            mUnreadRoomIdsByMatrixId.put(matrixId, scanRooms(session));
+            return;
+        }
+
+        IMXStore store = session.getDataHandler().getStore();
+
+        for (String roomId : roomIds) {
+            Room room = store.getRoom(roomId);
+
+            if ((null != room) && isUnread(room)) {
+                unreadRoomIds.add(roomId);
+            } else {
+                unreadRoomIds.remove(roomId);
+            }
+        }
+    }
+
+    /**
+     * Forget a session, its rooms will be scanned again at next update.
+     * @param matrixId the session matrix id
+     */
+    public synchronized void removeSession(String matrixId) {
+        mUnreadRoomIdsByMatrixId.remove(matrixId);
+    }
+
+    /**
+     * Provide the number of unread rooms of some sessions.
+     * @param sessions the sessions
+     * @return the number of unread rooms
+     */
+    public synchronized int getUnreadRoomsCount(List<MXSession> sessions) {
+        int count = 0;
+
+        for (MXSession session : sessions) {
+            HashSet<String> unreadRoomIds = mUnreadRoomIdsByMatrixId.get(session.getMyUserId());
+
+            if (session.isAlive() && (null != unreadRoomIds)) {
+                count += unreadRoomIds.size();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Debug method : compare the tracked unread rooms with a full scan.
+     * The tracked rooms are replaced by the scanned ones when they are not consistent.
+     * @param sessions the sessions
+     * @return true if the tracked unread rooms were consistent.
+     */
+    public synchronized boolean checkConsistency(List<MXSession> sessions) {
+        boolean isConsistent = true;
+
+        for (MXSession session : sessions) {
+            HashSet<String> unreadRoomIds = mUnreadRoomIdsByMatrixId.get(session.getMyUserId());
+
+            if (session.isAlive() && (null != unreadRoomIds)) {
+                HashSet<String> scannedRoomIds = scanRooms(session);
+
+                if (!scannedRoomIds.equals(unreadRoomIds)) {
+                    Log.e(LOG_TAG, "## checkConsistency() : " + session.getMyUserId() + " tracks " + unreadRoomIds.size() + " unread rooms instead of " + scannedRoomIds.size());
+                    mUnreadRoomIdsByMatrixId.put(session.getMyUserId(), scannedRoomIds);
+                    isConsistent = false;
+                }
+            }
+        }
+
+        return isConsistent;
+    }
+}
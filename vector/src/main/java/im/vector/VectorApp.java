@@ -31,6 +31,8 @@ import im.vector.contacts.PIDsRetriever;
 import im.vector.ga.GAHelper;
 import im.vector.gcm.GcmRegistrationManager;
 import im.vector.services.EventStreamService;
+import im.vector.util.LaunchTimings;
+import im.vector.util.ListenersProfiler;
 import im.vector.util.LogUtilities;
 
 import java.io.File;
@@ -67,6 +69,9 @@ public class VectorApp extends Application {
         Log.d(LOG_TAG, "onCreate");
         super.onCreate();
 
+        LaunchTimings.onApplicationCreate();
+        LaunchTimings.startSpan(LaunchTimings.SPAN_APPLICATION_CREATE);
+
         instance = this;
 
         mOnActivityDestroyedListener = new EventEmitter<>();
@@ -74,6 +79,9 @@ public class VectorApp extends Application {
         mActivityTransitionTimer = null;
         mActivityTransitionTimerTask = null;
 
+        // the listeners profiling must be set before any session is created
+        ListenersProfiler.getInstance().init(this);
+
         try {
             PackageInfo pinfo = getPackageManager().getPackageInfo(getPackageName(), 0);
             VERSION_BUILD = pinfo.versionCode;
@@ -89,13 +97,36 @@ public class VectorApp extends Application {
             SDK_VERSION_STRING = "";
         }
 
-        LogUtilities.setLogDirectory(new File(getCacheDir().getAbsolutePath() + "/logs"));
-        LogUtilities.storeLogcat();
+        File logDirectory = new File(getCacheDir().getAbsolutePath() + "/logs");
+        LogUtilities.setLogDirectory(logDirectory);
+        LaunchTimings.setLogDirectory(logDirectory);
 
-        GAHelper.initGoogleAnalytics(getApplicationContext());
+        // the non critical tasks are delayed until the first activity is displayed
+        StartupTasksScheduler startupTasksScheduler = StartupTasksScheduler.getInstance();
+
+        startupTasksScheduler.scheduleOnIdle("initGoogleAnalytics", StartupTasksScheduler.PRIORITY_HIGH, new Runnable() {
+            @Override
+            public void run() {
+                GAHelper.initGoogleAnalytics(getApplicationContext());
+            }
+        });
 
         // get the contact update at application launch
-        ContactsManager.refreshLocalContactsSnapshot(this);
+        startupTasksScheduler.scheduleInBackground("refreshLocalContactsSnapshot", StartupTasksScheduler.PRIORITY_NORMAL, new Runnable() {
+            @Override
+            public void run() {
+                ContactsManager.refreshLocalContactsSnapshot(VectorApp.this);
+            }
+        });
+
+        startupTasksScheduler.scheduleInBackground("storeLogcat", StartupTasksScheduler.PRIORITY_LOW, new Runnable() {
+            @Override
+            public void run() {
+                LogUtilities.storeLogcat();
+            }
+        });
+
+        LaunchTimings.endSpan(LaunchTimings.SPAN_APPLICATION_CREATE);
     }
 
     public static VectorApp getInstance() {
@@ -129,6 +160,11 @@ public class VectorApp extends Application {
             }
         }
 
+        // the sync delays are adapted to the traffic and to the device state when the events stream is polled
+        if ((null != EventStreamService.getInstance()) && gcmRegistrationManager.isBackgroundSyncAllowed() && (!gcmRegistrationManager.useGCM() || !gcmRegistrationManager.hasPushKey())) {
+            EventStreamService.getInstance().startAdaptiveSync(gcmRegistrationManager.getBackgroundSyncDelay(), gcmRegistrationManager.getBackgroundSyncTimeOut());
+        }
+
         PIDsRetriever.getIntance().onAppBackgrounded();
 
         MyPresenceManager.advertiseAllUnavailable();
@@ -206,6 +242,10 @@ public class VectorApp extends Application {
             // get the contact update at application launch
             ContactsManager.refreshLocalContactsSnapshot(this);
 
+            if (null != EventStreamService.getInstance()) {
+                EventStreamService.getInstance().stopAdaptiveSync();
+            }
+
             ArrayList<MXSession> sessions = Matrix.getInstance(this).getSessions();
             for(MXSession session : sessions) {
                 session.getMyUser().refreshUserInfos(null);
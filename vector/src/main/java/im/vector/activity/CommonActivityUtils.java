@@ -60,6 +60,7 @@ import im.vector.VectorApp;
 import im.vector.Matrix;
 import im.vector.MyPresenceManager;
 import im.vector.R;
+import im.vector.StoresStartupManager;
 import im.vector.adapters.VectorRoomsSelectionAdapter;
 import im.vector.contacts.ContactsManager;
 import im.vector.contacts.PIDsRetriever;
@@ -80,6 +81,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import im.vector.util.NotificationAvatarLoader;
 import im.vector.util.VectorUtils;
 import me.leolin.shortcutbadger.ShortcutBadger;
 
@@ -346,6 +348,7 @@ public class CommonActivityUtils {
         ContactsManager.reset();
 
         MXMediasCache.clearThumbnailsCache(activity);
+        NotificationAvatarLoader.clearCache();
 
         if (goToLoginPage) {
             // go to login page
@@ -482,13 +485,10 @@ public class CommonActivityUtils {
             if ((null != sessions) && (sessions.size() > 0)) {
                 Log.d(LOG_TAG, "restart EventStreamService");
 
-                for (MXSession session : sessions) {
-                    boolean isSessionReady = session.getDataHandler().getStore().isReady();
-
-                    if (!isSessionReady) {
-                        session.getDataHandler().getStore().open();
-                    }
+                // open all the stores before waiting for any of them
+                StoresStartupManager.getInstance().openStores(sessions);
 
+                for (MXSession session : sessions) {
                     // session to activate
                     matrixIds.add(session.getCredentials().userId);
                 }
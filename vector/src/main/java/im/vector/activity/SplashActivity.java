@@ -25,9 +25,12 @@ import org.matrix.androidsdk.listeners.MXEventListener;
 import im.vector.ErrorListener;
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
+import im.vector.StoresStartupManager;
 import im.vector.gcm.GcmRegistrationManager;
 import im.vector.receiver.VectorUniversalLinkReceiver;
 import im.vector.services.EventStreamService;
+import im.vector.util.LaunchTimings;
 import im.vector.util.VectorUtils;
 
 import java.util.ArrayList;
@@ -77,6 +80,10 @@ public class SplashActivity extends MXCActionBarActivity {
         if (mInitialSyncComplete && mPusherRegistrationComplete) {
             Log.e(LOG_TAG, "finishIfRead start VectorHomeActivity");
 
+            LaunchTimings.endSpan(LaunchTimings.SPAN_INITIAL_SYNC);
+            LaunchTimings.endSpan(LaunchTimings.SPAN_PUSHER_REGISTRATION);
+            LaunchTimings.endSpan(LaunchTimings.SPAN_SPLASH);
+
             if (!hasCorruptedStore()) {
                 // Go to the home page
                 Intent intent = new Intent(SplashActivity.this, VectorHomeActivity.class);
@@ -105,6 +112,7 @@ public class SplashActivity extends MXCActionBarActivity {
                     intent.putExtra(VectorHomeActivity.EXTRA_JUMP_TO_ROOM_PARAMS, params);
                 }
 
+                LaunchTimings.startSpan(LaunchTimings.SPAN_HOME_FIRST_FRAME);
                 startActivity(intent);
                 SplashActivity.this.finish();
             } else {
@@ -119,6 +127,9 @@ public class SplashActivity extends MXCActionBarActivity {
 
         Log.e(LOG_TAG, "onCreate");
 
+        LaunchTimings.onSplashCreate();
+        LaunchTimings.startSpan(LaunchTimings.SPAN_SPLASH);
+
         setContentView(R.layout.vector_activity_splash);
 
         mSessions =  Matrix.getInstance(getApplicationContext()).getSessions();
@@ -134,11 +145,31 @@ public class SplashActivity extends MXCActionBarActivity {
 
         ArrayList<String> matrixIds = new ArrayList<String>();
 
-        final long startTime = System.currentTimeMillis();
+        // open all the stores before waiting for any of them
+        LaunchTimings.startSpan(LaunchTimings.SPAN_STORES_LOAD);
+        StoresStartupManager.getInstance().openStores(mSessions);
+
+        final int[] pendingStoresCount = {mSessions.size()};
+
+        for(MXSession session : mSessions) {
+            StoresStartupManager.getInstance().runWhenStoreReady(session, new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (pendingStoresCount) {
+                        pendingStoresCount[0]--;
+
+                        if (0 == pendingStoresCount[0]) {
+                            LaunchTimings.endSpan(LaunchTimings.SPAN_STORES_LOAD);
+                        }
+                    }
+                }
+            });
+        }
+
+        LaunchTimings.startSpan(LaunchTimings.SPAN_INITIAL_SYNC);
 
         for(MXSession session : mSessions) {
             final MXSession fSession = session;
-            session.getDataHandler().getStore().open();
 
             final IMXEventListener eventListener = new MXEventListener() {
                 @Override
@@ -147,6 +178,7 @@ public class SplashActivity extends MXCActionBarActivity {
                     boolean noMoreListener;
 
                     Log.e(LOG_TAG, "Session " + fSession.getCredentials().userId + " is initialized");
+                    StoresStartupManager.getInstance().onInitialSyncComplete(fSession);
 
                     synchronized(LOG_TAG) {
                         mDoneListeners.put(fSession, mListeners.get(fSession));
@@ -160,6 +192,7 @@ public class SplashActivity extends MXCActionBarActivity {
                     }
 
                     if (noMoreListener) {
+                        LaunchTimings.endSpan(LaunchTimings.SPAN_INITIAL_SYNC);
                         finishIfReady();
                     }
                 }
@@ -167,7 +200,7 @@ public class SplashActivity extends MXCActionBarActivity {
 
             if (!fSession.getDataHandler().isInitialSyncComplete()) {
                 mListeners.put(fSession, eventListener);
-                fSession.getDataHandler().addListener(eventListener);
+                SessionEventsDispatcher.getInstance(fSession).addListener(eventListener);
 
                 // Set the main error listener
                 fSession.setFailureCallback(new ErrorListener(fSession, this));
@@ -204,6 +237,7 @@ public class SplashActivity extends MXCActionBarActivity {
         mPusherRegistrationComplete = mGcmRegistrationManager.isGCMRegistred();
 
         if (!mPusherRegistrationComplete) {
+            LaunchTimings.startSpan(LaunchTimings.SPAN_PUSHER_REGISTRATION);
             mGcmRegistrationManager.registerPusher(getApplicationContext(), new GcmRegistrationManager.GcmRegistrationIdListener() {
                 @Override
                 public void onPusherRegistered() {
@@ -216,6 +250,7 @@ public class SplashActivity extends MXCActionBarActivity {
                     });
 
                     mPusherRegistrationComplete = true;
+                    LaunchTimings.endSpan(LaunchTimings.SPAN_PUSHER_REGISTRATION);
                     finishIfReady();
                 }
 
@@ -262,7 +297,7 @@ public class SplashActivity extends MXCActionBarActivity {
 
         for(MXSession session : sessions) {
             if (session.isAlive()) {
-                session.getDataHandler().removeListener(mDoneListeners.get(session));
+                SessionEventsDispatcher.getInstance(session).removeListener(mDoneListeners.get(session));
                 session.setFailureCallback(null);
             }
         }
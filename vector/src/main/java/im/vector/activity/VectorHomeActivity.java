@@ -40,6 +40,7 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -59,11 +60,13 @@ import im.vector.Matrix;
 import im.vector.MyPresenceManager;
 import im.vector.PublicRoomsManager;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.VectorApp;
 import im.vector.fragments.VectorRecentsListFragment;
 import im.vector.ga.GAHelper;
 import im.vector.receiver.VectorUniversalLinkReceiver;
 import im.vector.services.EventStreamService;
+import im.vector.util.LaunchTimings;
 import im.vector.util.RageShake;
 import im.vector.util.VectorUtils;
 
@@ -222,6 +225,17 @@ public class VectorHomeActivity extends AppCompatActivity implements VectorRecen
 
         sharedInstance = this;
 
+        // measure the launch duration until the home screen is drawn
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                LaunchTimings.onHomeFirstFrame();
+                return true;
+            }
+        });
+
         mWaitingView = findViewById(R.id.listView_spinner_views);
 
         // use a toolbar instead of the actionbar
@@ -436,10 +450,10 @@ public class VectorHomeActivity extends AppCompatActivity implements VectorRecen
             }
         };
 
-        mSession.getDataHandler().addListener(mLiveEventListener);
+        SessionEventsDispatcher.getInstance(mSession).addListener(mLiveEventListener);
 
         // initialize the public rooms list
-        PublicRoomsManager.setSession(mSession);
+        PublicRoomsManager.setSession(this, mSession);
         PublicRoomsManager.refresh(null);
     }
 
@@ -466,7 +480,7 @@ public class VectorHomeActivity extends AppCompatActivity implements VectorRecen
 
         // GA issue : mSession was null
         if ((null != mSession) && mSession.isAlive()) {
-            mSession.getDataHandler().removeListener(mLiveEventListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mLiveEventListener);
         }
     }
 
@@ -481,7 +495,7 @@ public class VectorHomeActivity extends AppCompatActivity implements VectorRecen
         }
 
         if (mSession.isAlive()) {
-            mSession.getDataHandler().removeListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mEventsListener);
         }
 
         synchronized (this) {
@@ -537,7 +551,7 @@ public class VectorHomeActivity extends AppCompatActivity implements VectorRecen
         };
 
         if (mSession.isAlive()) {
-            mSession.getDataHandler().addListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
         }
 
         VectorApp.setCurrentActivity(this);
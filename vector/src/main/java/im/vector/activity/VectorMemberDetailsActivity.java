@@ -44,6 +44,7 @@ import org.matrix.androidsdk.rest.model.User;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.adapters.MemberDetailsAdapter;
 import im.vector.adapters.MemberDetailsAdapter.AdapterMemberActionItems;
 import im.vector.util.VectorUtils;
@@ -957,10 +958,10 @@ public class VectorMemberDetailsActivity extends MXCActionBarActivity implements
 
         if (null != mSession)  {
             if (null != mRoom) {
-                mRoom.removeEventListener(mLiveEventsListener);
+                SessionEventsDispatcher.getInstance(mSession).removeListener(mLiveEventsListener);
             }
 
-            mSession.getDataHandler().removeListener(mPresenceEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mPresenceEventsListener);
         }
     }
 
@@ -970,10 +971,10 @@ public class VectorMemberDetailsActivity extends MXCActionBarActivity implements
 
         if (null != mSession)  {
             if (null != mRoom) {
-                mRoom.addEventListener(mLiveEventsListener);
+                SessionEventsDispatcher.getInstance(mSession).addRoomListener(mRoom, mLiveEventsListener);
             }
 
-            mSession.getDataHandler().addListener(mPresenceEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).addListener(mPresenceEventsListener);
         }
     }
 
@@ -982,11 +983,11 @@ public class VectorMemberDetailsActivity extends MXCActionBarActivity implements
         super.onDestroy();
 
         if (null != mRoom) {
-            mRoom.removeEventListener(mLiveEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mLiveEventsListener);
         }
 
         if (null != mSession) {
-            mSession.getDataHandler().removeListener(mPresenceEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mPresenceEventsListener);
         }
     }
 }
@@ -62,6 +62,8 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.commonsware.cwac.anddown.AndDown;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 
 import org.matrix.androidsdk.MXSession;
 import org.matrix.androidsdk.call.IMXCall;
@@ -94,6 +96,8 @@ import org.matrix.androidsdk.view.AutoScrollDownListView;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.ReadMarkerScheduler;
+import im.vector.SessionEventsDispatcher;
 import im.vector.VectorApp;
 import im.vector.ViewedRoomTracker;
 import im.vector.fragments.VectorMessageListFragment;
@@ -331,7 +335,7 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
                         setTopic(roomState.topic);
                     } else if (Event.EVENT_TYPE_TYPING.equals(event.type)) {
                         Log.d(LOG_TAG, "on room typing");
-                        onRoomTypings();
+                        onRoomTypings(event);
                     }
                     // header room specific
                     else if (Event.EVENT_TYPE_STATE_ROOM_AVATAR.equals(event.type)) {
@@ -343,9 +347,8 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
                         // do not send read receipt for the typing events
                         // they are ephemeral ones.
                         if (!Event.EVENT_TYPE_TYPING.equals(event.type)) {
-                            if (null != mRoom) {
-                                mRoom.sendReadReceipt(null);
-                            }
+                            // the receipts are coalesced in the busy rooms
+                            ReadMarkerScheduler.getInstance().requestReadReceipt(mRoom);
                         }
                     }
                 }
@@ -765,7 +768,10 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
 
         if (null != mRoom) {
             // listen for room name or topic changes
-            mRoom.removeEventListener(mRoomEventListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mRoomEventListener);
+
+            // send the pending read receipt
+            ReadMarkerScheduler.getInstance().flush(mRoom);
         }
 
         Matrix.getInstance(this).removeNetworkEventListener(mNetworkEventListener);
@@ -773,7 +779,7 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
         if (mSession.isAlive()) {
             // GA reports a null dataHandler instance event if it seems impossible
             if (null != mSession.getDataHandler()) {
-                mSession.getDataHandler().removeListener(mGlobalEventListener);
+                SessionEventsDispatcher.getInstance(mSession).removeListener(mGlobalEventListener);
             }
         }
 
@@ -812,10 +818,10 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
             }
 
             // listen for room name or topic changes
-            mRoom.addEventListener(mRoomEventListener);
+            SessionEventsDispatcher.getInstance(mSession).addRoomListener(mRoom, mRoomEventListener);
         }
 
-        mSession.getDataHandler().addListener(mGlobalEventListener);
+        SessionEventsDispatcher.getInstance(mSession).addListener(mGlobalEventListener);
 
         Matrix.getInstance(this).addNetworkEventListener(mNetworkEventListener);
 
@@ -828,7 +834,7 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
 
         if (null != mRoom) {
             // reset the unread messages counter
-            mRoom.sendReadReceipt(null);
+            ReadMarkerScheduler.getInstance().sendReadReceipt(mRoom);
 
 
             String cachedText = Matrix.getInstance(this).getDefaultLatestChatMessageCache().getLatestText(this, mRoom.getRoomId());
@@ -2202,13 +2208,39 @@ public class VectorRoomActivity extends MXCActionBarActivity implements MatrixMe
         }
     }
 
+    /**
+     * Provide the typing users of a typing event.
+     * @param typingEvent the typing event
+     * @return the typing users ids
+     */
+    private static ArrayList<String> getTypingUsers(Event typingEvent) {
+        ArrayList<String> typingUsers = new ArrayList<String>();
+
+        try {
+            JsonObject content = typingEvent.getContentAsJsonObject();
+
+            if ((null != content) && content.has("user_ids")) {
+                for (JsonElement userId : content.getAsJsonArray("user_ids")) {
+                    typingUsers.add(userId.getAsString());
+                }
+            }
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## getTypingUsers() failed " + e.getMessage());
+        }
+
+        return typingUsers;
+    }
+
     /**
      * Display the typing status in the notification area.
+     * The room listener is dispatched by the SessionEventsDispatcher, so the room typing users are
+     * not updated by the SDK : they are read from the typing event.
+     * @param typingEvent the typing event
      */
-    private void onRoomTypings() {
+    private void onRoomTypings(Event typingEvent) {
         mLatestTypingMessage = null;
 
-        ArrayList<String> typingUsers = mRoom.getTypingUsers();
+        ArrayList<String> typingUsers = getTypingUsers(typingEvent);
 
         if ((null != typingUsers) && (typingUsers.size() > 0)) {
             String myUserId = mSession.getMyUserId();
@@ -32,6 +32,7 @@ import java.util.List;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.fragments.VectorRoomDetailsMembersFragment;
 import im.vector.fragments.VectorRoomSettingsFragment;
 import im.vector.fragments.VectorSearchRoomFilesListFragment;
@@ -188,7 +189,7 @@ public class VectorRoomDetailsActivity extends MXCActionBarActivity implements T
         super.onPause();
 
         // listen for room leave event
-        mRoom.removeEventListener(mEventListener);
+        SessionEventsDispatcher.getInstance(mSession).removeListener(mEventListener);
     }
 
     @Override
@@ -206,7 +207,7 @@ public class VectorRoomDetailsActivity extends MXCActionBarActivity implements T
             }
 
             // listen for room leave event
-            mRoom.addEventListener(mEventListener);
+            SessionEventsDispatcher.getInstance(mSession).addRoomListener(mRoom, mEventListener);
 
             // start the file search if the selected tab is the file one
             startFileSearch();
@@ -31,6 +31,7 @@ import org.matrix.androidsdk.rest.model.User;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.adapters.ParticipantAdapterItem;
 import im.vector.adapters.VectorAddParticipantsAdapter;
 import im.vector.contacts.Contact;
@@ -234,7 +235,7 @@ public class VectorRoomInviteMembersActivity extends VectorBaseSearchActivity {
     protected void onPause() {
         super.onPause();
 
-        mSession.getDataHandler().removeListener(mEventsListener);
+        SessionEventsDispatcher.getInstance(mSession).removeListener(mEventsListener);
         ContactsManager.removeListener(mContactsListener);
     }
 
@@ -242,7 +243,7 @@ public class VectorRoomInviteMembersActivity extends VectorBaseSearchActivity {
     protected void onResume() {
         super.onResume();
 
-        mSession.getDataHandler().addListener(mEventsListener);
+        SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
         ContactsManager.addListener(mContactsListener);
     }
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.adapters;
+
+import java.util.TimeZone;
+
+/**
+ * Day numbers of the rows of a messages timeline.
+ * The timeline is split into two segments :
+ * - the delivered events, whose day numbers are stored in an array with some free room at both ends
+ * so the back paginated and the live events are added without copy.
+ * - the undelivered events (invalid origin server timestamp), which are kept at the end of the timeline.
+ * They are displayed with the day of the latest delivered event.
+ */
+class MessagesDaysIndex {
+    // the initial array length
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the delivered events day numbers are stored in mDays[mStart, mStart + mDeliveredCount[
+    private int[] mDays = new int[INITIAL_CAPACITY];
+    private int mStart = INITIAL_CAPACITY / 2;
+    private int mDeliveredCount = 0;
+
+    // the undelivered events count
+    private int mUndeliveredCount = 0;
+
+    /**
+     * Compute the local day number of a timestamp.
+     * @param ts the timestamp
+     * @param timeZone the time zone
+     * @return the day number
+     */
+    static int toDay(long ts, TimeZone timeZone) {
+        return (int)((ts + timeZone.getOffset(ts)) / AdapterUtils.MS_IN_DAY);
+    }
+
+    /**
+     * Provide a timestamp in a local day.
+     * @param day the day number
+     * @param timeZone the time zone
+     * @return the timestamp of the middle of the day
+     */
+    static long toTimestamp(int day, TimeZone timeZone) {
+        long ts = day * AdapterUtils.MS_IN_DAY + AdapterUtils.MS_IN_DAY / 2;
+        return ts - timeZone.getOffset(ts);
+    }
+
+    /**
+     * Remove all the rows.
+     */
+    void clear() {
+        mStart = mDays.length / 2;
+        mDeliveredCount = 0;
+        mUndeliveredCount = 0;
+    }
+
+    /**
+     * @return the rows count
+     */
+    int size() {
+        return mDeliveredCount + mUndeliveredCount;
+    }
+
+    /**
+     * @return the delivered events count i.e. the position of the first undelivered event.
+     */
+    int getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /**
+     * @return the undelivered events count
+     */
+    int getUndeliveredCount() {
+        return mUndeliveredCount;
+    }
+
+    /**
+     * Provide the day number of a row.
+     * @param position the row position
+     * @param defaultDay the day to use when there is no delivered event
+     * @return the day number
+     */
+    int getDay(int position, int defaultDay) {
+        if (position < mDeliveredCount) {
+            return mDays[mStart + position];
+        }
+
+        return (mDeliveredCount > 0) ? mDays[mStart + mDeliveredCount - 1] : defaultDay;
+    }
+
+    /**
+     * Make some room before and after the delivered events.
+     */
+    private void grow() {
+        int[] days = new int[Math.max(INITIAL_CAPACITY, mDeliveredCount * 2)];
+        int start = (days.length - mDeliveredCount) / 2;
+
+        System.arraycopy(mDays, mStart, days, start, mDeliveredCount);
+        mDays = days;
+        mStart = start;
+    }
+
+    /**
+     * Insert a delivered event before the other rows.
+     * @param day the event day number
+     */
+    void addDeliveredToFront(int day) {
+        if (0 == mStart) {
+            grow();
+        }
+
+        mDays[--mStart] = day;
+        mDeliveredCount++;
+    }
+
+    /**
+     * Add a delivered event after the other delivered events, i.e. before the undelivered ones.
+     * @param day the event day number
+     */
+    void addDelivered(int day) {
+        if ((mStart + mDeliveredCount) == mDays.length) {
+            grow();
+        }
+
+        mDays[mStart + mDeliveredCount] = day;
+        mDeliveredCount++;
+    }
+
+    /**
+     * Add an undelivered event at the end.
+     */
+    void addUndelivered() {
+        mUndeliveredCount++;
+    }
+
+    /**
+     * The first undelivered event has been delivered.
+     * @param day the event day number
+     */
+    void onFirstUndeliveredDelivered(int day) {
+        mUndeliveredCount--;
+        addDelivered(day);
+    }
+
+    /**
+     * Remove a row.
+     * @param position the row position
+     */
+    void remove(int position) {
+        if ((position < 0) || (position >= size())) {
+            return;
+        }
+
+        if (position >= mDeliveredCount) {
+            mUndeliveredCount--;
+            return;
+        }
+
+        // shift the shortest side
+        if (position < (mDeliveredCount / 2)) {
+            System.arraycopy(mDays, mStart, mDays, mStart + 1, position);
+            mStart++;
+        } else {
+            System.arraycopy(mDays, mStart + position + 1, mDays, mStart + position, mDeliveredCount - position - 1);
+        }
+
+        mDeliveredCount--;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.adapters;
+
+import android.text.TextUtils;
+
+import org.matrix.androidsdk.data.IMXStore;
+import org.matrix.androidsdk.rest.model.ReceiptData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Read receipts of a room, by event id.
+ * The store lists the receipts of an event by scanning all the room receipts, so the messages list
+ * uses this index instead : the receipts of an event are read once from the store, when they are requested for the first time,
+ * then they are updated with the receipt events senders.
+ * The receipts of an event are sorted by descending timestamp (like IMXStore.getEventReceipts) and
+ * the receipt of the current user is excluded.
+ */
+class RoomReadReceiptsIndex {
+    private final IMXStore mStore;
+    private final String mRoomId;
+    private final String mMyUserId;
+
+    // the receipts by event id
+    private final HashMap<String, ArrayList<ReceiptData>> mReceiptsByEventId = new HashMap<>();
+    // the indexed receipt of each user
+    private final HashMap<String, ReceiptData> mReceiptByUserId = new HashMap<>();
+    // the events whose stored receipts have been indexed
+    private final HashSet<String> mLoadedEventIds = new HashSet<>();
+
+    /**
+     * Create the index of a room.
+     * @param store the store
+     * @param roomId the room id
+     * @param myUserId the current user id
+     */
+    RoomReadReceiptsIndex(IMXStore store, String roomId, String myUserId) {
+        mStore = store;
+        mRoomId = roomId;
+        mMyUserId = myUserId;
+    }
+
+    /**
+     * Some users have sent a read receipt.
+     * @param senderIds the senders
+     */
+    void onReceiptEvent(List<String> senderIds) {
+        if (null != senderIds) {
+            for (String userId : senderIds) {
+                updateReceipt(userId);
+            }
+        }
+    }
+
+    /**
+     * Provide the receipts of an event.
+     * @param eventId the event id
+     * @return the receipts sorted by descending timestamp, null if there is none
+     */
+    List<ReceiptData> getEventReceipts(String eventId) {
+        if ((null != eventId) && !mLoadedEventIds.contains(eventId)) {
+            loadEventReceipts(eventId);
+        }
+
+        return mReceiptsByEventId.get(eventId);
+    }
+
+    /**
+     * Index the stored receipts of an event.
+     * It includes the receipts of the users who are not members of the room.
+     * @param eventId the event id
+     */
+    private void loadEventReceipts(String eventId) {
+        mLoadedEventIds.add(eventId);
+
+        List<ReceiptData> receipts = mStore.getEventReceipts(mRoomId, eventId, true, false);
+
+        if (null != receipts) {
+            for (ReceiptData receipt : receipts) {
+                // the receipts updated by the receipt events are already indexed
+                if ((null != receipt.userId) && !TextUtils.equals(receipt.userId, mMyUserId) && !mReceiptByUserId.containsKey(receipt.userId)) {
+                    addReceipt(receipt);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the receipt of a user to its current event.
+     * @param userId the user id
+     */
+    private void updateReceipt(String userId) {
+        if ((null == userId) || TextUtils.equals(userId, mMyUserId)) {
+            return;
+        }
+
+        ReceiptData receipt = mStore.getReceipt(mRoomId, userId);
+        ReceiptData indexedReceipt = mReceiptByUserId.get(userId);
+
+        if (null != indexedReceipt) {
+            ArrayList<ReceiptData> receipts = mReceiptsByEventId.get(indexedReceipt.eventId);
+
+            if (null != receipts) {
+                receipts.remove(indexedReceipt);
+
+                if (receipts.isEmpty()) {
+                    mReceiptsByEventId.remove(indexedReceipt.eventId);
+                }
+            }
+
+            mReceiptByUserId.remove(userId);
+        }
+
+        if ((null == receipt) || (null == receipt.eventId)) {
+            return;
+        }
+
+        addReceipt(receipt);
+    }
+
+    /**
+     * Index a receipt (its user must not be indexed).
+     * @param receipt the receipt
+     */
+    private void addReceipt(ReceiptData receipt) {
+        ArrayList<ReceiptData> receipts = mReceiptsByEventId.get(receipt.eventId);
+
+        if (null == receipts) {
+            receipts = new ArrayList<>();
+            mReceiptsByEventId.put(receipt.eventId, receipts);
+        }
+
+        // keep the descending timestamps order
+        int position = 0;
+
+        while ((position < receipts.size()) && (ReceiptData.descComparator.compare(receipts.get(position), receipt) <= 0)) {
+            position++;
+        }
+
+        receipts.add(position, receipt);
+        mReceiptByUserId.put(receipt.userId, receipt);
+    }
+}
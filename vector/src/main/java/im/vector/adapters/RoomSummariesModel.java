@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.adapters;
+
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.IMXStore;
+import org.matrix.androidsdk.data.Room;
+import org.matrix.androidsdk.data.RoomSummary;
+import org.matrix.androidsdk.data.RoomTag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import im.vector.RoomTagsIndex;
+
+/**
+ * Sorted room summaries sections of a session.
+ * The sections are fully built once, then they are updated with the rooms which have been
+ * touched by an events chunk : each touched room is removed from its section and inserted
+ * at its new position (binary search) instead of sorting and grouping the whole summaries list.
+ * The room entries are built in the UI thread (see {@link #buildEntry(MXSession, String)}),
+ * the sections are sorted in a background thread from these copies only.
+ */
+public class RoomSummariesModel {
+    private static final String LOG_TAG = "RoomSummariesModel";
+
+    // the sections
+    public static final int SECTION_INVITES = 0;
+    public static final int SECTION_FAVOURITES = 1;
+    public static final int SECTION_NO_TAG = 2;
+    public static final int SECTION_LOW_PRIORITY = 3;
+    private static final int SECTIONS_COUNT = 4;
+
+    /**
+     * A room in a section.
+     * The sort keys are copied when the entry is created because the summaries are updated in place.
+     */
+    static class RoomEntry {
+        public final String mRoomId;
+        public final RoomSummary mSummary;
+        public final int mSection;
+        // the tag order (favourites and low priority sections)
+        public final double mTagOrder;
+        // the latest event timestamp
+        public final long mTs;
+
+        public RoomEntry(String roomId, RoomSummary summary, int section, double tagOrder, long ts) {
+            mRoomId = roomId;
+            mSummary = summary;
+            mSection = section;
+            mTagOrder = tagOrder;
+            mTs = ts;
+        }
+    }
+
+    // the most recent rooms first
+    private static final Comparator<RoomEntry> mRecentFirstComparator = new Comparator<RoomEntry>() {
+        @Override
+        public int compare(RoomEntry entry1, RoomEntry entry2) {
+            if (entry1.mTs != entry2.mTs) {
+                return (entry1.mTs > entry2.mTs) ? -1 : 1;
+            }
+            return entry1.mRoomId.compareTo(entry2.mRoomId);
+        }
+    };
+
+    // the oldest rooms first
+    private static final Comparator<RoomEntry> mOldestFirstComparator = new Comparator<RoomEntry>() {
+        @Override
+        public int compare(RoomEntry entry1, RoomEntry entry2) {
+            if (entry1.mTs != entry2.mTs) {
+                return (entry1.mTs < entry2.mTs) ? -1 : 1;
+            }
+            return entry1.mRoomId.compareTo(entry2.mRoomId);
+        }
+    };
+
+    // the tag order then the most recent rooms first
+    private static final Comparator<RoomEntry> mTagOrderComparator = new Comparator<RoomEntry>() {
+        @Override
+        public int compare(RoomEntry entry1, RoomEntry entry2) {
+            int res = Double.compare(entry1.mTagOrder, entry2.mTagOrder);
+            return (0 != res) ? res : mRecentFirstComparator.compare(entry1, entry2);
+        }
+    };
+
+    // the sorted sections
+    private final ArrayList<ArrayList<RoomEntry>> mSections = new ArrayList<>();
+
+    // the entries by room id
+    private final HashMap<String, RoomEntry> mEntryByRoomId = new HashMap<>();
+
+    // true when the sections have been built
+    private boolean mIsBuilt = false;
+
+    // the latest update cost
+    private long mLatestUpdateDurationMs = 0;
+
+    public RoomSummariesModel() {
+        for (int section = 0; section < SECTIONS_COUNT; section++) {
+            mSections.add(new ArrayList<RoomEntry>());
+        }
+    }
+
+    /**
+     * @return true if the sections have been built.
+     */
+    public boolean isBuilt() {
+        return mIsBuilt;
+    }
+
+    /**
+     * @return the latest update duration in ms.
+     */
+    public long getLatestUpdateDurationMs() {
+        return mLatestUpdateDurationMs;
+    }
+
+    /**
+     * Provide the comparator of a section.
+     * @param section the section
+     * @return the comparator
+     */
+    private static Comparator<RoomEntry> getComparator(int section) {
+        switch (section) {
+            case SECTION_INVITES:
+                return mOldestFirstComparator;
+            case SECTION_FAVOURITES:
+            case SECTION_LOW_PRIORITY:
+                return mTagOrderComparator;
+            default:
+                return mRecentFirstComparator;
+        }
+    }
+
+    /**
+     * Build the entry of a room.
+     * It must be called in the UI thread.
+     * @param session the session
+     * @param roomId the room id
+     * @return the entry, null if the room is not displayed.
+     */
+    static RoomEntry buildEntry(MXSession session, String roomId) {
+        IMXStore store = session.getDataHandler().getStore();
+        RoomSummary summary = store.getSummary(roomId);
+        Room room = store.getRoom(roomId);
+
+        if ((null == summary) || (null == room)) {
+            return null;
+        }
+
+        int section;
+        RoomTagsIndex.TagEntry tagEntry = null;
+
+        if (room.isInvited()) {
+            section = SECTION_INVITES;
+        } else if (null == (tagEntry = RoomTagsIndex.getInstance(session).getTag(roomId))) {
+            section = SECTION_NO_TAG;
+        } else if (RoomTag.ROOM_TAG_FAVOURITE.equals(tagEntry.mTag)) {
+            section = SECTION_FAVOURITES;
+        } else {
+            section = SECTION_LOW_PRIORITY;
+        }
+
+        // the rooms without order are displayed after the ordered ones
+        double tagOrder = (null != tagEntry) ? tagEntry.mOrder : Double.MAX_VALUE;
+        long ts = (null != summary.getLatestEvent()) ? summary.getLatestEvent().getOriginServerTs() : Long.MIN_VALUE;
+
+        return new RoomEntry(roomId, summary, section, tagOrder, ts);
+    }
+
+    /**
+     * Build the entries of all the rooms of a session.
+     * It must be called in the UI thread.
+     * @param session the session
+     * @return the entries
+     */
+    static ArrayList<RoomEntry> buildEntries(MXSession session) {
+        Collection<RoomSummary> summaries = session.getDataHandler().getStore().getSummaries();
+        ArrayList<RoomEntry> entries = new ArrayList<>(summaries.size());
+
+        for (RoomSummary summary : summaries) {
+            RoomEntry entry = buildEntry(session, summary.getRoomId());
+
+            if (null != entry) {
+                entries.add(entry);
+            } else {
+                Log.e(LOG_TAG, "## buildEntries() : " + summary.getRoomId() + " has no known room");
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Fully build the sections.
+     * @param entries the entries of all the rooms
+     */
+    public void rebuild(Collection<RoomEntry> entries) {
+        long startTime = System.currentTimeMillis();
+
+        mEntryByRoomId.clear();
+
+        for (ArrayList<RoomEntry> sectionEntries : mSections) {
+            sectionEntries.clear();
+        }
+
+        for (RoomEntry entry : entries) {
+            mEntryByRoomId.put(entry.mRoomId, entry);
+            mSections.get(entry.mSection).add(entry);
+        }
+
+        for (int section = 0; section < SECTIONS_COUNT; section++) {
+            Collections.sort(mSections.get(section), getComparator(section));
+        }
+
+        mIsBuilt = true;
+        mLatestUpdateDurationMs = System.currentTimeMillis() - startTime;
+
+        Log.d(LOG_TAG, "## rebuild() : " + mEntryByRoomId.size() + " rooms in " + mLatestUpdateDurationMs + " ms");
+    }
+
+    /**
+     * Apply the updates of some rooms.
+     * @param entryByRoomId the new entries of the updated rooms (null values for the removed rooms)
+     * @return true if the sections have been updated
+     */
+    public boolean applyRoomsUpdates(Map<String, RoomEntry> entryByRoomId) {
+        long startTime = System.currentTimeMillis();
+
+        int insertedCount = 0;
+        int removedCount = 0;
+        int movedCount = 0;
+        int retaggedCount = 0;
+
+        for (String roomId : entryByRoomId.keySet()) {
+            RoomEntry oldEntry = mEntryByRoomId.remove(roomId);
+            RoomEntry newEntry = entryByRoomId.get(roomId);
+            int oldIndex = -1;
+
+            if (null != oldEntry) {
+                ArrayList<RoomEntry> entries = mSections.get(oldEntry.mSection);
+                oldIndex = Collections.binarySearch(entries, oldEntry, getComparator(oldEntry.mSection));
+
+                if (oldIndex >= 0) {
+                    entries.remove(oldIndex);
+                } else {
+                    // should never happen
+                    Log.e(LOG_TAG, "## applyRoomsUpdates() : " + roomId + " is not found in its section");
+                    entries.remove(oldEntry);
+                }
+            }
+
+            if (null != newEntry) {
+                ArrayList<RoomEntry> entries = mSections.get(newEntry.mSection);
+                int newIndex = Collections.binarySearch(entries, newEntry, getComparator(newEntry.mSection));
+
+                // the room id tie-break ensures that the entry is not yet in the list
+                if (newIndex < 0) {
+                    newIndex = -newIndex - 1;
+                }
+
+                entries.add(newIndex, newEntry);
+                mEntryByRoomId.put(roomId, newEntry);
+
+                if (null == oldEntry) {
+                    insertedCount++;
+                } else if (oldEntry.mSection != newEntry.mSection) {
+                    retaggedCount++;
+                } else if (oldIndex != newIndex) {
+                    movedCount++;
+                }
+            } else if (null != oldEntry) {
+                removedCount++;
+            }
+        }
+
+        mLatestUpdateDurationMs = System.currentTimeMillis() - startTime;
+
+        Log.d(LOG_TAG, "## applyRoomsUpdates() : " + entryByRoomId.size() + " updated rooms (" + movedCount + " moved, " + insertedCount + " inserted, " + removedCount + " removed, " + retaggedCount + " retagged) in " + mLatestUpdateDurationMs + " ms");
+
+        return (0 != (insertedCount + removedCount + movedCount + retaggedCount));
+    }
+
+    /**
+     * Provide the sorted summaries of a section.
+     * @param section the section
+     * @param roomIds the kept room ids, null to keep all the rooms
+     * @return a new list of summaries
+     */
+    public ArrayList<RoomSummary> getSectionSummaries(int section, Set<String> roomIds) {
+        ArrayList<RoomEntry> entries = mSections.get(section);
+        ArrayList<RoomSummary> summaries = new ArrayList<>((null != roomIds) ? Math.min(roomIds.size(), entries.size()) : entries.size());
+
+        for (RoomEntry entry : entries) {
+            if ((null == roomIds) || roomIds.contains(entry.mRoomId)) {
+                summaries.add(entry.mSummary);
+            }
+        }
+
+        return summaries;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.adapters;
+
+import android.content.Context;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.RoomState;
+import org.matrix.androidsdk.data.RoomSummary;
+import org.matrix.androidsdk.rest.model.Event;
+import org.matrix.androidsdk.rest.model.RoomMember;
+import org.matrix.androidsdk.rest.model.User;
+import org.matrix.androidsdk.util.EventDisplay;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+
+import im.vector.Matrix;
+import im.vector.R;
+
+/**
+ * Bounded cache of the last message previews displayed in the rooms list.
+ * A preview is keyed by the room id, the latest event id and the display settings,
+ * so it is computed again only when the latest event of the room changes.
+ * The previews are computed in a background thread: the list rows only look them up.
+ * The SDK objects are not thread safe, so the inputs of a preview (the latest event, the names of
+ * the displayed members and the inviter) are copied in the UI thread (see {@link #buildInput(RoomSummary)}).
+ */
+public class RoomSummaryPreviewsCache {
+    private static final String LOG_TAG = "RoomSummaryPreviews";
+
+    // the max number of cached previews
+    public static final int MAX_PREVIEWS_COUNT = 1000;
+
+    /**
+     * The inputs of a preview, copied in the UI thread.
+     */
+    static class PreviewInput {
+        // the cache key
+        public final String mKey;
+        public final String mRoomId;
+        // a copy of the latest event, null if there is none
+        public final Event mEvent;
+        // a room state with the copies of the members displayed by the preview, null if there is no latest room state
+        public final RoomState mRoomState;
+        // the invitation
+        public final boolean mIsInvitation;
+        public final String mInviterName;
+        public final String mMyName;
+        public final boolean mIsMyInvitation;
+
+        public PreviewInput(String key, String roomId, Event event, RoomState roomState, boolean isInvitation, String inviterName, String myName, boolean isMyInvitation) {
+            mKey = key;
+            mRoomId = roomId;
+            mEvent = event;
+            mRoomState = roomState;
+            mIsInvitation = isInvitation;
+            mInviterName = inviterName;
+            mMyName = myName;
+            mIsMyInvitation = isMyInvitation;
+        }
+    }
+
+    private final Context mContext;
+    private final MXSession mSession;
+
+    // the previews by key (the empty previews are cached as "")
+    private final LruCache<String, CharSequence> mPreviewByKey = new LruCache<>(MAX_PREVIEWS_COUNT);
+
+    public RoomSummaryPreviewsCache(Context context, MXSession session) {
+        mContext = context;
+        mSession = session;
+    }
+
+    /**
+     * Provide the cache key of a summary preview.
+     * It must be called in the UI thread.
+     * @param summary the room summary
+     * @return the key
+     */
+    private String getKey(RoomSummary summary) {
+        Event event = summary.getLatestEvent();
+        String eventKey = "";
+
+        if (null != event) {
+            boolean isRedacted = (null != event.unsigned) && (null != event.unsigned.redacted_because);
+            eventKey = event.eventId + "|" + event.mSentState + "|" + isRedacted;
+        }
+
+        // the display settings
+        String settingsKey = summary.isInvited() + "|" + summary.getInviterUserId() + "|" + Locale.getDefault();
+
+        return summary.getRoomId() + "|" + eventKey + "|" + settingsKey;
+    }
+
+    /**
+     * Provide the cached preview of a summary.
+     * It must be called in the UI thread.
+     * @param summary the room summary
+     * @return the preview, null if it is not cached.
+     */
+    public CharSequence getPreview(RoomSummary summary) {
+        return mPreviewByKey.get(getKey(summary));
+    }
+
+    /**
+     * Get the displayable name of the user whose ID is passed in aUserId.
+     * @param aMatrixId matrix ID
+     * @param aUserId user ID
+     * @return the user display name
+     */
+    private String getMemberDisplayNameFromUserId(String aMatrixId, String aUserId) {
+        String displayNameRetValue;
+        MXSession session;
+
+        if((null == aMatrixId) || (null == aUserId)){
+            displayNameRetValue = null;
+        }
+        else if((null == (session = Matrix.getMXSession(mContext, aMatrixId))) || (!session.isAlive())) {
+            displayNameRetValue = null;
+        }
+        else {
+            User user = session.getDataHandler().getStore().getUser(aUserId);
+
+            if ((null != user) && !TextUtils.isEmpty(user.displayname)) {
+                displayNameRetValue = user.displayname;
+            }
+            else {
+                displayNameRetValue = aUserId;
+            }
+        }
+
+        return displayNameRetValue;
+    }
+
+    /**
+     * Copy the members displayed by a preview.
+     * Their display names are resolved with the whole room state (e.g. the homonyms are disambiguated),
+     * so the preview rendered with the copied state is the same.
+     * @param roomState the latest room state
+     * @param event the latest event
+     * @param userIds the other displayed user ids
+     * @return the room state with the displayed members only
+     */
+    private static RoomState copyDisplayedMembers(RoomState roomState, Event event, String... userIds) {
+        HashSet<String> displayedUserIds = new HashSet<>();
+
+        if (null != event) {
+            displayedUserIds.add(event.getSender());
+            displayedUserIds.add(event.stateKey);
+
+            if ((null != event.unsigned) && (null != event.unsigned.redacted_because)) {
+                displayedUserIds.add(event.unsigned.redacted_because.getSender());
+            }
+        }
+
+        for (String userId : userIds) {
+            displayedUserIds.add(userId);
+        }
+
+        RoomState roomStateCopy = new RoomState();
+        roomStateCopy.roomId = roomState.roomId;
+
+        for (String userId : displayedUserIds) {
+            RoomMember member = (null != userId) ? roomState.getMember(userId) : null;
+
+            if (null != member) {
+                RoomMember memberCopy = member.deepCopy();
+                memberCopy.displayname = roomState.getMemberName(userId);
+                roomStateCopy.setMember(userId, memberCopy);
+            }
+        }
+
+        return roomStateCopy;
+    }
+
+    /**
+     * Copy the inputs of a summary preview.
+     * It must be called in the UI thread.
+     * @param summary the room summary
+     * @return the inputs, null if the preview is already cached.
+     */
+    PreviewInput buildInput(RoomSummary summary) {
+        String key = getKey(summary);
+
+        if (null != mPreviewByKey.get(key)) {
+            return null;
+        }
+
+        Event event = summary.getLatestEvent();
+        RoomState latestRoomState = summary.getLatestRoomState();
+        boolean isInvitation = summary.isInvited() && (null != summary.getInviterUserId());
+        String inviterName = null;
+        String myName = null;
+        boolean isMyInvitation = false;
+
+        // check if this is an invite
+        if (isInvitation) {
+            String inviterUserId = summary.getInviterUserId();
+            String myUserId = summary.getMatrixId();
+
+            if (null != latestRoomState) {
+                inviterName = latestRoomState.getMemberName(inviterUserId);
+                myName = latestRoomState.getMemberName(myUserId);
+            } else {
+                inviterName = getMemberDisplayNameFromUserId(myUserId, inviterUserId);
+                myName = getMemberDisplayNameFromUserId(myUserId, myUserId);
+            }
+
+            isMyInvitation = TextUtils.equals(mSession.getMyUserId(), myUserId);
+        }
+
+        return new PreviewInput(key,
+                summary.getRoomId(),
+                (null != event) ? event.deepCopy() : null,
+                (null != latestRoomState) ? copyDisplayedMembers(latestRoomState, event, summary.getInviterUserId(), summary.getMatrixId()) : null,
+                isInvitation,
+                inviterName,
+                myName,
+                isMyInvitation);
+    }
+
+    /**
+     * Compute the missing previews.
+     * It must be called in a background thread.
+     * @param inputs the previews inputs
+     */
+    public void fill(Collection<PreviewInput> inputs) {
+        long startTime = System.currentTimeMillis();
+        int computedCount = 0;
+
+        for (PreviewInput input : inputs) {
+            if (null == mPreviewByKey.get(input.mKey)) {
+                CharSequence preview = null;
+
+                try {
+                    preview = buildPreview(input);
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "## fill() : failed to render " + input.mRoomId + " " + e.getMessage());
+                }
+
+                mPreviewByKey.put(input.mKey, (null != preview) ? preview : "");
+                computedCount++;
+            }
+        }
+
+        if (0 != computedCount) {
+            Log.d(LOG_TAG, "## fill() : " + computedCount + " previews computed in " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+    }
+
+    /**
+     * Render the last message preview of a room.
+     * @param input the copied preview inputs
+     * @return the preview
+     */
+    private CharSequence buildPreview(PreviewInput input) {
+        CharSequence messageToDisplayRetValue = null;
+
+        if (null != input.mEvent) {
+            EventDisplay eventDisplay = new EventDisplay(mContext, input.mEvent, input.mRoomState);
+            eventDisplay.setPrependMessagesWithAuthor(true);
+            messageToDisplayRetValue = eventDisplay.getTextualDisplay(mContext.getResources().getColor(R.color.vector_text_gray_color));
+        }
+
+        // check if this is an invite
+        if (input.mIsInvitation) {
+            if (input.mIsMyInvitation) {
+                messageToDisplayRetValue = mContext.getString(org.matrix.androidsdk.R.string.notice_room_invite_you, input.mInviterName);
+            } else {
+                messageToDisplayRetValue = mContext.getString(org.matrix.androidsdk.R.string.notice_room_invite, input.mInviterName, input.mMyName);
+            }
+        }
+
+        return messageToDisplayRetValue;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.adapters;
+
+import android.content.Context;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import im.vector.R;
+
+/**
+ * Shared cache of the formatted timestamps displayed in the lists.
+ * The displayed timestamps have a minute precision, so the texts are keyed by minute and by format.
+ * The relative texts (today, yesterday, weekday...) depend on the current date, so the cache is
+ * cleared at midnight. It is also cleared when the locale or the time zone changes.
+ */
+public class TimestampFormatter {
+    private static final String LOG_TAG = "TimestampFormatter";
+
+    // the time without the day
+    public static final int FORMAT_TIME_ONLY = 0;
+    // the day and the time
+    public static final int FORMAT_DATE_TIME = 1;
+    // the day and the time, only the time for the today timestamps
+    public static final int FORMAT_DATE_TIME_NO_TODAY = 2;
+
+    // the number of formats (the key stores the format in the lowest bits)
+    private static final int FORMATS_COUNT = 4;
+
+    // the max number of cached texts
+    private static final int MAX_TEXTS_COUNT = 512;
+
+    private static final long MS_IN_MINUTE = 60 * 1000;
+
+    private static TimestampFormatter mInstance = null;
+
+    // the texts by minute and format
+    private final LruCache<Long, String> mTextByKey = new LruCache<>(MAX_TEXTS_COUNT);
+
+    // the cache validity
+    private Locale mLocale = null;
+    private String mTimeZoneId = null;
+    private long mNextMidnightTs = 0;
+    // TimeZone.getDefault() allocates a copy, so the time zone is checked once per minute
+    private long mNextTimeZoneCheckTs = 0;
+
+    /**
+     * @return the shared instance
+     */
+    public static synchronized TimestampFormatter getInstance() {
+        if (null == mInstance) {
+            mInstance = new TimestampFormatter();
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Create a formatter with its own cache.
+     * The lists share the instance provided by {@link #getInstance()}.
+     */
+    public TimestampFormatter() {
+    }
+
+    /**
+     * Clear the cache if the texts are no more valid.
+     * @param context the context
+     */
+    private void checkValidity(Context context) {
+        long now = System.currentTimeMillis();
+        Locale locale = context.getResources().getConfiguration().locale;
+        TimeZone timeZone = null;
+
+        if (now >= mNextTimeZoneCheckTs) {
+            timeZone = TimeZone.getDefault();
+            mNextTimeZoneCheckTs = now + MS_IN_MINUTE;
+        }
+
+        if ((now >= mNextMidnightTs) || (null == mLocale) || !mLocale.equals(locale) || ((null != timeZone) && !timeZone.getID().equals(mTimeZoneId))) {
+            if (null == timeZone) {
+                timeZone = TimeZone.getDefault();
+            }
+
+            Log.d(LOG_TAG, "## checkValidity() : clear " + mTextByKey.size() + " texts");
+
+            mTextByKey.evictAll();
+            mLocale = locale;
+            mTimeZoneId = timeZone.getID();
+            mNextMidnightTs = MessagesDaysIndex.toTimestamp(MessagesDaysIndex.toDay(now, timeZone) + 1, timeZone) - AdapterUtils.MS_IN_DAY / 2;
+        }
+    }
+
+    /**
+     * Format a timestamp.
+     * @param context the context
+     * @param ts the timestamp
+     * @param format the format (FORMAT_XX)
+     * @return the formatted timestamp
+     */
+    public synchronized String format(Context context, long ts, int format) {
+        checkValidity(context);
+
+        Long key = (ts / MS_IN_MINUTE) * FORMATS_COUNT + format;
+        String text = mTextByKey.get(key);
+
+        if (null == text) {
+            text = AdapterUtils.tsToString(context, ts, FORMAT_TIME_ONLY == format);
+
+            if (FORMAT_DATE_TIME_NO_TODAY == format) {
+                // don't display the today before the time
+                String today = context.getString(R.string.today) + " ";
+
+                if (text.startsWith(today)) {
+                    text = text.substring(today.length());
+                }
+            }
+
+            mTextByKey.put(key, text);
+        }
+
+        return text;
+    }
+}
@@ -26,6 +26,7 @@ import android.text.LoginFilter;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.Gravity;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -40,7 +41,6 @@ import android.widget.TextView;
 import org.matrix.androidsdk.MXSession;
 import org.matrix.androidsdk.adapters.MessageRow;
 import org.matrix.androidsdk.adapters.MessagesAdapter;
-import org.matrix.androidsdk.data.IMXStore;
 import org.matrix.androidsdk.data.RoomState;
 import org.matrix.androidsdk.db.MXMediasCache;
 import org.matrix.androidsdk.rest.model.Event;
@@ -57,10 +57,12 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Formatter;
 import java.util.HashMap;
 import java.util.List;
+import java.util.TimeZone;
 
 /**
  * An adapter which can display room information.
@@ -80,16 +82,26 @@ public class VectorMessagesAdapter extends MessagesAdapter {
     private String mHighlightedEventId;
 
     protected VectorMessagesAdapterActionsListener mVectorMessagesAdapterEventsListener = null;
-    protected Date mReferenceDate = new Date();
-    protected ArrayList<Date> mMessagesDateList = new ArrayList<Date>();
+
+    // the day number of each row
+    private final MessagesDaysIndex mDaysIndex = new MessagesDaysIndex();
+    // true when the days index must be built again (rows added in bulk)
+    private boolean mIsDaysIndexDirty = false;
+    // the time zone used to compute the day numbers
+    private TimeZone mTimeZone = TimeZone.getDefault();
+    // the today day number, updated at each refresh
+    private int mReferenceDay = MessagesDaysIndex.toDay(System.currentTimeMillis(), mTimeZone);
+    // the header texts by day number, cleared at each refresh
+    private final SparseArray<String> mHeaderByDay = new SparseArray<String>();
+
+    // the read receipts by room id
+    private final HashMap<String, RoomReadReceiptsIndex> mReadReceiptsIndexByRoomId = new HashMap<String, RoomReadReceiptsIndex>();
     protected Handler mUiHandler;
 
     // when the adapter is used in search mode
     // the searched message should be highlighted
     protected String mSearchedEventId = null;
 
-    protected HashMap<String, String> mEventFormattedTsMap = new HashMap<String, String>();
-
     public VectorMessagesAdapter(MXSession session, Context context, int textResLayoutId, int imageResLayoutId,
                                  int noticeResLayoutId, int emoteRestLayoutId, int fileResLayoutId, int videoResLayoutId, MXMediasCache mediasCache) {
 
@@ -120,14 +132,6 @@ public class VectorMessagesAdapter extends MessagesAdapter {
         mUiHandler = new Handler(Looper.getMainLooper());
     }
 
-    /**
-     * the parent fragment is paused.
-     */
-    public void onPause() {
-        mEventFormattedTsMap.clear();
-    }
-
-
     /**
      * Toogle the selection mode.
      * @param eventId the tapped eventID.
@@ -185,21 +189,11 @@ public class VectorMessagesAdapter extends MessagesAdapter {
      */
     @Override
     protected String getFormattedTimestamp(Event event) {
-        String res = mEventFormattedTsMap.get(event.eventId);
-
-        if (null != res) {
-            return res;
-        }
-
         if (event.isValidOriginServerTs()) {
-            res = AdapterUtils.tsToString(mContext, event.getOriginServerTs(), true);
-        } else {
-            res = " ";
+            return TimestampFormatter.getInstance().format(mContext, event.getOriginServerTs(), TimestampFormatter.FORMAT_TIME_ONLY);
         }
 
-        mEventFormattedTsMap.put(event.eventId, res);
-
-        return res;
+        return " ";
     }
 
     @Override
@@ -238,56 +232,185 @@ public class VectorMessagesAdapter extends MessagesAdapter {
         }
     }
 
-    @Override
-    public void notifyDataSetChanged() {
-        //  do not refresh the room when the application is in background
-        // on large rooms, it drains a lot of battery
-        if (!VectorApp.isAppInBackground()) {
-            super.notifyDataSetChanged();
-        }
+    /**
+     * Tell if a row is an undelivered event i.e. it has no valid origin server timestamp.
+     * @param row the row
+     * @return true if the event is not yet delivered
+     */
+    private static boolean isUndelivered(MessageRow row) {
+        return (null != row.getEvent()) && !row.getEvent().isValidOriginServerTs();
+    }
 
-        // the event with invalid timestamp must be pushed at the end of the history
-        this.setNotifyOnChange(false);
-        ArrayList<MessageRow> undeliverableEvents = null;
+    /**
+     * Build the days index from the rows.
+     * The undelivered events are pushed at the end of the history.
+     */
+    private void rebuildDaysIndex() {
+        mDaysIndex.clear();
+        mIsDaysIndexDirty = false;
+
+        ArrayList<MessageRow> undeliveredRows = null;
+        boolean isMisplaced = false;
+        int count = getCount();
 
-        for(int i = 0; i < getCount(); i++) {
+        for (int i = 0; i < count; i++) {
             MessageRow row = getItem(i);
 
-            if ((null != row.getEvent()) && !row.getEvent().isValidOriginServerTs()) {
-                if (null == undeliverableEvents) {
-                    undeliverableEvents = new ArrayList<MessageRow>();
+            if (isUndelivered(row)) {
+                if (null == undeliveredRows) {
+                    undeliveredRows = new ArrayList<MessageRow>();
+                }
+                undeliveredRows.add(row);
+            } else {
+                isMisplaced |= (null != undeliveredRows);
+                mDaysIndex.addDelivered(MessagesDaysIndex.toDay(row.getEvent().getOriginServerTs(), mTimeZone));
+            }
+        }
+
+        if (null != undeliveredRows) {
+            if (isMisplaced) {
+                for (MessageRow row : undeliveredRows) {
+                    super.remove(row);
+                    super.insert(row, getCount());
                 }
-                undeliverableEvents.add(row);
-                this.remove(row);
-                i--;
+            }
+
+            for (int i = 0; i < undeliveredRows.size(); i++) {
+                mDaysIndex.addUndelivered();
             }
         }
+    }
+
+    /**
+     * Update the days index before a refresh.
+     * Only the undelivered events are checked when the index is valid.
+     */
+    private void refreshDaysIndex() {
+        TimeZone timeZone = TimeZone.getDefault();
 
-        if (null != undeliverableEvents) {
-            this.addAll(undeliverableEvents);
+        if (!TextUtils.equals(timeZone.getID(), mTimeZone.getID())) {
+            mTimeZone = timeZone;
+            mIsDaysIndexDirty = true;
         }
 
-        this.setNotifyOnChange(true);
+        if (mIsDaysIndexDirty || (mDaysIndex.size() != getCount())) {
+            rebuildDaysIndex();
+            return;
+        }
+
+        // some undelivered events may have been delivered
+        for (int position = mDaysIndex.getDeliveredCount(); position < getCount(); position++) {
+            MessageRow row = getItem(position);
+
+            if (!isUndelivered(row)) {
+                int firstUndeliveredPosition = mDaysIndex.getDeliveredCount();
+
+                // keep the undelivered events after it
+                if (position != firstUndeliveredPosition) {
+                    super.remove(row);
+                    super.insert(row, firstUndeliveredPosition);
+                }
+
+                mDaysIndex.onFirstUndeliveredDelivered(MessagesDaysIndex.toDay(row.getEvent().getOriginServerTs(), mTimeZone));
+            }
+        }
+    }
 
-        // build messages timestamps
-        ArrayList<Date> dates = new ArrayList<Date>();
+    @Override
+    public void add(MessageRow row, boolean refresh) {
+        int count = getCount();
+        boolean isIndexSynced = !mIsDaysIndexDirty && (mDaysIndex.size() == count);
 
-        Date latestDate = AdapterUtils.zeroTimeDate(new Date());
+        super.add(row, false);
 
-        for(int index = 0; index < this.getCount(); index++) {
-            MessageRow row = getItem(index);
-            Event event = row.getEvent();
+        if (isIndexSynced && (getCount() == (count + 1))) {
+            if (isUndelivered(row)) {
+                mDaysIndex.addUndelivered();
+            } else {
+                // the undelivered events remain at the end of the history
+                if (0 != mDaysIndex.getUndeliveredCount()) {
+                    super.remove(row);
+                    super.insert(row, mDaysIndex.getDeliveredCount());
+                }
 
-            if (event.isValidOriginServerTs()) {
-                latestDate = AdapterUtils.zeroTimeDate(new Date(event.getOriginServerTs()));
+                mDaysIndex.addDelivered(MessagesDaysIndex.toDay(row.getEvent().getOriginServerTs(), mTimeZone));
             }
+        } else if (getCount() != count) {
+            mIsDaysIndexDirty = true;
+        }
+
+        if (refresh) {
+            notifyDataSetChanged();
+        }
+    }
 
-            dates.add(latestDate);
+    @Override
+    public void insert(MessageRow row, int index) {
+        int count = getCount();
+        boolean isIndexSynced = !mIsDaysIndexDirty && (mDaysIndex.size() == count);
+
+        super.insert(row, index);
+
+        // back pagination
+        if (isIndexSynced && (0 == index) && !isUndelivered(row) && (getCount() == (count + 1))) {
+            mDaysIndex.addDeliveredToFront(MessagesDaysIndex.toDay(row.getEvent().getOriginServerTs(), mTimeZone));
+        } else {
+            mIsDaysIndexDirty = true;
         }
+    }
+
+    @Override
+    public void remove(MessageRow row) {
+        int count = getCount();
+        boolean isIndexSynced = !mIsDaysIndexDirty && (mDaysIndex.size() == count);
+        int position = isIndexSynced ? getPosition(row) : -1;
+
+        super.remove(row);
 
-        synchronized (this) {
-            mMessagesDateList = dates;
-            mReferenceDate = new Date();
+        if (isIndexSynced && (position >= 0) && (getCount() == (count - 1))) {
+            mDaysIndex.remove(position);
+        } else if (getCount() != count) {
+            mIsDaysIndexDirty = true;
+        }
+    }
+
+    @Override
+    public void addAll(Collection<? extends MessageRow> collection) {
+        super.addAll(collection);
+        mIsDaysIndexDirty = true;
+    }
+
+    @Override
+    public void addAll(MessageRow... items) {
+        super.addAll(items);
+        mIsDaysIndexDirty = true;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        mDaysIndex.clear();
+        mIsDaysIndexDirty = false;
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        this.setNotifyOnChange(false);
+        refreshDaysIndex();
+        this.setNotifyOnChange(true);
+
+        int referenceDay = MessagesDaysIndex.toDay(System.currentTimeMillis(), mTimeZone);
+
+        // the headers texts are relative to the today date
+        if (referenceDay != mReferenceDay) {
+            mReferenceDay = referenceDay;
+            mHeaderByDay.clear();
+        }
+
+        //  do not refresh the room when the application is in background
+        // on large rooms, it drains a lot of battery
+        if (!VectorApp.isAppInBackground()) {
+            super.notifyDataSetChanged();
         }
     }
 
@@ -316,29 +439,26 @@ public class VectorMessagesAdapter extends MessagesAdapter {
     }
 
     protected String headerMessage(int position) {
-        Date prevMessageDate = null;
-        Date messageDate = null;
-
-        synchronized (this) {
-            if ((position > 0) && (position < mMessagesDateList.size())) {
-                prevMessageDate = mMessagesDateList.get(position -1);
-            }
-            if (position < mMessagesDateList.size()) {
-                messageDate = mMessagesDateList.get(position);
-            }
-        }
-
         // sanity check
-        if (null == messageDate) {
+        if ((position < 0) || (position >= mDaysIndex.size())) {
             return null;
         }
 
+        int day = mDaysIndex.getDay(position, mReferenceDay);
+
         // same day or get the oldest message
-        if ((null != prevMessageDate) && 0 == (prevMessageDate.getTime() - messageDate.getTime())) {
+        if ((position > 0) && (day == mDaysIndex.getDay(position - 1, mReferenceDay))) {
             return null;
         }
 
-        return dateDiff(messageDate, (mReferenceDate.getTime() - messageDate.getTime()) / AdapterUtils.MS_IN_DAY);
+        String header = mHeaderByDay.get(day);
+
+        if (null == header) {
+            header = dateDiff(new Date(MessagesDaysIndex.toTimestamp(day, mTimeZone)), mReferenceDay - day);
+            mHeaderByDay.put(day, header);
+        }
+
+        return header;
     }
 
     @Override
@@ -359,6 +479,58 @@ public class VectorMessagesAdapter extends MessagesAdapter {
         // the typing users are now displayed in a dedicated area in the activity
     }
 
+    /**
+     * The read receipts views of a message row.
+     */
+    private static class ReadReceiptsViewHolder {
+        final ImageView[] mAvatarViews;
+        final TextView mMoreText;
+
+        ReadReceiptsViewHolder(View avatarsListView) {
+            mAvatarViews = new ImageView[] {
+                    (ImageView)avatarsListView.findViewById(R.id.message_avatar_receipt_1).findViewById(org.matrix.androidsdk.R.id.avatar_img),
+                    (ImageView)avatarsListView.findViewById(R.id.message_avatar_receipt_2).findViewById(org.matrix.androidsdk.R.id.avatar_img),
+                    (ImageView)avatarsListView.findViewById(R.id.message_avatar_receipt_3).findViewById(org.matrix.androidsdk.R.id.avatar_img),
+                    (ImageView)avatarsListView.findViewById(R.id.message_avatar_receipt_4).findViewById(org.matrix.androidsdk.R.id.avatar_img),
+                    (ImageView)avatarsListView.findViewById(R.id.message_avatar_receipt_5).findViewById(org.matrix.androidsdk.R.id.avatar_img)
+            };
+
+            mMoreText = (TextView)avatarsListView.findViewById(R.id.message_more_than_expected);
+        }
+    }
+
+    /**
+     * Provide the read receipts index of a room.
+     * It is created at the first call.
+     * @param roomId the room id
+     * @return the index
+     */
+    private RoomReadReceiptsIndex getReadReceiptsIndex(String roomId) {
+        RoomReadReceiptsIndex index = mReadReceiptsIndexByRoomId.get(roomId);
+
+        if (null == index) {
+            index = new RoomReadReceiptsIndex(mSession.getDataHandler().getStore(), roomId, mSession.getMyUserId());
+            mReadReceiptsIndexByRoomId.put(roomId, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Some read receipts have been received.
+     * The read receipts indexes are updated, the caller has to refresh the list.
+     * @param roomId the room id
+     * @param senderIds the receipts senders
+     */
+    public void onReceiptEvent(String roomId, List<String> senderIds) {
+        RoomReadReceiptsIndex index = mReadReceiptsIndexByRoomId.get(roomId);
+
+        // the index is built when it is used
+        if ((null != index) && mSession.isAlive()) {
+            index.onReceiptEvent(senderIds);
+        }
+    }
+
     /**
      * Display the read receipts within the dedicated vector layout.
      * Console application displays them on the message side.
@@ -372,8 +544,6 @@ public class VectorMessagesAdapter extends MessagesAdapter {
             return;
         }
 
-        IMXStore store = mSession.getDataHandler().getStore();
-
         // sanity check
         if (null == roomState) {
             avatarsListView.setVisibility(View.GONE);
@@ -387,7 +557,7 @@ public class VectorMessagesAdapter extends MessagesAdapter {
             return;
         }
 
-        List<ReceiptData> receipts = store.getEventReceipts(roomState.roomId, eventId, true, true);
+        List<ReceiptData> receipts = getReadReceiptsIndex(roomState.roomId).getEventReceipts(eventId);
 
         // if there is no receipt to display
         // hide the dedicated layout
@@ -398,23 +568,23 @@ public class VectorMessagesAdapter extends MessagesAdapter {
 
         avatarsListView.setVisibility(View.VISIBLE);
 
-        ArrayList<View> imageViews = new ArrayList<View>();
+        ReadReceiptsViewHolder holder = (ReadReceiptsViewHolder)avatarsListView.getTag();
 
-        imageViews.add(avatarsListView.findViewById(R.id.message_avatar_receipt_1).findViewById(org.matrix.androidsdk.R.id.avatar_img));
-        imageViews.add(avatarsListView.findViewById(R.id.message_avatar_receipt_2).findViewById(org.matrix.androidsdk.R.id.avatar_img));
-        imageViews.add(avatarsListView.findViewById(R.id.message_avatar_receipt_3).findViewById(org.matrix.androidsdk.R.id.avatar_img));
-        imageViews.add(avatarsListView.findViewById(R.id.message_avatar_receipt_4).findViewById(org.matrix.androidsdk.R.id.avatar_img));
-        imageViews.add(avatarsListView.findViewById(R.id.message_avatar_receipt_5).findViewById(org.matrix.androidsdk.R.id.avatar_img));
+        if (null == holder) {
+            holder = new ReadReceiptsViewHolder(avatarsListView);
+            avatarsListView.setTag(holder);
+        }
 
-        TextView moreText = (TextView)avatarsListView.findViewById(R.id.message_more_than_expected);
+        ImageView[] imageViews = holder.mAvatarViews;
+        TextView moreText = holder.mMoreText;
 
         int index = 0;
-        int bound = Math.min(receipts.size(), imageViews.size());
+        int bound = Math.min(receipts.size(), imageViews.length);
 
         for (; index < bound; index++) {
             final ReceiptData r = receipts.get(index);
             RoomMember member = roomState.getMember(r.userId);
-            ImageView imageView = (ImageView) imageViews.get(index);
+            ImageView imageView = imageViews[index];
 
             imageView.setVisibility(View.VISIBLE);
             imageView.setTag(null);
@@ -427,25 +597,21 @@ public class VectorMessagesAdapter extends MessagesAdapter {
             }
         }
 
-        moreText.setVisibility((receipts.size() <= imageViews.size()) ? View.GONE : View.VISIBLE);
-        moreText.setText(receipts.size() - imageViews.size() + "+");
+        moreText.setVisibility((receipts.size() <= imageViews.length) ? View.GONE : View.VISIBLE);
+        moreText.setText(receipts.size() - imageViews.length + "+");
 
-        for(; index < imageViews.size(); index++) {
-            imageViews.get(index).setVisibility(View.INVISIBLE);
+        for(; index < imageViews.length; index++) {
+            imageViews[index].setVisibility(View.INVISIBLE);
         }
 
-        if (receipts.size() > 0) {
-            avatarsListView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    if (null != mMessagesAdapterEventsListener) {
-                        mMessagesAdapterEventsListener.onMoreReadReceiptClick(eventId);
-                    }
+        avatarsListView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (null != mMessagesAdapterEventsListener) {
+                    mMessagesAdapterEventsListener.onMoreReadReceiptClick(eventId);
                 }
-            });
-        } else {
-            avatarsListView.setOnClickListener(null);
-        }
+            }
+        });
     }
 
     /**
@@ -22,14 +22,19 @@ import android.graphics.Color;
 import android.graphics.Typeface;
 import android.graphics.drawable.GradientDrawable;
 import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseExpandableListAdapter;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
@@ -38,31 +43,38 @@ import android.widget.TextView;
 import org.matrix.androidsdk.MXDataHandler;
 import org.matrix.androidsdk.MXSession;
 import org.matrix.androidsdk.data.Room;
-import org.matrix.androidsdk.data.RoomState;
 import org.matrix.androidsdk.data.RoomSummary;
-import org.matrix.androidsdk.data.RoomTag;
 import org.matrix.androidsdk.rest.model.Event;
 import org.matrix.androidsdk.rest.model.PublicRoom;
-import org.matrix.androidsdk.rest.model.User;
 import org.matrix.androidsdk.util.BingRulesManager;
-import org.matrix.androidsdk.util.EventDisplay;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.RoomDisplayNamesCache;
+import im.vector.PublicRoomsManager;
+import im.vector.PublicRoomsSearchIndex;
+import im.vector.RoomSearchIndex;
 import im.vector.util.VectorUtils;
 
 /**
  * An adapter which can display room information.
+ * The summaries list is sorted and grouped in a background thread into a snapshot,
+ * which replaces the displayed one in the UI thread.
+ * The groups are displayed as a sectioned list : each group header is followed by its rooms when it is expanded.
+ * The rows have stable ids, so the moved rooms are animated and only the updated parts of the rows are bound again.
  */
-public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
+public class VectorRoomSummaryAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     public interface RoomEventListener {
         void onPreviewRoom(MXSession session, String roomId);
         void onRejectInvitation(MXSession session, String roomId);
@@ -76,22 +88,175 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
         void onLeaveRoom(MXSession session, String roomId);
         void onGroupCollapsedNotif(int aGroupPosition);
         void onGroupExpandedNotif(int aGroupPosition);
+
+        // a new summaries list is displayed
+        void onSummariesListRefreshed();
+    }
+
+    public interface OnChildClickListener {
+        /**
+         * A group child has been clicked (a room, the directory or the join by alias entry).
+         * @param groupPosition the group position
+         * @param childPosition the child position
+         */
+        void onChildClick(int groupPosition, int childPosition);
+    }
+
+    /**
+     * A state of the displayed list.
+     * It is computed in the background thread then it replaces the displayed one in the UI thread.
+     * It is not updated once it is displayed (except the summaries lists in drag and drop mode).
+     */
+    private static class Snapshot {
+        // the computation inputs
+        public final String mSearchedPattern;
+        public final List<PublicRoom> mPublicRooms;
+        public final boolean mForceDirectoryGroupDisplay;
+        // the room ids matched by the search index (null if there is no searched pattern)
+        public final Set<String> mMatchedRoomIds;
+
+        // cancel the computation when the searched pattern is updated
+        public final CancellationSignal mCancellationSignal = new CancellationSignal();
+
+        public ArrayList<ArrayList<RoomSummary>> mSummaryListByGroupPosition = new ArrayList<>();
+        public ArrayList<PublicRoom> mMatchedPublicRooms;
+
+        public int mRoomByAliasGroupPosition = -1; // the user wants to join  by room id or alias
+        public int mDirectoryGroupPosition = -1;  // public rooms index
+        public int mInvitedGroupPosition = -1;  // "Invited" index
+        public int mFavouritesGroupPosition = -1;// "Favourites" index
+        public int mNoTagGroupPosition = -1;    // "Rooms" index
+        public int mLowPriorGroupPosition = -1;  // "Low Priority" index
+
+        public Snapshot(String searchedPattern, List<PublicRoom> publicRooms, boolean forceDirectoryGroupDisplay, Set<String> matchedRoomIds) {
+            mSearchedPattern = searchedPattern;
+            mPublicRooms = publicRooms;
+            mForceDirectoryGroupDisplay = forceDirectoryGroupDisplay;
+            mMatchedRoomIds = matchedRoomIds;
+        }
     }
 
+    // the rows types
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_CHILD = 1;
+
+    // the payload of the rows whose content might have been updated
+    private static final Object PAYLOAD_CHECK_CONTENT = new Object();
+
+    // above this rows moves count, the whole list is refreshed without animation
+    private static final int MAX_ANIMATED_ROWS_CHANGES = 32;
+
+    // the rows changes dispatched to the list
+    private static final int ROWS_CHANGE_REMOVED = 0;
+    private static final int ROWS_CHANGE_MOVED = 1;
+    private static final int ROWS_CHANGE_INSERTED = 2;
+
+    // the row changes which can be rebound without binding the whole row
+    private static final int ROW_CHANGE_UNREAD = 1;
+    private static final int ROW_CHANGE_PREVIEW = 1 << 1;
+    private static final int ROW_CHANGE_AVATAR = 1 << 2;
+    private static final int ROW_CHANGE_FULL = 1 << 3;
+
+    /**
+     * The group header views.
+     */
+    private static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        public final TextView mSectionNameTxtView;
+        public final ImageView mExpandImageView;
+
+        public HeaderViewHolder(View itemView) {
+            super(itemView);
+            mSectionNameTxtView = (TextView) itemView.findViewById(org.matrix.androidsdk.R.id.heading);
+            mExpandImageView = (ImageView) itemView.findViewById(org.matrix.androidsdk.R.id.heading_image);
+        }
+    }
+
+    /**
+     * The room row views.
+     */
+    private static class ChildViewHolder extends RecyclerView.ViewHolder {
+        public final ImageView mAvatarImageView;
+        public final TextView mRoomNameTxtView;
+        public final TextView mRoomMsgTxtView;
+        public final View mBingUnreadMsgView;
+        public final TextView mTimestampTxtView;
+        public final TextView mUnreadCountTxtView;
+        public final View mSeparatorView;
+        public final View mSeparatorGroupView;
+        public final View mActionView;
+        public final ImageView mActionImageView;
+        public final View mInvitationView;
+        public final Button mPreviewButton;
+        public final Button mRejectButton;
+        public final View mShowMoreView;
+        public final View mActionClickArea;
+
+        // the bound room row, null for the directory and the join by alias rows
+        public RowState mRowState;
+
+        public ChildViewHolder(View itemView) {
+            super(itemView);
+            mAvatarImageView = (ImageView) itemView.findViewById(R.id.room_avatar_image_view);
+            mRoomNameTxtView = (TextView) itemView.findViewById(R.id.roomSummaryAdapter_roomName);
+            mRoomMsgTxtView = (TextView) itemView.findViewById(R.id.roomSummaryAdapter_roomMessage);
+            mBingUnreadMsgView = itemView.findViewById(R.id.bing_indicator_unread_message);
+            mTimestampTxtView = (TextView) itemView.findViewById(R.id.roomSummaryAdapter_ts);
+            mUnreadCountTxtView = (TextView) itemView.findViewById(R.id.roomSummaryAdapter_unread_count);
+            mSeparatorView = itemView.findViewById(R.id.recents_separator);
+            mSeparatorGroupView = itemView.findViewById(R.id.recents_groups_separator_line);
+            mActionView = itemView.findViewById(R.id.roomSummaryAdapter_action);
+            mActionImageView = (ImageView) itemView.findViewById(R.id.roomSummaryAdapter_action_image);
+            mInvitationView = itemView.findViewById(R.id.recents_groups_invitation_group);
+            mPreviewButton = (Button) itemView.findViewById(R.id.recents_invite_preview_button);
+            mRejectButton = (Button) itemView.findViewById(R.id.recents_invite_reject_button);
+            mShowMoreView = itemView.findViewById(R.id.roomSummaryAdapter_show_more_layout);
+            mActionClickArea = itemView.findViewById(R.id.roomSummaryAdapter_action_click_area);
+        }
+    }
+
+    /**
+     * The bound content of a room row.
+     * It is saved in the row view holder to detect which parts of the row must be bound again.
+     */
+    private static class RowState {
+        public String mRoomId;
+        public String mRoomName;
+        public String mAvatarUrl;
+        public CharSequence mPreview;
+        public String mTimestamp;
+        public int mUnreadMsgCount;
+        public int mHighlightCount;
+        public int mNotificationCount;
+        public boolean mIsHighlighted;
+        public boolean mIsInvited;
+        public int mGroupPosition;
+        public boolean mIsLastChild;
+    }
+
+    // the background thread computing the snapshots
+    private static HandlerThread mSnapshotsThread = null;
+    private static Handler mSnapshotsThreadHandler = null;
+
     private final Context mContext;
     private final LayoutInflater mLayoutInflater;
     private final int mChildLayoutResourceId;
     private final int mHeaderLayoutResourceId;
 
     private final MXSession mMxSession;
-    private ArrayList<ArrayList<RoomSummary>> mSummaryListByGroupPosition;
 
-    private int mRoomByAliasGroupPosition = -1; // the user wants to join  by room id or alias
-    private int mDirectoryGroupPosition = -1;  // public rooms index
-    private int mInvitedGroupPosition = -1;  // "Invited" index
-    private int mFavouritesGroupPosition = -1;// "Favourites" index
-    private int mNoTagGroupPosition = -1;    // "Rooms" index
-    private int mLowPriorGroupPosition = -1;  // "Low Priority" index
+    // the displayed snapshot
+    private Snapshot mSnapshot = new Snapshot(null, null, false, null);
+
+    // the displayed rows : the group position, the child position (-1 for a group header) and the id of each row
+    private int[] mRowGroupPositions = new int[0];
+    private int[] mRowChildPositions = new int[0];
+    private long[] mRowIds = new long[0];
+
+    // the rows ids by room id (or by group title for the group headers)
+    private final HashMap<String, Long> mRowIdByKey = new HashMap<>();
+
+    // the collapsed groups ids
+    private final HashSet<Long> mCollapsedGroupIds = new HashSet<>();
 
     private final String DBG_CLASS_NAME;
 
@@ -105,14 +270,44 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
 
     // public room search
     private List<PublicRoom> mPublicRooms;
-    private ArrayList<PublicRoom> mMatchedPublicRooms;
 
-    // the listener
+    // the listeners
     private RoomEventListener mListener;
+    private OnChildClickListener mOnChildClickListener;
 
     // drag and drop mode
     private boolean mIsDragAndDropMode = false;
 
+    // the sorted sections, incrementally updated (fully rebuilt and filtered in search mode)
+    // it is only updated in the snapshots thread, from room entries built in the UI thread
+    private final RoomSummariesModel mRoomSummariesModel;
+
+    // the last messages previews
+    private final RoomSummaryPreviewsCache mPreviewsCache;
+    // the room ids whose preview is rendered out of a snapshot computation
+    private final HashSet<String> mPendingPreviewRoomIds = new HashSet<>();
+
+    private final Handler mUIHandler = new Handler(Looper.getMainLooper());
+
+    // the refresh requests which are not yet computed
+    private boolean mIsRefreshPending = false;
+    private boolean mIsFullRefreshPending = false;
+    private final HashSet<String> mPendingRoomIds = new HashSet<>();
+    // true when the computation is scheduled at the next frame
+    private boolean mIsRefreshScheduled = false;
+    // true when a snapshot is computed in the background thread
+    private boolean mIsComputingSnapshot = false;
+    // the snapshot being computed
+    private Snapshot mComputingSnapshot = null;
+
+    private final Choreographer.FrameCallback mRefreshFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsRefreshScheduled = false;
+            computeSnapshot();
+        }
+    };
+
     /**
      * Constructor
      * @param aContext the context.
@@ -137,6 +332,19 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
 
         mIsSearchMode = isSearchMode;
         mDisplayDirectoryGroupWhenEmpty = displayDirectoryGroupWhenEmpty;
+
+        mRoomSummariesModel = new RoomSummariesModel();
+        mPreviewsCache = new RoomSummaryPreviewsCache(aContext, session);
+
+        setHasStableIds(true);
+    }
+
+    /**
+     * Set the children click listener.
+     * @param listener the listener
+     */
+    public void setOnChildClickListener(OnChildClickListener listener) {
+        mOnChildClickListener = listener;
     }
 
     /**
@@ -154,15 +362,8 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return  the formatted timestamp to display.
      */
     private String getFormattedTimestamp(Event event) {
-        String text =  AdapterUtils.tsToString(mContext, event.getOriginServerTs(), false);
-
         // don't display the today before the time
-        String today = mContext.getString(R.string.today) + " ";
-        if (text.startsWith(today)) {
-            text = text.substring(today.length());
-        }
-
-        return text;
+        return TimestampFormatter.getInstance().format(mContext, event.getOriginServerTs(), TimestampFormatter.FORMAT_DATE_TIME_NO_TODAY);
     }
 
     /**
@@ -173,20 +374,20 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
     private String getGroupTitle(int groupPosition) {
         String retValue;
 
-        if (mRoomByAliasGroupPosition == groupPosition) {
+        if (mSnapshot.mRoomByAliasGroupPosition == groupPosition) {
             retValue = mContext.getResources().getString(R.string.room_recents_join);
-        } else if (mDirectoryGroupPosition == groupPosition) {
+        } else if (mSnapshot.mDirectoryGroupPosition == groupPosition) {
             retValue = mContext.getResources().getString(R.string.room_recents_directory);
-        } else if (mFavouritesGroupPosition == groupPosition) {
+        } else if (mSnapshot.mFavouritesGroupPosition == groupPosition) {
             retValue = mContext.getResources().getString(R.string.room_recents_favourites);
         }
-        else if (mNoTagGroupPosition == groupPosition) {
+        else if (mSnapshot.mNoTagGroupPosition == groupPosition) {
             retValue = mContext.getResources().getString(R.string.room_recents_conversations);
         }
-        else if (mLowPriorGroupPosition == groupPosition) {
+        else if (mSnapshot.mLowPriorGroupPosition == groupPosition) {
             retValue = mContext.getResources().getString(R.string.room_recents_low_priority);
         }
-        else if (mInvitedGroupPosition == groupPosition) {
+        else if (mSnapshot.mInvitedGroupPosition == groupPosition) {
             retValue = mContext.getResources().getString(R.string.room_recents_invites);
         }
         else {
@@ -197,67 +398,13 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
     return retValue;
     }
 
-    /**
-     * Fullfill an array list with a pattern.
-     * @param list the list to fill.
-     * @param value the pattern.
-     * @param count the number of occurences
-     * @return the updated list
-     */
-    private ArrayList<RoomSummary> fillList(ArrayList<RoomSummary> list, RoomSummary value, int count) {
-        for(int i = 0; i < count; i++) {
-            list.add(value);
-        }
-
-        return list;
-    }
-
-    /**
-     * Check a room name contains the searched pattern.
-     * @param room the room.
-     * @return true of the pattern is found.
-     */
-    private boolean isMatchedPattern(Room room) {
-        boolean res = true;
-
-        // test only in search
-        if (mIsSearchMode) {
-            res = false;
-
-            if (!TextUtils.isEmpty(mSearchedPattern)) {
-                String roomName = VectorUtils.getRoomDisplayname(mContext, mMxSession, room);
-                res = (!TextUtils.isEmpty(roomName) && (roomName.toLowerCase().indexOf(mSearchedPattern) >= 0));
-            }
-        }
-
-        return res;
-    }
-
-    /**
-     * Check a public room contains a patter,
-     * @param publicRoom the public room.
-     * @return true of the pattern is found.
-     */
-    private boolean isMatchedPattern(PublicRoom publicRoom) {
-        boolean res = true;
-
-        // test only in search
-        if (mIsSearchMode && !TextUtils.isEmpty(mSearchedPattern)) {
-            String displayname = publicRoom.getDisplayName(mMxSession.getMyUserId());
-
-            res = (!TextUtils.isEmpty(displayname) && (displayname.toLowerCase().indexOf(mSearchedPattern) >= 0));
-        }
-
-        return res;
-    }
-
     /**
      * Tell if the group position is the join by
      * @param groupPosition the group position to test.
      * @return true if it is room id group
      */
     public boolean isRoomByIdGroupPosition(int groupPosition) {
-        return (mRoomByAliasGroupPosition == groupPosition);
+        return (mSnapshot.mRoomByAliasGroupPosition == groupPosition);
     }
 
     /**
@@ -266,237 +413,211 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return true if it is directory group.
      */
     public boolean isDirectoryGroupPosition(int groupPosition) {
-        return (mDirectoryGroupPosition == groupPosition);
+        return (mSnapshot.mDirectoryGroupPosition == groupPosition);
     }
 
     /**
      * @return the directory group position
      */
     public int getDirectoryGroupPosition() {
-        return mDirectoryGroupPosition;
+        return mSnapshot.mDirectoryGroupPosition;
     }
 
     /**
      * @return true if the directory group is displayed
      */
     public boolean isDirectoryGroupDisplayed() {
-        return (-1 != mDirectoryGroupPosition);
-    }
-
-    @Override
-    public void onGroupCollapsed(int groupPosition) {
-        super.onGroupCollapsed(groupPosition);
-        if(null != mListener) {
-            mListener.onGroupCollapsedNotif(groupPosition);
-        }
+        return (-1 != mSnapshot.mDirectoryGroupPosition);
     }
 
-    @Override
-    public void onGroupExpanded(int groupPosition) {
-        super.onGroupExpanded(groupPosition);
-        if(null != mListener) {
-            mListener.onGroupExpandedNotif(groupPosition);
-        }
+    /**
+     * Tell if a group is expanded.
+     * The groups are always expanded in search mode.
+     * @param groupPosition the group position
+     * @return true if the group rooms are displayed
+     */
+    public boolean isGroupExpanded(int groupPosition) {
+        return mIsSearchMode || !mCollapsedGroupIds.contains(getGroupId(groupPosition));
     }
 
     /**
-     * @return the matched public rooms list
+     * Expand or collapse a group.
+     * The expanded state is kept while the group is displayed, even if its position changes.
+     * @param groupPosition the group position
+     * @param isExpanded true to display the group rooms
      */
-    public List<PublicRoom> getMatchedPublicRooms() {
+    public void setGroupExpanded(int groupPosition, boolean isExpanded) {
+        if ((groupPosition < 0) || (groupPosition >= getGroupCount()) || (isExpanded == isGroupExpanded(groupPosition))) {
+            return;
+        }
 
-        if (null != mMatchedPublicRooms) {
-            Collections.sort(mMatchedPublicRooms, new Comparator<PublicRoom>() {
-                @Override
-                public int compare(PublicRoom r1, PublicRoom r2) {
-                    int diff = r2.numJoinedMembers - r1.numJoinedMembers;
+        if (isExpanded) {
+            mCollapsedGroupIds.remove(getGroupId(groupPosition));
+        } else {
+            mCollapsedGroupIds.add(getGroupId(groupPosition));
+        }
 
-                    if (0 == diff) {
-                        diff = VectorUtils.getPublicRoomDisplayName(r1).compareTo(VectorUtils.getPublicRoomDisplayName(r2));
-                    }
+        int headerPosition = getRowPosition(groupPosition, -1);
+        buildRows();
 
-                    return diff;
-                }
-            });
+        if (isExpanded) {
+            notifyItemRangeInserted(headerPosition + 1, getChildrenCount(groupPosition));
+        } else {
+            notifyItemRangeRemoved(headerPosition + 1, getChildrenCount(groupPosition));
         }
 
-        return mMatchedPublicRooms;
+        // the chevron
+        notifyItemChanged(headerPosition);
     }
 
     /**
-     * Build an array of RoomSummary objects organized according to the room tags (sections).
-     * So far we have 4 sections
-     * - the invited rooms
-     * - the rooms with tags ROOM_TAG_FAVOURITE
-     * - the rooms with tags ROOM_TAG_LOW_PRIORITY
-     * - the rooms with tags ROOM_TAG_NO_TAG (displayed as "ROOMS")
-     * The section indexes: mFavouriteSectionIndex, mNoTagSectionIndex and mFavouriteSectionIndex are
-     * also computed in this method.
-     * @param aRoomSummaryCollection the complete list of RoomSummary objects
-     * @return an array of summary lists splitted by sections
+     * Expand or collapse a group after a click on its header.
+     * @param groupPosition the group position
      */
-    private ArrayList<ArrayList<RoomSummary>> buildSummariesByGroups(final Collection<RoomSummary> aRoomSummaryCollection) {
-        ArrayList<ArrayList<RoomSummary>> summaryListByGroupsRetValue = new ArrayList<ArrayList<RoomSummary>>();
-        String roomSummaryId;
-
-        // init index with default values
-        mRoomByAliasGroupPosition = -1;
-        mDirectoryGroupPosition = -1;
-        mInvitedGroupPosition = -1;
-        mFavouritesGroupPosition = -1;
-        mNoTagGroupPosition = -1;
-        mLowPriorGroupPosition = -1;
-
-        if(null != aRoomSummaryCollection) {
-
-            RoomSummary dummyRoomSummary = new RoomSummary();
-
-            // Retrieve lists of room IDs(strings) according to their tags
-            final List<String> favouriteRoomIdList = mMxSession.roomIdsWithTag(RoomTag.ROOM_TAG_FAVOURITE);
-            final List<String> lowPriorityRoomIdList = mMxSession.roomIdsWithTag(RoomTag.ROOM_TAG_LOW_PRIORITY);
-
-            // ArrayLists allocations: will contain the RoomSummary objects deduced from roomIdsWithTag()
-            ArrayList<RoomSummary> inviteRoomSummaryList = new ArrayList<RoomSummary>();
-            ArrayList<RoomSummary> favouriteRoomSummaryList = new ArrayList<RoomSummary>(favouriteRoomIdList.size());
-            ArrayList<RoomSummary> lowPriorityRoomSummaryList = new ArrayList<RoomSummary>();
-            ArrayList<RoomSummary> noTagRoomSummaryList = new ArrayList<RoomSummary>(lowPriorityRoomIdList.size());
+    private void onGroupClick(int groupPosition) {
+        // the groups cannot be collapsed in search mode
+        if (mIsSearchMode) {
+            return;
+        }
 
-            fillList(favouriteRoomSummaryList, dummyRoomSummary, favouriteRoomIdList.size());
-            fillList(lowPriorityRoomSummaryList, dummyRoomSummary, lowPriorityRoomIdList.size());
+        boolean isExpanded = !isGroupExpanded(groupPosition);
+        setGroupExpanded(groupPosition, isExpanded);
 
-            // Search loop going through all the summaries:
-            // here we translate the roomIds (Strings) to their corresponding RoomSummary objects
-            for(RoomSummary roomSummary : aRoomSummaryCollection) {
-                roomSummaryId = roomSummary.getRoomId();
+        if (null != mListener) {
+            if (isExpanded) {
+                mListener.onGroupExpandedNotif(groupPosition);
+            } else {
+                mListener.onGroupCollapsedNotif(groupPosition);
+            }
+        }
+    }
 
-                Room room = mMxSession.getDataHandler().getStore().getRoom(roomSummaryId);
+    /**
+     * @return the matched public rooms list
+     */
+    public List<PublicRoom> getMatchedPublicRooms() {
+        // the list is sorted when the snapshot is computed
+        return mSnapshot.mMatchedPublicRooms;
+    }
 
-                // check if the room exists
-                if ((null != room) && isMatchedPattern(room)) {
-                    // list first the summary
-                    if (room.isInvited()) {
-                        inviteRoomSummaryList.add(roomSummary);
+    /**
+     * Build the groups list from the sorted sections.
+     * The groups positions are also computed in this method.
+     * It is called in the snapshots thread.
+     * @param snapshot the snapshot to fill
+     * @param inviteRoomSummaryList the invited rooms
+     * @param favouriteRoomSummaryList the favourite rooms
+     * @param noTagRoomSummaryList the rooms without tag
+     * @param lowPriorityRoomSummaryList the low priority rooms
+     */
+    private void buildGroups(Snapshot snapshot, ArrayList<RoomSummary> inviteRoomSummaryList, ArrayList<RoomSummary> favouriteRoomSummaryList, ArrayList<RoomSummary> noTagRoomSummaryList, ArrayList<RoomSummary> lowPriorityRoomSummaryList) {
+        ArrayList<ArrayList<RoomSummary>> summaryListByGroupsRetValue = snapshot.mSummaryListByGroupPosition;
+        String searchedPattern = snapshot.mSearchedPattern;
+
+        // Adding sections
+        // Note the order here below: first the "invitations",  "favourite", then "no tag" and then "low priority"
+        int groupIndex = 0;
+
+        // in search mode
+        // the public rooms have a dedicated section
+        if (mIsSearchMode || mDisplayDirectoryGroupWhenEmpty || snapshot.mForceDirectoryGroupDisplay) {
+            // the directory index is built once per directory refresh
+            // and the matched public rooms are already ranked
+            if (null != snapshot.mPublicRooms) {
+                snapshot.mMatchedPublicRooms = PublicRoomsSearchIndex.getIndex(snapshot.mPublicRooms).search(mIsSearchMode ? searchedPattern : null, snapshot.mCancellationSignal);
+
+                // the least joined public rooms are only saved on the disk
+                if (mIsSearchMode && (null != snapshot.mMatchedPublicRooms)) {
+                    ArrayList<PublicRoom> savedPublicRooms = PublicRoomsManager.searchSavedPublicRooms(snapshot.mPublicRooms, searchedPattern, snapshot.mCancellationSignal);
+
+                    if (null != savedPublicRooms) {
+                        snapshot.mMatchedPublicRooms.addAll(savedPublicRooms);
                     } else {
-                        int pos;
-
-                        // search for each room Id in the room Id lists, retrieved from their corresponding tags
-                        pos = favouriteRoomIdList.indexOf(roomSummaryId);
-                        if (pos >= 0) {
-                            // update the favourites list
-                            // the favorites are ordered
-                            favouriteRoomSummaryList.set(pos, roomSummary);
-                        } else if ((pos = lowPriorityRoomIdList.indexOf(roomSummaryId)) >= 0) {
-                            // update the low priority list
-                            // the low priority are ordered
-                            lowPriorityRoomSummaryList.set(pos,roomSummary);
-                        } else {
-                            // default case: update the no tag list
-                            noTagRoomSummaryList.add(roomSummary);
-                        }
+                        snapshot.mMatchedPublicRooms = null;
                     }
-                } else if (null == room) {
-                    Log.e(DBG_CLASS_NAME, "buildSummariesBySections " + roomSummaryId + " has no known room");
                 }
             }
 
-            // Adding sections
-            // Note the order here below: first the "invitations",  "favourite", then "no tag" and then "low priority"
-            int groupIndex = 0;
-
-            // in search mode
-            // the public rooms have a dedicated section
-            if (mIsSearchMode || mDisplayDirectoryGroupWhenEmpty || mForceDirectoryGroupDisplay) {
-                mMatchedPublicRooms = new ArrayList<PublicRoom>();
-
-                if (null != mPublicRooms) {
-                    for (PublicRoom publicRoom : mPublicRooms) {
-                        if (isMatchedPattern(publicRoom)) {
-                            mMatchedPublicRooms.add(publicRoom);
-                        }
-                    }
-                }
-
-                // detect if the pattern might a room ID or an alias
-                if (!TextUtils.isEmpty(mSearchedPattern)) {
-                    // a room id is !XXX:server.ext
-                    // a room alias is #XXX:server.ext
+            // no directory or the search has been cancelled
+            if (null == snapshot.mMatchedPublicRooms) {
+                snapshot.mMatchedPublicRooms = new ArrayList<PublicRoom>();
+            }
 
-                    boolean isRoomId = false;
-                    boolean isRoomAlias = false;
+            // detect if the pattern might a room ID or an alias
+            if (!TextUtils.isEmpty(searchedPattern)) {
+                // a room id is !XXX:server.ext
+                // a room alias is #XXX:server.ext
 
-                    if (mSearchedPattern.startsWith("!")) {
-                        int sep = mSearchedPattern.indexOf(":");
+                boolean isRoomId = false;
+                boolean isRoomAlias = false;
 
-                        if (sep > 0) {
-                            sep = mSearchedPattern.indexOf(".", sep);
-                        }
+                if (searchedPattern.startsWith("!")) {
+                    int sep = searchedPattern.indexOf(":");
 
-                        isRoomId = sep > 0;
-                    } else if (mSearchedPattern.startsWith("#")) {
-                        int sep = mSearchedPattern.indexOf(":");
+                    if (sep > 0) {
+                        sep = searchedPattern.indexOf(".", sep);
+                    }
 
-                        if (sep > 0) {
-                            sep = mSearchedPattern.indexOf(".", sep);
-                        }
+                    isRoomId = sep > 0;
+                } else if (searchedPattern.startsWith("#")) {
+                    int sep = searchedPattern.indexOf(":");
 
-                        isRoomAlias = sep > 0;
+                    if (sep > 0) {
+                        sep = searchedPattern.indexOf(".", sep);
                     }
 
-                    if (isRoomId || isRoomAlias) {
-                        mRoomByAliasGroupPosition = groupIndex++;
-                    }
+                    isRoomAlias = sep > 0;
                 }
 
-                mDirectoryGroupPosition = groupIndex++;
-                // create a dummy entry to keep match between section index <-> summaries list
-                summaryListByGroupsRetValue.add(new ArrayList<RoomSummary>());
+                if (isRoomId || isRoomAlias) {
+                    snapshot.mRoomByAliasGroupPosition = groupIndex++;
+                }
             }
 
-            // first the invitations
-            if (0 != inviteRoomSummaryList.size()) {
-                // the invitations are sorted from the older to the oldest to the more recent ones
-                Collections.reverse(inviteRoomSummaryList);
-                summaryListByGroupsRetValue.add(inviteRoomSummaryList);
-                mInvitedGroupPosition = groupIndex;
-                groupIndex++;
-            }
+            snapshot.mDirectoryGroupPosition = groupIndex++;
+            // create a dummy entry to keep match between section index <-> summaries list
+            summaryListByGroupsRetValue.add(new ArrayList<RoomSummary>());
+        }
 
-            // favourite
-            while(favouriteRoomSummaryList.remove(dummyRoomSummary));
-            if (0 != favouriteRoomSummaryList.size()) {
-                summaryListByGroupsRetValue.add(favouriteRoomSummaryList);
-                mFavouritesGroupPosition = groupIndex; // save section index
-                groupIndex++;
-            }
+        // first the invitations
+        if (0 != inviteRoomSummaryList.size()) {
+            summaryListByGroupsRetValue.add(inviteRoomSummaryList);
+            snapshot.mInvitedGroupPosition = groupIndex;
+            groupIndex++;
+        }
 
-            // no tag
-            if (0 != noTagRoomSummaryList.size()) {
-                summaryListByGroupsRetValue.add(noTagRoomSummaryList);
-                mNoTagGroupPosition = groupIndex; // save section index
-                groupIndex++;
-            }
+        // favourite
+        if (0 != favouriteRoomSummaryList.size()) {
+            summaryListByGroupsRetValue.add(favouriteRoomSummaryList);
+            snapshot.mFavouritesGroupPosition = groupIndex; // save section index
+            groupIndex++;
+        }
 
-            // low priority
-            while(lowPriorityRoomSummaryList.remove(dummyRoomSummary));
-            if (0 != lowPriorityRoomSummaryList.size()) {
-                summaryListByGroupsRetValue.add(lowPriorityRoomSummaryList);
-                mLowPriorGroupPosition = groupIndex; // save section index
-                groupIndex++;
-            }
+        // no tag
+        if (0 != noTagRoomSummaryList.size()) {
+            summaryListByGroupsRetValue.add(noTagRoomSummaryList);
+            snapshot.mNoTagGroupPosition = groupIndex; // save section index
+            groupIndex++;
+        }
 
-            // in avoiding empty history mode
-            // check if there is really nothing else
-            if (mDisplayDirectoryGroupWhenEmpty && !mForceDirectoryGroupDisplay && (groupIndex > 1)) {
-                summaryListByGroupsRetValue.remove(mDirectoryGroupPosition);
-                mRoomByAliasGroupPosition = -1;
-                mDirectoryGroupPosition = -1;
-                mInvitedGroupPosition--;
-                mFavouritesGroupPosition--;
-                mNoTagGroupPosition--;
-                mLowPriorGroupPosition--;
-            }
+        // low priority
+        if (0 != lowPriorityRoomSummaryList.size()) {
+            summaryListByGroupsRetValue.add(lowPriorityRoomSummaryList);
+            snapshot.mLowPriorGroupPosition = groupIndex; // save section index
+            groupIndex++;
         }
 
-        return summaryListByGroupsRetValue;
+        // in avoiding empty history mode
+        // check if there is really nothing else
+        if (mDisplayDirectoryGroupWhenEmpty && !snapshot.mForceDirectoryGroupDisplay && (groupIndex > 1)) {
+            summaryListByGroupsRetValue.remove(snapshot.mDirectoryGroupPosition);
+            snapshot.mRoomByAliasGroupPosition = -1;
+            snapshot.mDirectoryGroupPosition = -1;
+            snapshot.mInvitedGroupPosition--;
+            snapshot.mFavouritesGroupPosition--;
+            snapshot.mNoTagGroupPosition--;
+            snapshot.mLowPriorGroupPosition--;
+        }
     }
 
     /**
@@ -506,7 +627,7 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return the corresponding room summary
      */
     public RoomSummary getRoomSummaryAt(int aGroupPosition, int aChildPosition) {
-        RoomSummary roomSummaryRetValue = mSummaryListByGroupPosition.get(aGroupPosition).get(aChildPosition);
+        RoomSummary roomSummaryRetValue = mSnapshot.mSummaryListByGroupPosition.get(aGroupPosition).get(aChildPosition);
         return roomSummaryRetValue;
     }
 
@@ -541,7 +662,7 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
     public boolean resetUnreadCounts(int aSection) {
         boolean retCode = false;
 
-        ArrayList<RoomSummary> summariesList = mSummaryListByGroupPosition.get(aSection);
+        ArrayList<RoomSummary> summariesList = mSnapshot.mSummaryListByGroupPosition.get(aSection);
         if(null != summariesList) {
             for (int summaryIdx = 0; summaryIdx < summariesList.size(); summaryIdx++) {
                 retCode |= resetUnreadCount(aSection, summaryIdx);
@@ -589,8 +710,8 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
         RoomSummary roomSummaryRetValue = null;
         String roomIdStr;
 
-        if (null != mSummaryListByGroupPosition) {
-            ArrayList<RoomSummary> summariesList = mSummaryListByGroupPosition.get(aSectionIndex);
+        if (null != mSnapshot.mSummaryListByGroupPosition) {
+            ArrayList<RoomSummary> summariesList = mSnapshot.mSummaryListByGroupPosition.get(aSectionIndex);
             if (null != summariesList) {
                 for (int summaryIdx = 0; summaryIdx < summariesList.size(); summaryIdx++) {
                     roomIdStr = (summariesList.get(summaryIdx)).getRoomId();
@@ -609,136 +730,687 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
         return roomSummaryRetValue;
     }
 
+    /**
+     * Compute the summaries list into a snapshot.
+     * It is called in the snapshots thread, the room entries have been built in the UI thread.
+     * @param snapshot the snapshot to fill
+     * @param entries the entries of all the rooms (full refresh), null for a partial refresh
+     * @param entryByRoomId the entries of the updated rooms (partial refresh)
+     * @return true if the snapshot has been filled, false if the displayed snapshot is still valid
+     */
+    private boolean refreshSummariesList(Snapshot snapshot, Collection<RoomSummariesModel.RoomEntry> entries, Map<String, RoomSummariesModel.RoomEntry> entryByRoomId) {
+        // the sections are sorted by the model, from the copied sort keys of the summaries
+        // because they are updated in the UI thread while the snapshot is computed
+        if (null != entries) {
+            mRoomSummariesModel.rebuild(entries);
+        } else if (!mRoomSummariesModel.applyRoomsUpdates(entryByRoomId)) {
+            // the rooms have not been moved
+            return false;
+        }
 
-    @Override
-    public boolean hasStableIds() {
-        return false;
+        buildGroupsFromModel(snapshot);
+        return true;
     }
 
-    @Override
-    public boolean isChildSelectable(int groupPosition, int childPosition) {
-        return true;
+    /**
+     * Build the groups list from the model sections.
+     * In search mode, only the rooms whose name, aliases or topic contain the searched pattern are kept.
+     * @param snapshot the snapshot to fill
+     */
+    private void buildGroupsFromModel(Snapshot snapshot) {
+        buildGroups(snapshot,
+                getMatchedSectionSummaries(RoomSummariesModel.SECTION_INVITES, snapshot.mMatchedRoomIds),
+                getMatchedSectionSummaries(RoomSummariesModel.SECTION_FAVOURITES, snapshot.mMatchedRoomIds),
+                getMatchedSectionSummaries(RoomSummariesModel.SECTION_NO_TAG, snapshot.mMatchedRoomIds),
+                getMatchedSectionSummaries(RoomSummariesModel.SECTION_LOW_PRIORITY, snapshot.mMatchedRoomIds));
     }
 
-    private void refreshSummariesList() {
-        if (null != mMxSession) {
-            // sanity check
-            MXDataHandler dataHandler = mMxSession.getDataHandler();
-            if((null == dataHandler) || (null == dataHandler.getStore())) {
-                Log.w(DBG_CLASS_NAME,"## refreshSummariesList(): unexpected null values - return");
-                return;
+    /**
+     * Provide the summaries of a model section which match the searched pattern.
+     * @param section the model section
+     * @param matchedRoomIds the room ids matched by the search index (null if there is no searched pattern).
+     * @return the sorted summaries
+     */
+    private ArrayList<RoomSummary> getMatchedSectionSummaries(int section, Set<String> matchedRoomIds) {
+        // test only in search
+        if (mIsSearchMode) {
+            return mRoomSummariesModel.getSectionSummaries(section, (null != matchedRoomIds) ? matchedRoomIds : Collections.<String>emptySet());
+        }
+
+        return mRoomSummariesModel.getSectionSummaries(section, null);
+    }
+
+    /**
+     * Copy the inputs of the missing last message previews before displaying a snapshot.
+     * It is called in the UI thread, the previews are rendered in the snapshots thread.
+     * @param snapshot the computed snapshot, null if the displayed one is still valid
+     * @param entryByRoomId the entries of the updated rooms
+     * @return the inputs of the missing previews
+     */
+    private ArrayList<RoomSummaryPreviewsCache.PreviewInput> buildPreviewInputs(Snapshot snapshot, Map<String, RoomSummariesModel.RoomEntry> entryByRoomId) {
+        ArrayList<RoomSummary> summaries = new ArrayList<>();
+
+        if (null != snapshot) {
+            // the groups order
+            for (ArrayList<RoomSummary> groupSummaries : snapshot.mSummaryListByGroupPosition) {
+                summaries.addAll(groupSummaries);
+            }
+        } else {
+            for (RoomSummariesModel.RoomEntry entry : entryByRoomId.values()) {
+                if (null != entry) {
+                    summaries.add(entry.mSummary);
+                }
+            }
+        }
+
+        ArrayList<RoomSummaryPreviewsCache.PreviewInput> inputs = new ArrayList<>();
+
+        // the first rooms are the displayed ones, the others would be removed from the cache
+        for (int i = 0; i < Math.min(summaries.size(), RoomSummaryPreviewsCache.MAX_PREVIEWS_COUNT); i++) {
+            RoomSummaryPreviewsCache.PreviewInput input = mPreviewsCache.buildInput(summaries.get(i));
+
+            if (null != input) {
+                inputs.add(input);
             }
+        }
+
+        return inputs;
+    }
+
+    /**
+     * Render a missing preview (e.g. the room is not in the first cached ones) in the snapshots thread.
+     * The list is redrawn when all the requested previews are rendered.
+     * @param summary the room summary
+     */
+    private void requestPreview(RoomSummary summary) {
+        final String roomId = summary.getRoomId();
 
-            // update/retrieve the complete summary list
-            ArrayList<RoomSummary> roomSummariesCompleteList = new ArrayList<RoomSummary>(dataHandler.getStore().getSummaries());
+        if (mPendingPreviewRoomIds.contains(roomId)) {
+            return;
+        }
 
-            // define comparator logic
-            Comparator<RoomSummary> summaryComparator = new Comparator<RoomSummary>() {
-                public int compare(RoomSummary aLeftObj, RoomSummary aRightObj) {
-                    int retValue;
-                    long deltaTimestamp;
+        // the inputs are copied in the UI thread
+        final RoomSummaryPreviewsCache.PreviewInput input = mPreviewsCache.buildInput(summary);
 
-                    if((null == aLeftObj) || (null == aLeftObj.getLatestEvent())){
-                        retValue = 1;
-                    }
-                    else if((null == aRightObj) || (null == aRightObj.getLatestEvent())){
-                        retValue = -1;
-                    }
-                    else if((deltaTimestamp = aRightObj.getLatestEvent().getOriginServerTs() - aLeftObj.getLatestEvent().getOriginServerTs()) > 0) {
-                        retValue = 1;
+        if (null == input) {
+            return;
+        }
+
+        mPendingPreviewRoomIds.add(roomId);
+
+        getSnapshotsThreadHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                mPreviewsCache.fill(Collections.singletonList(input));
+
+                mUIHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mPendingPreviewRoomIds.remove(roomId);
+
+                        if (mPendingPreviewRoomIds.isEmpty()) {
+                            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_CHECK_CONTENT);
+                        }
                     }
-                    else if (deltaTimestamp < 0) {
-                        retValue = -1;
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the snapshots thread handler
+     */
+    private static synchronized Handler getSnapshotsThreadHandler() {
+        if (null == mSnapshotsThread) {
+            mSnapshotsThread = new HandlerThread("RoomSummariesThread", Thread.MIN_PRIORITY);
+            mSnapshotsThread.start();
+            mSnapshotsThreadHandler = new Handler(mSnapshotsThread.getLooper());
+        }
+
+        return mSnapshotsThreadHandler;
+    }
+
+    /**
+     * Request a summaries list refresh.
+     * The requests are merged and they are computed at most once per frame.
+     * @param isFullRefresh true to sort and group all the summaries
+     * @param roomIds the updated room ids (partial refresh)
+     */
+    private void requestRefresh(boolean isFullRefresh, Collection<String> roomIds) {
+        mIsRefreshPending = true;
+        mIsFullRefreshPending |= isFullRefresh;
+
+        if (null != roomIds) {
+            mPendingRoomIds.addAll(roomIds);
+        }
+
+        scheduleRefresh();
+    }
+
+    /**
+     * Compute the pending refresh at the next frame.
+     * There is only one computation at a time and there is none in drag and drop mode.
+     */
+    private void scheduleRefresh() {
+        if (mIsRefreshPending && !mIsRefreshScheduled && !mIsComputingSnapshot && !mIsDragAndDropMode) {
+            mIsRefreshScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mRefreshFrameCallback);
+        }
+    }
+
+    /**
+     * Compute the pending refresh in the snapshots thread.
+     */
+    private void computeSnapshot() {
+        if (!mIsRefreshPending || mIsComputingSnapshot || mIsDragAndDropMode) {
+            return;
+        }
+
+        final boolean isFullRefresh = mIsFullRefreshPending;
+        final ArrayList<String> roomIds = new ArrayList<>(mPendingRoomIds);
+
+        mIsRefreshPending = false;
+        mIsFullRefreshPending = false;
+        mPendingRoomIds.clear();
+
+        // sanity check
+        MXDataHandler dataHandler = mMxSession.getDataHandler();
+        if (!mMxSession.isAlive() || (null == dataHandler) || (null == dataHandler.getStore())) {
+            Log.w(DBG_CLASS_NAME, "## computeSnapshot(): unexpected null values - return");
+            return;
+        }
+
+        // the SDK objects are not thread safe : the rooms sort keys, sections and search matches
+        // are copied in the UI thread, then the snapshots thread only sorts and groups these copies
+        long captureStartTime = System.currentTimeMillis();
+        final ArrayList<RoomSummariesModel.RoomEntry> entries;
+        final HashMap<String, RoomSummariesModel.RoomEntry> entryByRoomId = new HashMap<>();
+
+        // the model is only updated by the computations, so it can be read when there is none
+        if (isFullRefresh || !mRoomSummariesModel.isBuilt()) {
+            entries = RoomSummariesModel.buildEntries(mMxSession);
+        } else {
+            entries = null;
+
+            for (String roomId : roomIds) {
+                entryByRoomId.put(roomId, RoomSummariesModel.buildEntry(mMxSession, roomId));
+            }
+        }
+
+        Set<String> matchedRoomIds = null;
+
+        if (mIsSearchMode && !TextUtils.isEmpty(mSearchedPattern)) {
+            matchedRoomIds = RoomSearchIndex.getInstance(mMxSession).search(mSearchedPattern);
+        }
+
+        final long captureDurationMs = System.currentTimeMillis() - captureStartTime;
+        final Snapshot snapshot = new Snapshot(mSearchedPattern, mPublicRooms, mForceDirectoryGroupDisplay, matchedRoomIds);
+
+        mIsComputingSnapshot = true;
+        mComputingSnapshot = snapshot;
+
+        getSnapshotsThreadHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                boolean isComputed = false;
+                boolean isFailed = false;
+
+                try {
+                    isComputed = refreshSummariesList(snapshot, entries, entryByRoomId);
+                } catch (Exception e) {
+                    Log.e(DBG_CLASS_NAME, "## computeSnapshot() failed " + e.getMessage(), e);
+                    isFailed = true;
+                }
+
+                Log.d(DBG_CLASS_NAME, "## computeSnapshot() : " + ((null != entries) ? "full refresh" : (roomIds.size() + " rooms updated")) + " in " + captureDurationMs + " ms (UI thread) + " + (System.currentTimeMillis() - startTime) + " ms");
+
+                final boolean fIsComputed = isComputed;
+                final boolean fIsFailed = isFailed;
+
+                mUIHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onSnapshotSorted(snapshot, fIsComputed, fIsFailed, isFullRefresh, entryByRoomId);
                     }
-                    else {
-                        retValue = 0;
+                });
+            }
+        });
+    }
+
+    /**
+     * A snapshot has been sorted (UI thread).
+     * The inputs of the missing previews are copied, then the previews are rendered in the snapshots thread
+     * before the snapshot is displayed.
+     * @param snapshot the computed snapshot
+     * @param isComputed false if the displayed snapshot is still valid
+     * @param isFailed true if the computation has failed
+     * @param isFullRefresh true if it was a full refresh
+     * @param entryByRoomId the entries of the updated rooms
+     */
+    private void onSnapshotSorted(final Snapshot snapshot, final boolean isComputed, boolean isFailed, final boolean isFullRefresh, Map<String, RoomSummariesModel.RoomEntry> entryByRoomId) {
+        if (isFailed || snapshot.mCancellationSignal.isCanceled() || !mMxSession.isAlive()) {
+            endComputation(snapshot, isComputed, isFailed, isFullRefresh);
+            return;
+        }
+
+        final ArrayList<RoomSummaryPreviewsCache.PreviewInput> inputs = buildPreviewInputs(isComputed ? snapshot : null, entryByRoomId);
+
+        if (inputs.isEmpty()) {
+            endComputation(snapshot, isComputed, false, isFullRefresh);
+            return;
+        }
+
+        getSnapshotsThreadHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                mPreviewsCache.fill(inputs);
+
+                mUIHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        endComputation(snapshot, isComputed, false, isFullRefresh);
                     }
+                });
+            }
+        });
+    }
 
-                    return retValue;
-                }
-            };
+    /**
+     * End a snapshot computation (UI thread).
+     * @param snapshot the computed snapshot
+     * @param isComputed false if the displayed snapshot is still valid
+     * @param isFailed true if the computation has failed
+     * @param isFullRefresh true if it was a full refresh
+     */
+    private void endComputation(Snapshot snapshot, boolean isComputed, boolean isFailed, boolean isFullRefresh) {
+        mIsComputingSnapshot = false;
+        mComputingSnapshot = null;
+
+        // a failed partial update may have left the model inconsistent : it is rebuilt
+        if (isFailed && !isFullRefresh) {
+            mIsRefreshPending = true;
+            mIsFullRefreshPending = true;
+        }
+
+        if (snapshot.mCancellationSignal.isCanceled()) {
+            // the refresh with the new searched pattern is pending
+            scheduleRefresh();
+        } else {
+            onSnapshotComputed(isComputed ? snapshot : null, isFullRefresh);
+        }
+    }
+
+    /**
+     * A snapshot has been computed (UI thread).
+     * @param snapshot the new snapshot, null if the displayed one is still valid
+     * @param isFullRefresh true if it was a full refresh
+     */
+    private void onSnapshotComputed(Snapshot snapshot, boolean isFullRefresh) {
+        if (mIsDragAndDropMode) {
+            // the displayed lists are updated by the drag and drop
+            // the model is already updated so the groups are rebuilt when the mode is left
+            mIsRefreshPending = true;
+            mIsFullRefreshPending = true;
+            return;
+        }
+
+        if (null != snapshot) {
+            mSnapshot = snapshot;
+        }
 
-            Collections.sort(roomSummariesCompleteList, summaryComparator);
+        // the moved rows are animated and only the updated parts of the rows are bound again
+        long[] previousRowIds = mRowIds;
+        buildRows();
 
-            // init data model used to be be displayed in the list view
-            mSummaryListByGroupPosition = buildSummariesByGroups(roomSummariesCompleteList);
+        if (dispatchRowsChanges(previousRowIds, mRowIds)) {
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_CHECK_CONTENT);
+        } else {
+            notifyDataSetChanged();
+        }
+
+        if ((null != snapshot) && (null != mListener)) {
+            mListener.onSummariesListRefreshed();
         }
+
+        // some refreshes have been requested during the computation
+        scheduleRefresh();
     }
 
-    @Override
-    public void notifyDataSetChanged() {
+    /**
+     * Refresh the summaries list.
+     * The list is computed in a background thread and it is displayed asynchronously.
+     * There is no refresh in drag and drop mode.
+     */
+    public void notifySummariesChanged() {
         if (!mIsDragAndDropMode) {
-            refreshSummariesList();
+            requestRefresh(true, null);
         }
-        super.notifyDataSetChanged();
     }
 
-    @Override
+    /**
+     * Refresh the list after some rooms updates.
+     * Only the updated rooms are moved in their sections.
+     * The whole list is refreshed in search mode or if it has never been built.
+     * @param roomIds the updated room ids
+     */
+    public void notifyRoomsChanged(Collection<String> roomIds) {
+        requestRefresh(mIsSearchMode, roomIds);
+    }
+
+    /**
+     * @return the groups count
+     */
     public int getGroupCount() {
-        if (null != mSummaryListByGroupPosition) {
-            return mSummaryListByGroupPosition.size();
+        if (null != mSnapshot.mSummaryListByGroupPosition) {
+            return mSnapshot.mSummaryListByGroupPosition.size();
         }
 
         return 0;
     }
 
-    @Override
-    public Object getGroup(int groupPosition) {
-        return getGroupTitle(groupPosition);
-    }
-
-    @Override
+    /**
+     * Provide a group id, which does not change when the group position changes.
+     * @param groupPosition the group position
+     * @return the group id
+     */
     public long getGroupId(int groupPosition) {
         return getGroupTitle(groupPosition).hashCode();
     }
 
-    @Override
+    /**
+     * Provide the children count of a group.
+     * @param groupPosition the group position
+     * @return the children count
+     */
     public int getChildrenCount(int groupPosition) {
         // the directory section has always only one entry
         // same for the join by room alias or ID
-        if ((mDirectoryGroupPosition == groupPosition) || (mRoomByAliasGroupPosition == groupPosition)) {
+        if ((mSnapshot.mDirectoryGroupPosition == groupPosition) || (mSnapshot.mRoomByAliasGroupPosition == groupPosition)) {
             return 1;
         }
 
-        int countRetValue = mSummaryListByGroupPosition.get(groupPosition).size();
+        int countRetValue = mSnapshot.mSummaryListByGroupPosition.get(groupPosition).size();
         return countRetValue;
     }
 
+    /**
+     * Provide the stable id of a row.
+     * @param key the room id, or the group title for the group headers and the directory / join by alias rows
+     * @return the row id
+     */
+    private long getRowId(String key) {
+        Long rowId = mRowIdByKey.get(key);
+
+        if (null == rowId) {
+            rowId = (long) mRowIdByKey.size();
+            mRowIdByKey.put(key, rowId);
+        }
+
+        return rowId;
+    }
+
+    /**
+     * Build the displayed rows from the displayed snapshot and the groups expanded states.
+     */
+    private void buildRows() {
+        int rowsCount = 0;
+
+        for (int groupPosition = 0; groupPosition < getGroupCount(); groupPosition++) {
+            rowsCount += 1 + (isGroupExpanded(groupPosition) ? getChildrenCount(groupPosition) : 0);
+        }
+
+        mRowGroupPositions = new int[rowsCount];
+        mRowChildPositions = new int[rowsCount];
+        mRowIds = new long[rowsCount];
+
+        int position = 0;
+
+        for (int groupPosition = 0; groupPosition < getGroupCount(); groupPosition++) {
+            String groupTitle = getGroupTitle(groupPosition);
+
+            mRowGroupPositions[position] = groupPosition;
+            mRowChildPositions[position] = -1;
+            // the room ids start with '!'
+            mRowIds[position] = getRowId("header " + groupTitle);
+            position++;
+
+            if (isGroupExpanded(groupPosition)) {
+                boolean isRoomsGroup = (mSnapshot.mDirectoryGroupPosition != groupPosition) && (mSnapshot.mRoomByAliasGroupPosition != groupPosition);
+                int childrenCount = getChildrenCount(groupPosition);
+
+                for (int childPosition = 0; childPosition < childrenCount; childPosition++) {
+                    mRowGroupPositions[position] = groupPosition;
+                    mRowChildPositions[position] = childPosition;
+                    mRowIds[position] = getRowId(isRoomsGroup ? mSnapshot.mSummaryListByGroupPosition.get(groupPosition).get(childPosition).getRoomId() : ("entry " + groupTitle));
+                    position++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatch the rows removals, moves and insertions between two rows lists, so they are animated.
+     * @param previousRowIds the displayed rows ids
+     * @param rowIds the new rows ids
+     * @return false if there are too many changes to animate them (nothing is dispatched)
+     */
+    private boolean dispatchRowsChanges(long[] previousRowIds, long[] rowIds) {
+        HashSet<Long> rowIdsSet = new HashSet<>();
+
+        for (long rowId : rowIds) {
+            rowIdsSet.add(rowId);
+        }
+
+        // the rows changes are computed on a copy of the displayed rows before being dispatched
+        ArrayList<Long> rows = new ArrayList<>();
+        ArrayList<int[]> changes = new ArrayList<>();
+
+        for (long rowId : previousRowIds) {
+            rows.add(rowId);
+        }
+
+        // the removed rows, from the last one to keep the positions
+        for (int position = rows.size() - 1; position >= 0; position--) {
+            if (!rowIdsSet.contains(rows.get(position))) {
+                rows.remove(position);
+                changes.add(new int[]{ROWS_CHANGE_REMOVED, position, 0});
+
+                if (changes.size() > MAX_ANIMATED_ROWS_CHANGES) {
+                    return false;
+                }
+            }
+        }
+
+        // the moved and the inserted rows
+        for (int position = 0; position < rowIds.length; position++) {
+            if ((position < rows.size()) && (rows.get(position) == rowIds[position])) {
+                continue;
+            }
+
+            // the previous rows are already at their positions, so a moved row comes from below
+            int fromPosition = rows.indexOf(rowIds[position]);
+
+            if (fromPosition >= 0) {
+                rows.add(position, rows.remove(fromPosition));
+                changes.add(new int[]{ROWS_CHANGE_MOVED, fromPosition, position});
+            } else {
+                rows.add(position, rowIds[position]);
+                changes.add(new int[]{ROWS_CHANGE_INSERTED, position, 0});
+            }
+
+            if (changes.size() > MAX_ANIMATED_ROWS_CHANGES) {
+                return false;
+            }
+        }
+
+        for (int[] change : changes) {
+            if (ROWS_CHANGE_REMOVED == change[0]) {
+                notifyItemRemoved(change[1]);
+            } else if (ROWS_CHANGE_MOVED == change[0]) {
+                notifyItemMoved(change[1], change[2]);
+            } else {
+                notifyItemInserted(change[1]);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Provide the position of a displayed row.
+     * @param groupPosition the group position
+     * @param childPosition the child position, -1 for the group header
+     * @return the row position, -1 if it is not displayed
+     */
+    private int getRowPosition(int groupPosition, int childPosition) {
+        for (int position = 0; position < mRowGroupPositions.length; position++) {
+            if ((mRowGroupPositions[position] == groupPosition) && (mRowChildPositions[position] == childPosition)) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Provide the group position of a row.
+     * @param position the row position
+     * @return the group position
+     */
+    public int getGroupPositionAt(int position) {
+        return mRowGroupPositions[position];
+    }
+
+    /**
+     * Provide the child position of a row.
+     * @param position the row position
+     * @return the child position, -1 if the row is a group header
+     */
+    public int getChildPositionAt(int position) {
+        return mRowChildPositions[position];
+    }
+
+    @Override
+    public int getItemCount() {
+        return mRowIds.length;
+    }
+
     @Override
-    public Object getChild(int groupPosition, int childPosition) {
-        return null;
+    public long getItemId(int position) {
+        return mRowIds[position];
     }
 
     @Override
-    public long getChildId(int groupPosition, int childPosition) {
-        return 0L;
+    public int getItemViewType(int position) {
+        return (mRowChildPositions[position] < 0) ? VIEW_TYPE_HEADER : VIEW_TYPE_CHILD;
     }
 
     @Override
-    public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (VIEW_TYPE_HEADER == viewType) {
+            final HeaderViewHolder holder = new HeaderViewHolder(mLayoutInflater.inflate(mHeaderLayoutResourceId, parent, false));
 
-        if (null == convertView) {
-            convertView = this.mLayoutInflater.inflate(this.mHeaderLayoutResourceId, null);
+            holder.itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int position = holder.getAdapterPosition();
+
+                    if (RecyclerView.NO_POSITION != position) {
+                        onGroupClick(mRowGroupPositions[position]);
+                    }
+                }
+            });
+
+            return holder;
         }
 
-        TextView sectionNameTxtView = (TextView)convertView.findViewById(org.matrix.androidsdk.R.id.heading);
+        final ChildViewHolder holder = new ChildViewHolder(mLayoutInflater.inflate(mChildLayoutResourceId, parent, false));
+
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                int position = holder.getAdapterPosition();
 
-        if (null != sectionNameTxtView) {
-            sectionNameTxtView.setText(getGroupTitle(groupPosition));
+                if ((RecyclerView.NO_POSITION != position) && (null != mOnChildClickListener)) {
+                    mOnChildClickListener.onChildClick(mRowGroupPositions[position], mRowChildPositions[position]);
+                }
+            }
+        });
+
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        int groupPosition = mRowGroupPositions[position];
+        int childPosition = mRowChildPositions[position];
+
+        if (holder instanceof HeaderViewHolder) {
+            bindGroupView((HeaderViewHolder) holder, groupPosition);
+        } else {
+            bindChildView((ChildViewHolder) holder, groupPosition, childPosition, childPosition == (getChildrenCount(groupPosition) - 1));
         }
+    }
 
-        ImageView imageView = (ImageView) convertView.findViewById(org.matrix.androidsdk.R.id.heading_image);
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        // the content of a bound room row is checked : only its updated parts are bound again
+        if (!payloads.isEmpty() && (holder instanceof ChildViewHolder) && (null != ((ChildViewHolder) holder).mRowState) && mMxSession.isAlive()) {
+            ChildViewHolder childHolder = (ChildViewHolder) holder;
+            int groupPosition = mRowGroupPositions[position];
+            int childPosition = mRowChildPositions[position];
+
+            if ((mSnapshot.mDirectoryGroupPosition != groupPosition) && (mSnapshot.mRoomByAliasGroupPosition != groupPosition)) {
+                ArrayList<RoomSummary> summaries = mSnapshot.mSummaryListByGroupPosition.get(groupPosition);
+                RoomSummary summary = summaries.get(childPosition);
+                Room room = mMxSession.getDataHandler().getStore().getRoom(summary.getRoomId());
+                boolean isLastChild = (childPosition == (summaries.size() - 1));
+
+                RowState rowState = computeRowState(summary, room, groupPosition, isLastChild);
+                int changes = getRowChanges(childHolder.mRowState, rowState);
+
+                if (0 == (changes & ROW_CHANGE_FULL)) {
+                    if (0 != (changes & ROW_CHANGE_UNREAD)) {
+                        bindUnreadState(childHolder, rowState);
+                    }
+
+                    if (0 != (changes & ROW_CHANGE_PREVIEW)) {
+                        bindPreview(childHolder, rowState);
+                    }
+
+                    if (0 != (changes & ROW_CHANGE_AVATAR)) {
+                        bindAvatar(childHolder, room, rowState);
+                    }
+
+                    childHolder.mRowState = rowState;
+                    return;
+                }
+            }
+        }
+
+        onBindViewHolder(holder, position);
+    }
+
+    /**
+     * Display a group header.
+     * @param holder the header views
+     * @param groupPosition the group position
+     */
+    private void bindGroupView(HeaderViewHolder holder, int groupPosition) {
+        if (null != holder.mSectionNameTxtView) {
+            holder.mSectionNameTxtView.setText(getGroupTitle(groupPosition));
+        }
 
         if (mIsSearchMode) {
-            imageView.setVisibility(View.GONE);
+            holder.mExpandImageView.setVisibility(View.GONE);
         } else {
-            if (!isExpanded) {
-                imageView.setImageResource(R.drawable.ic_material_expand_less_black);
+            if (!isGroupExpanded(groupPosition)) {
+                holder.mExpandImageView.setImageResource(R.drawable.ic_material_expand_less_black);
             } else {
-                imageView.setImageResource(R.drawable.ic_material_expand_more_black);
+                holder.mExpandImageView.setImageResource(R.drawable.ic_material_expand_more_black);
             }
         }
-        return convertView;
     }
 
     /**
@@ -758,53 +1430,43 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
     }
 
     /**
-     * Compute the View that should be used to render the child,
-     * given its position and its group’s position
+     * Display a group child, given its position and its group’s position.
+     * @param holder the child views
+     * @param groupPosition the group position
+     * @param childPosition the child position
+     * @param isLastChild true if the child is the last one of its group
      */
-    @Override
-    public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
-        // sanity check
-        if (null == mSummaryListByGroupPosition){
-            return null;
-        }
-        if (convertView == null) {
-            convertView = mLayoutInflater.inflate(mChildLayoutResourceId, parent, false);
-        }
+    private void bindChildView(ChildViewHolder holder, int groupPosition, int childPosition, boolean isLastChild) {
+        // not yet a room row
+        holder.mRowState = null;
 
         if (!mMxSession.isAlive()) {
-            return convertView;
+            return;
         }
 
         int roomNameBlack = mContext.getResources().getColor(R.color.vector_text_black_color);
-        int fushiaColor = mContext.getResources().getColor(R.color.vector_fuchsia_color);
-        int vectorDarkGreyColor = mContext.getResources().getColor(R.color.vector_4d_gray);
         int vectorDefaultTimeStampColor = mContext.getResources().getColor(R.color.vector_0_54_black_color);
-        int vectorGreenColor = mContext.getResources().getColor(R.color.vector_green_color);
-        int vectorSilverColor = mContext.getResources().getColor(R.color.vector_silver_color);
-
 
         // retrieve the UI items
-        ImageView avatarImageView = (ImageView)convertView.findViewById(R.id.room_avatar_image_view);
-        TextView roomNameTxtView = (TextView) convertView.findViewById(R.id.roomSummaryAdapter_roomName);
-        TextView roomMsgTxtView = (TextView) convertView.findViewById(R.id.roomSummaryAdapter_roomMessage);
-        View bingUnreadMsgView = convertView.findViewById(R.id.bing_indicator_unread_message);
-        TextView timestampTxtView = (TextView) convertView.findViewById(R.id.roomSummaryAdapter_ts);
-        View separatorView = convertView.findViewById(R.id.recents_separator);
-        View separatorGroupView = convertView.findViewById(R.id.recents_groups_separator_line);
-        final View actionView = convertView.findViewById(R.id.roomSummaryAdapter_action);
-        final ImageView actionImageView = (ImageView) convertView.findViewById(R.id.roomSummaryAdapter_action_image);
-        TextView unreadCountTxtView = (TextView) convertView.findViewById(R.id.roomSummaryAdapter_unread_count);
-
-
-        View invitationView = convertView.findViewById(R.id.recents_groups_invitation_group);
-        Button preViewButton = (Button)convertView.findViewById(R.id.recents_invite_preview_button);
-        Button rejectButton = (Button)convertView.findViewById(R.id.recents_invite_reject_button);
-
-        View showMoreView = convertView.findViewById(R.id.roomSummaryAdapter_show_more_layout);
-        View actionClickArea = convertView.findViewById(R.id.roomSummaryAdapter_action_click_area);
+        ImageView avatarImageView = holder.mAvatarImageView;
+        TextView roomNameTxtView = holder.mRoomNameTxtView;
+        TextView roomMsgTxtView = holder.mRoomMsgTxtView;
+        View bingUnreadMsgView = holder.mBingUnreadMsgView;
+        TextView timestampTxtView = holder.mTimestampTxtView;
+        View separatorView = holder.mSeparatorView;
+        View separatorGroupView = holder.mSeparatorGroupView;
+        final View actionView = holder.mActionView;
+        final ImageView actionImageView = holder.mActionImageView;
+
+        View invitationView = holder.mInvitationView;
+        Button preViewButton = holder.mPreviewButton;
+        Button rejectButton = holder.mRejectButton;
+
+        View showMoreView = holder.mShowMoreView;
+        View actionClickArea = holder.mActionClickArea;
 
         // directory management
-        if ((mDirectoryGroupPosition == groupPosition) || (mRoomByAliasGroupPosition == groupPosition)) {
+        if ((mSnapshot.mDirectoryGroupPosition == groupPosition) || (mSnapshot.mRoomByAliasGroupPosition == groupPosition)) {
             // some items are show
             bingUnreadMsgView.setVisibility(View.INVISIBLE);
             timestampTxtView.setVisibility(View.GONE);
@@ -815,101 +1477,64 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
             showMoreView.setVisibility(View.VISIBLE);
             actionClickArea.setVisibility(View.GONE);
 
-            if (mDirectoryGroupPosition == groupPosition) {
-                if (null == mPublicRooms) {
+            if (mSnapshot.mDirectoryGroupPosition == groupPosition) {
+                if (null == mSnapshot.mPublicRooms) {
                     roomNameTxtView.setText(mContext.getResources().getString(R.string.directory_searching_title));
                     roomMsgTxtView.setText("");
                 } else {
                     roomNameTxtView.setText(mContext.getResources().getString(R.string.directory_search_results_title));
 
-                    if (TextUtils.isEmpty(mSearchedPattern)) {
-                        if (mMatchedPublicRooms.size() > 1) {
-                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_rooms, mMatchedPublicRooms.size()));
+                    if (TextUtils.isEmpty(mSnapshot.mSearchedPattern)) {
+                        if (mSnapshot.mMatchedPublicRooms.size() > 1) {
+                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_rooms, mSnapshot.mMatchedPublicRooms.size()));
                         } else {
-                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_room, mMatchedPublicRooms.size()));
+                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_room, mSnapshot.mMatchedPublicRooms.size()));
                         }
                     } else {
-                        if (mMatchedPublicRooms.size() > 1) {
-                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_rooms_for, mMatchedPublicRooms.size(), mSearchedPattern));
+                        if (mSnapshot.mMatchedPublicRooms.size() > 1) {
+                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_rooms_for, mSnapshot.mMatchedPublicRooms.size(), mSnapshot.mSearchedPattern));
                         } else {
-                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_room_for, mMatchedPublicRooms.size(), mSearchedPattern));
+                            roomMsgTxtView.setText(mContext.getResources().getString(R.string.directory_search_room_for, mSnapshot.mMatchedPublicRooms.size(), mSnapshot.mSearchedPattern));
                         }
                     }
                 }
 
                 avatarImageView.setImageBitmap(VectorUtils.getAvatar(avatarImageView.getContext(), VectorUtils.getAvatarcolor(null), null, true));
             } else {
-                roomNameTxtView.setText(mSearchedPattern);
+                roomNameTxtView.setText(mSnapshot.mSearchedPattern);
                 roomMsgTxtView.setText("");
                 avatarImageView.setImageBitmap(VectorUtils.getAvatar(avatarImageView.getContext(), VectorUtils.getAvatarcolor(null), "@", true));
             }
 
-            return convertView;
+            return;
         }
 
         showMoreView.setVisibility(View.GONE);
 
-        RoomSummary childRoomSummary = mSummaryListByGroupPosition.get(groupPosition).get(childPosition);
+        RoomSummary childRoomSummary = mSnapshot.mSummaryListByGroupPosition.get(groupPosition).get(childPosition);
         final Room childRoom =  mMxSession.getDataHandler().getStore().getRoom(childRoomSummary.getRoomId());
-        int unreadMsgCount = childRoomSummary.getUnreadEventsCount();
-        int highlightCount = 0;
-        int notificationCount = 0;
-
-        if (null != childRoom) {
-            highlightCount = childRoom.getHighlightCount();
-            notificationCount = childRoom.getNotificationCount();
-        }
-
-        // get last message to be displayed
-        CharSequence lastMsgToDisplay = getChildMessageToDisplay(childRoomSummary);
+        RowState rowState = computeRowState(childRoomSummary, childRoom, groupPosition, isLastChild);
 
         // display the room avatar
-        avatarImageView.setBackgroundColor(mContext.getResources().getColor(android.R.color.transparent));
-        final String roomName = VectorUtils.getRoomDisplayname(mContext, mMxSession, childRoom);
-        VectorUtils.loadRoomAvatar(mContext, mMxSession, avatarImageView, childRoom);
+        bindAvatar(holder, childRoom, rowState);
 
         // display the room name
-        roomNameTxtView.setText(roomName);
+        roomNameTxtView.setText(rowState.mRoomName);
         roomNameTxtView.setTextColor(roomNameBlack);
-        roomNameTxtView.setTypeface(null, (0 != unreadMsgCount) ? Typeface.BOLD : Typeface.NORMAL);
 
         // display the last message
-        roomMsgTxtView.setText(lastMsgToDisplay);
+        bindPreview(holder, rowState);
 
         // set the timestamp
-        timestampTxtView.setText(getFormattedTimestamp(childRoomSummary.getLatestEvent()));
+        timestampTxtView.setText(rowState.mTimestamp);
         timestampTxtView.setTextColor(vectorDefaultTimeStampColor);
         timestampTxtView.setTypeface(null, Typeface.NORMAL);
 
-        // set bing view background colour
-        int bingUnreadColor;
-        if ((0 != highlightCount) || childRoomSummary.isHighlighted()) {
-            bingUnreadColor = fushiaColor;
-        } else if (0 != notificationCount) {
-            bingUnreadColor = vectorGreenColor;
-        } else if (0 != unreadMsgCount) {
-            bingUnreadColor = vectorSilverColor;
-        } else {
-            bingUnreadColor = Color.TRANSPARENT;
-        }
-        bingUnreadMsgView.setBackgroundColor(bingUnreadColor);
-
-        // display the unread badge counter
-        if( (0 != notificationCount)) {
-            unreadCountTxtView.setVisibility(View.VISIBLE);
-            unreadCountTxtView.setText(String.valueOf(notificationCount));
-            unreadCountTxtView.setTypeface(null, Typeface.BOLD);
-            setUnreadBackground(unreadCountTxtView,bingUnreadColor);
-        } else {
-            unreadCountTxtView.setVisibility(View.GONE);
-        }
+        // display the unread state
+        bindUnreadState(holder, rowState);
 
         // some items are shown
-        boolean isInvited = false;
-
-        if (null != childRoom) {
-            isInvited = childRoom.isInvited();
-        }
+        boolean isInvited = rowState.mIsInvited;
 
         bingUnreadMsgView.setVisibility(isInvited ? View.INVISIBLE : View.VISIBLE);
         timestampTxtView.setVisibility((isInvited || mIsSearchMode) ? View.INVISIBLE : View.VISIBLE);
@@ -940,8 +1565,8 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
             });
         } else {
 
-            final boolean isFavorite = groupPosition == mFavouritesGroupPosition;
-            final boolean isLowPrior = groupPosition == mLowPriorGroupPosition;
+            final boolean isFavorite = groupPosition == mSnapshot.mFavouritesGroupPosition;
+            final boolean isLowPrior = groupPosition == mSnapshot.mLowPriorGroupPosition;
 
             actionClickArea.setVisibility(View.VISIBLE);
             actionClickArea.setOnClickListener(new View.OnClickListener() {
@@ -955,7 +1580,132 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
         separatorView.setVisibility(isLastChild ? View.GONE : View.VISIBLE);
         separatorGroupView.setVisibility((isLastChild && ((groupPosition + 1) < getGroupCount())) ? View.VISIBLE : View.GONE);
 
-        return convertView;
+        holder.mRowState = rowState;
+    }
+
+    /**
+     * Compute the displayed content of a room row.
+     * @param summary the room summary
+     * @param room the room
+     * @param groupPosition the group position
+     * @param isLastChild true if the row is the last one of its group
+     * @return the row state
+     */
+    private RowState computeRowState(RoomSummary summary, Room room, int groupPosition, boolean isLastChild) {
+        RowState rowState = new RowState();
+
+        rowState.mRoomId = summary.getRoomId();
+        rowState.mRoomName = RoomDisplayNamesCache.getInstance(mMxSession).getDisplayName(mContext, room);
+        rowState.mAvatarUrl = (null != room) ? room.getAvatarUrl() : null;
+        // it is rendered in the background thread
+        rowState.mPreview = mPreviewsCache.getPreview(summary);
+        rowState.mTimestamp = getFormattedTimestamp(summary.getLatestEvent());
+        rowState.mUnreadMsgCount = summary.getUnreadEventsCount();
+        rowState.mHighlightCount = (null != room) ? room.getHighlightCount() : 0;
+        rowState.mNotificationCount = (null != room) ? room.getNotificationCount() : 0;
+        rowState.mIsHighlighted = summary.isHighlighted();
+        rowState.mIsInvited = (null != room) && room.isInvited();
+        rowState.mGroupPosition = groupPosition;
+        rowState.mIsLastChild = isLastChild;
+
+        if (null == rowState.mPreview) {
+            requestPreview(summary);
+        }
+
+        return rowState;
+    }
+
+    /**
+     * Compute the changes between two states of a room row.
+     * @param oldState the bound state
+     * @param newState the new state
+     * @return the ROW_CHANGE_XXX flags, 0 if the row is unchanged
+     */
+    private static int getRowChanges(RowState oldState, RowState newState) {
+        if ((null == oldState) ||
+                !TextUtils.equals(oldState.mRoomId, newState.mRoomId) ||
+                !TextUtils.equals(oldState.mRoomName, newState.mRoomName) ||
+                !TextUtils.equals(oldState.mTimestamp, newState.mTimestamp) ||
+                (oldState.mIsInvited != newState.mIsInvited) ||
+                (oldState.mGroupPosition != newState.mGroupPosition) ||
+                (oldState.mIsLastChild != newState.mIsLastChild)) {
+            return ROW_CHANGE_FULL;
+        }
+
+        int changes = 0;
+
+        if ((oldState.mUnreadMsgCount != newState.mUnreadMsgCount) ||
+                (oldState.mHighlightCount != newState.mHighlightCount) ||
+                (oldState.mNotificationCount != newState.mNotificationCount) ||
+                (oldState.mIsHighlighted != newState.mIsHighlighted)) {
+            changes |= ROW_CHANGE_UNREAD;
+        }
+
+        if (!TextUtils.equals(oldState.mPreview, newState.mPreview)) {
+            changes |= ROW_CHANGE_PREVIEW;
+        }
+
+        if (!TextUtils.equals(oldState.mAvatarUrl, newState.mAvatarUrl)) {
+            changes |= ROW_CHANGE_AVATAR;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Display the room avatar of a row.
+     * @param holder the row views
+     * @param room the room
+     * @param rowState the row state
+     */
+    private void bindAvatar(ChildViewHolder holder, Room room, RowState rowState) {
+        holder.mAvatarImageView.setBackgroundColor(mContext.getResources().getColor(android.R.color.transparent));
+        VectorUtils.loadRoomAvatar(mContext, mMxSession, holder.mAvatarImageView, room, rowState.mRoomName);
+    }
+
+    /**
+     * Display the last message preview of a row.
+     * @param holder the row views
+     * @param rowState the row state
+     */
+    private void bindPreview(ChildViewHolder holder, RowState rowState) {
+        holder.mRoomMsgTxtView.setText(rowState.mPreview);
+    }
+
+    /**
+     * Display the unread state of a row (room name style, bing indicator and badge).
+     * @param holder the row views
+     * @param rowState the row state
+     */
+    private void bindUnreadState(ChildViewHolder holder, RowState rowState) {
+        TextView roomNameTxtView = holder.mRoomNameTxtView;
+        View bingUnreadMsgView = holder.mBingUnreadMsgView;
+        TextView unreadCountTxtView = holder.mUnreadCountTxtView;
+
+        roomNameTxtView.setTypeface(null, (0 != rowState.mUnreadMsgCount) ? Typeface.BOLD : Typeface.NORMAL);
+
+        // set bing view background colour
+        int bingUnreadColor;
+        if ((0 != rowState.mHighlightCount) || rowState.mIsHighlighted) {
+            bingUnreadColor = mContext.getResources().getColor(R.color.vector_fuchsia_color);
+        } else if (0 != rowState.mNotificationCount) {
+            bingUnreadColor = mContext.getResources().getColor(R.color.vector_green_color);
+        } else if (0 != rowState.mUnreadMsgCount) {
+            bingUnreadColor = mContext.getResources().getColor(R.color.vector_silver_color);
+        } else {
+            bingUnreadColor = Color.TRANSPARENT;
+        }
+        bingUnreadMsgView.setBackgroundColor(bingUnreadColor);
+
+        // display the unread badge counter
+        if( (0 != rowState.mNotificationCount)) {
+            unreadCountTxtView.setVisibility(View.VISIBLE);
+            unreadCountTxtView.setText(String.valueOf(rowState.mNotificationCount));
+            unreadCountTxtView.setTypeface(null, Typeface.BOLD);
+            setUnreadBackground(unreadCountTxtView,bingUnreadColor);
+        } else {
+            unreadCountTxtView.setVisibility(View.GONE);
+        }
     }
 
     /**
@@ -1054,74 +1804,8 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
     }
 
     /**
-     * Get the displayable name of the user whose ID is passed in aUserId.
-     * @param aMatrixId matrix ID
-     * @param aUserId user ID
-     * @return the user display name
-     */
-    private String getMemberDisplayNameFromUserId(String aMatrixId, String aUserId) {
-        String displayNameRetValue;
-        MXSession session;
-
-        if((null == aMatrixId) || (null == aUserId)){
-            displayNameRetValue = null;
-        }
-        else if((null == (session = Matrix.getMXSession(mContext, aMatrixId))) || (!session.isAlive())) {
-            displayNameRetValue = null;
-        }
-        else {
-            User user = session.getDataHandler().getStore().getUser(aUserId);
-
-            if ((null != user) && !TextUtils.isEmpty(user.displayname)) {
-                displayNameRetValue = user.displayname;
-            }
-            else {
-                displayNameRetValue = aUserId;
-            }
-        }
-
-        return displayNameRetValue;
-    }
-
-    private CharSequence getChildMessageToDisplay(RoomSummary aChildRoomSummary) {
-        CharSequence messageToDisplayRetValue=null;
-        EventDisplay eventDisplay;
-
-        if (null != aChildRoomSummary) {
-            if (aChildRoomSummary.getLatestEvent() != null) {
-                eventDisplay = new EventDisplay(mContext, aChildRoomSummary.getLatestEvent(), aChildRoomSummary.getLatestRoomState());
-                eventDisplay.setPrependMessagesWithAuthor(true);
-                messageToDisplayRetValue = eventDisplay.getTextualDisplay(mContext.getResources().getColor(R.color.vector_text_gray_color));
-            }
-
-            // check if this is an invite
-            if (aChildRoomSummary.isInvited() && (null != aChildRoomSummary.getInviterUserId())) {
-                RoomState latestRoomState = aChildRoomSummary.getLatestRoomState();
-                String inviterUserId = aChildRoomSummary.getInviterUserId();
-                String myName = aChildRoomSummary.getMatrixId();
-
-                if (null != latestRoomState) {
-                    inviterUserId = latestRoomState.getMemberName(inviterUserId);
-                    myName = latestRoomState.getMemberName(myName);
-                }
-                else {
-                    inviterUserId = getMemberDisplayNameFromUserId(aChildRoomSummary.getMatrixId(), inviterUserId);
-                    myName = getMemberDisplayNameFromUserId(aChildRoomSummary.getMatrixId(), myName);
-                }
-
-                if (TextUtils.equals(mMxSession.getMyUserId(), aChildRoomSummary.getMatrixId())) {
-                    messageToDisplayRetValue = mContext.getString(org.matrix.androidsdk.R.string.notice_room_invite_you, inviterUserId);
-                } else {
-                    messageToDisplayRetValue = mContext.getString(org.matrix.androidsdk.R.string.notice_room_invite, inviterUserId, myName);
-                }
-            }
-        }
-
-        return messageToDisplayRetValue;
-    }
-
-    /**
-     * Defines the new searched pattern
+     * Defines the new searched pattern.
+     * The rooms are matched by the session search index (display name, aliases and topic).
      * @param pattern the new searched pattern
      */
     public void setSearchPattern(String pattern) {
@@ -1133,8 +1817,13 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
 
             mSearchedPattern = TextUtils.getTrimmedLength(pattern) == 0 ? null : pattern;
 
+            // the running computation is useless
+            if ((null != mComputingSnapshot) && !TextUtils.equals(mComputingSnapshot.mSearchedPattern, mSearchedPattern)) {
+                mComputingSnapshot.mCancellationSignal.cancel();
+            }
+
             // refresh the layout
-            this.notifyDataSetChanged();
+            notifySummariesChanged();
         }
     }
 
@@ -1177,8 +1866,8 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @param toChildPosition the child position destination
      */
     public void moveChildView(int fromGroupPosition, int fromChildPosition, int toGroupPosition, int toChildPosition) {
-        ArrayList<RoomSummary> fromList = mSummaryListByGroupPosition.get(fromGroupPosition);
-        ArrayList<RoomSummary> toList = mSummaryListByGroupPosition.get(toGroupPosition);
+        ArrayList<RoomSummary> fromList = mSnapshot.mSummaryListByGroupPosition.get(fromGroupPosition);
+        ArrayList<RoomSummary> toList = mSnapshot.mSummaryListByGroupPosition.get(toGroupPosition);
 
         RoomSummary summary = fromList.get(fromChildPosition);
         fromList.remove(fromChildPosition);
@@ -1188,6 +1877,11 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
         } else {
             toList.add(toChildPosition, summary);
         }
+
+        // animate the move
+        int fromPosition = getRowPosition(fromGroupPosition, fromChildPosition);
+        buildRows();
+        notifyItemMoved(fromPosition, getRowPosition(toGroupPosition, Math.min(toChildPosition, toList.size() - 1)));
     }
 
     /**
@@ -1196,7 +1890,7 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return true if the  group position is the invited one.
      */
     public boolean isInvitedRoomPosition(int groupPos) {
-        return mInvitedGroupPosition == groupPos;
+        return mSnapshot.mInvitedGroupPosition == groupPos;
     }
 
     /**
@@ -1205,7 +1899,7 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return true if the  group position is the favourite one.
      */
     public boolean isFavouriteRoomPosition(int groupPos) {
-        return mFavouritesGroupPosition == groupPos;
+        return mSnapshot.mFavouritesGroupPosition == groupPos;
     }
 
     /**
@@ -1214,7 +1908,7 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return true if the  group position is the no tag one.
      */
     public boolean isNoTagRoomPosition(int groupPos) {
-        return mNoTagGroupPosition == groupPos;
+        return mSnapshot.mNoTagGroupPosition == groupPos;
     }
 
     /**
@@ -1223,6 +1917,6 @@ public class VectorRoomSummaryAdapter extends BaseExpandableListAdapter {
      * @return true if the  group position is the low priority one.
      */
     public boolean isLowPriorityRoomPosition(int groupPos) {
-        return mLowPriorGroupPosition == groupPos;
+        return mSnapshot.mLowPriorGroupPosition == groupPos;
     }
 }
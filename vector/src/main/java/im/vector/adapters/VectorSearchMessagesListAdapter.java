@@ -157,7 +157,7 @@ public class VectorSearchMessagesListAdapter extends VectorMessagesAdapter {
 
         // display timestamp
         TextView timeTextView = (TextView) convertView.findViewById(org.matrix.androidsdk.R.id.messagesAdapter_timestamp);
-        timeTextView.setText(AdapterUtils.tsToString(mContext, event.getOriginServerTs(), true));
+        timeTextView.setText(TimestampFormatter.getInstance().format(mContext, event.getOriginServerTs(), TimestampFormatter.FORMAT_TIME_ONLY));
 
         // display the room name
         View roomNameLayout = convertView.findViewById(R.id.messagesAdapter_message_room_name_layout);
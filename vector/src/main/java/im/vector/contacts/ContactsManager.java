@@ -19,6 +19,8 @@ package im.vector.contacts;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.ContactsContract;
 import android.text.TextUtils;
 import android.util.Log;
@@ -54,7 +56,11 @@ public class ContactsManager {
         void onContactPresenceUpdate(Contact contact, String matrixId);
     }
 
-    private static Collection<Contact> mContactsList = null;
+    // the snapshot is refreshed in a background thread at launch and read from the UI thread
+    // so it is built aside and published at once.
+    private static volatile Collection<Contact> mContactsList = null;
+    // serialize the snapshot refreshes
+    private static final Object mRefreshLock = new Object();
     private static ArrayList<ContactsManagerListener> mListeners = null;
 
     // retriever listener
@@ -142,7 +148,12 @@ public class ContactsManager {
      */
     public static Collection<Contact> getLocalContactsSnapshot(Context context) {
         if (null == mContactsList) {
-            refreshLocalContactsSnapshot(context);
+            synchronized (mRefreshLock) {
+                // it might have been refreshed by another thread in the meantime
+                if (null == mContactsList) {
+                    refreshLocalContactsSnapshot(context);
+                }
+            }
         }
         return mContactsList;
     }
@@ -183,6 +194,29 @@ public class ContactsManager {
      * @return a list of contacts.
      */
     public static void refreshLocalContactsSnapshot (Context context) {
+        synchronized (mRefreshLock) {
+            buildLocalContactsSnapshot(context);
+        }
+
+        // the snapshot can be refreshed in a background thread (at application launch)
+        // but the listeners expect to be called from the UI thread.
+        if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
+            onContactsRefresh();
+        } else {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    onContactsRefresh();
+                }
+            });
+        }
+    }
+
+    /**
+     * Build the local contacts list snapshot and publish it.
+     * @param context the context.
+     */
+    private static void buildLocalContactsSnapshot(Context context) {
         long startTime = System.currentTimeMillis();
 
         ContentResolver cr = context.getContentResolver();
@@ -312,8 +346,14 @@ public class ContactsManager {
 
         PIDsRetriever.getIntance().setPIDsRetrieverListener(mPIDsRetrieverListener);
 
+        // single volatile swap : the readers never see a partially built list
         mContactsList = dict.values();
+    }
 
+    /**
+     * Warn the listeners that the contacts list has been refreshed.
+     */
+    private static void onContactsRefresh() {
         if (null != mListeners) {
             for(ContactsManagerListener listener : mListeners) {
                 try {
@@ -79,6 +79,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.List;
 
 public class VectorMessageListFragment extends MatrixMessageListFragment implements VectorMessagesAdapter.VectorMessagesAdapterActionsListener {
     private static final String LOG_TAG = "VectorMessageListFrg";
@@ -166,15 +167,6 @@ public class VectorMessageListFragment extends MatrixMessageListFragment impleme
         mMainProgressView = aHostActivity.findViewById(R.id.main_progress_layout);
     }
 
-    @Override
-    public void onPause() {
-        super.onPause();
-
-        if (mAdapter instanceof VectorMessagesAdapter) {
-            ((VectorMessagesAdapter)mAdapter).onPause();
-        }
-    }
-
     /**
      * Called when the fragment is no longer attached to its activity.  This
      * is called after {@link #onDestroy()}.
@@ -833,6 +825,16 @@ public class VectorMessageListFragment extends MatrixMessageListFragment impleme
         builderSingle.show();
     }
 
+    @Override
+    public void onReceiptEvent(List<String> senderIds) {
+        // update the read receipts index before the refresh
+        if ((mAdapter instanceof VectorMessagesAdapter) && (null != mRoom)) {
+            ((VectorMessagesAdapter)mAdapter).onReceiptEvent(mRoom.getRoomId(), senderIds);
+        }
+
+        super.onReceiptEvent(senderIds);
+    }
+
     public void onMoreReadReceiptClick(String eventId) {
         FragmentManager fm = getActivity().getSupportFragmentManager();
 
@@ -19,18 +19,18 @@ package im.vector.fragments;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.graphics.Color;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
 import android.os.Bundle;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.helper.ItemTouchHelper;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AbsListView;
-import android.widget.AdapterView;
-import android.widget.ExpandableListView;
-import android.widget.RelativeLayout;
 import android.widget.Toast;
 
 import org.matrix.androidsdk.MXSession;
@@ -50,19 +50,22 @@ import org.matrix.androidsdk.util.EventUtils;
 import im.vector.Matrix;
 import im.vector.PublicRoomsManager;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.ViewedRoomTracker;
 import im.vector.activity.CommonActivityUtils;
 import im.vector.activity.VectorPublicRoomsActivity;
 import im.vector.activity.VectorRoomActivity;
 import im.vector.adapters.VectorRoomSummaryAdapter;
 import im.vector.services.EventStreamService;
-import im.vector.view.RecentsExpandableListView;
+import im.vector.view.RecentsRecyclerView;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
-public class VectorRecentsListFragment extends Fragment implements VectorRoomSummaryAdapter.RoomEventListener, RecentsExpandableListView.DragAndDropEventsListener {
+public class VectorRecentsListFragment extends Fragment implements VectorRoomSummaryAdapter.RoomEventListener, RecentsRecyclerView.OverScrollEventsListener {
 
     private static final String KEY_EXPAND_STATE_INVITES_GROUP = "KEY_EXPAND_STATE_INVITES_GROUP";
     private static final String KEY_EXPAND_STATE_ROOMS_GROUP = "KEY_EXPAND_STATE_ROOMS_GROUP";
@@ -101,26 +104,27 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
     protected String mMatrixId;
     protected MXSession mSession;
     protected MXEventListener mEventsListener;
-    protected RecentsExpandableListView mRecentsListView;
+    protected RecentsRecyclerView mRecentsListView;
     protected VectorRoomSummaryAdapter mAdapter;
     protected View mWaitingView = null;
 
     // drag and drop management
-    protected RelativeLayout mSelectedCellLayout;
-    protected View mDraggedView;
-    protected boolean mIgnoreScrollEvent;
+    protected RecyclerView.ViewHolder mDraggedViewHolder;
     protected int mOriginGroupPosition = -1;
     protected int mOriginChildPosition = -1;
     protected int mDestGroupPosition = -1;
     protected int mDestChildPosition = -1;
     protected boolean mIsWaitingTagOrderEcho;
 
-    protected int mFirstVisibleIndex = 0;
-
     protected boolean mIsPaused = false;
 
     // set to true to force refresh when an events chunk has been processed.
     protected boolean refreshOnChunkEnd = false;
+    // the rooms updated by the current events chunk
+    protected final HashSet<String> mUpdatedRoomIds = new HashSet<>();
+
+    // true to expand the directory group when the summaries list is refreshed
+    private boolean mExpandDirectoryGroupOnRefresh = false;
 
     // public room management
     private List<PublicRoom> mPublicRoomsList = null;
@@ -143,24 +147,23 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
         }
 
         View v = inflater.inflate(args.getInt(ARG_LAYOUT_ID), container, false);
-        mRecentsListView = (RecentsExpandableListView)v.findViewById(R.id.fragment_recents_list);
-        // the chevron is managed in the header view
-        mRecentsListView.setGroupIndicator(null);
+        mRecentsListView = (RecentsRecyclerView)v.findViewById(R.id.fragment_recents_list);
+        mRecentsListView.setLayoutManager(new LinearLayoutManager(getActivity()));
         // create the adapter
         mAdapter = new VectorRoomSummaryAdapter(getActivity(), mSession, false, true, R.layout.adapter_item_vector_recent_room, R.layout.adapter_item_vector_recent_header, this);
 
         mRecentsListView.setAdapter(mAdapter);
+        mRecentsListView.mOverScrollEventsListener = this;
 
-        mSelectedCellLayout = (RelativeLayout)v.findViewById(R.id.fragment_recents_selected_cell_layout);
-        mRecentsListView.mDragAndDropEventsListener = this;
+        // the rooms are moved to another section (or in their section) by a long press and a drag
+        new ItemTouchHelper(new RoomsDragCallback()).attachToRecyclerView(mRecentsListView);
 
         // Set rooms click listener:
         // - reset the unread count
         // - start the corresponding room activity
-        mRecentsListView.setOnChildClickListener(new ExpandableListView.OnChildClickListener() {
+        mAdapter.setOnChildClickListener(new VectorRoomSummaryAdapter.OnChildClickListener() {
             @Override
-            public boolean onChildClick(ExpandableListView parent, View v,
-                                        int groupPosition, int childPosition, long id) {
+            public void onChildClick(int groupPosition, int childPosition) {
                 if (mAdapter.isDirectoryGroupPosition(groupPosition)) {
                     List<PublicRoom> matchedPublicRooms = mAdapter.getMatchedPublicRooms();
 
@@ -178,7 +181,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
                     // sanity check : should never happen
                     // but it happened.
                     if ((null == session) || (null == session.getDataHandler())) {
-                        return true;
+                        return;
                     }
 
                     String roomId = roomSummary.getRoomId();
@@ -202,21 +205,10 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
                         CommonActivityUtils.goToRoomPage(getActivity(), session, params);
                     }
                 }
-
-                // click is handled
-                return true;
-            }
-        });
-
-        mRecentsListView.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
-            @Override
-            public boolean onItemLongClick(AdapterView<?> parent, View view, int position, long id) {
-                startDragAndDrop();
-                return true;
             }
         });
 
-        mRecentsListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+        mRecentsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
 
             private void onScrollUp() {
                 if (null != getListener()) {
@@ -237,39 +229,14 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
             }
 
             @Override
-            public void onScrollStateChanged(AbsListView view, int scrollState) {
-            }
-
-            // latest cell offset Y
-            private int mPrevOffset = 0;
-
-            @Override
-            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
-                if ((0 == firstVisibleItem) && ((totalItemCount+1) < visibleItemCount)) {
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // it is also called after a layout (dy = 0)
+                if (!recyclerView.canScrollVertically(-1) && !recyclerView.canScrollVertically(1)) {
                     onFitScreen();
-                } else if (firstVisibleItem < mFirstVisibleIndex) {
-                    mFirstVisibleIndex = firstVisibleItem;
-                    mPrevOffset = 0;
+                } else if (dy < 0) {
                     onScrollUp();
-                } else if (firstVisibleItem > mFirstVisibleIndex) {
-                    mFirstVisibleIndex = firstVisibleItem;
-                    mPrevOffset = 0;
+                } else if (dy > 0) {
                     onScrollDown();
-                } else {
-                    // detect the cell has moved
-                    View visibleCell = mRecentsListView.getChildAt(firstVisibleItem);
-
-                    if (null != visibleCell) {
-                        int off = visibleCell.getTop();
-
-                        if (off > mPrevOffset) {
-                            onScrollDown();
-                        } else if (off < mPrevOffset){
-                            onScrollUp();
-                        }
-
-                        mPrevOffset = off;
-                    }
                 }
             }
         });
@@ -320,7 +287,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
                                         mAdapter.setPublicRoomsList(mPublicRoomsList);
 
                                         // refreshed
-                                        mAdapter.notifyDataSetChanged();
+                                        mAdapter.notifySummariesChanged();
                                     }
                                 });
                             }
@@ -372,18 +339,9 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
      */
     public void setIsDirectoryDisplayed(boolean isDisplayed) {
         mAdapter.setForceDirectoryGroupDisplay(isDisplayed);
-        mAdapter.notifyDataSetChanged();
-
-        if (isDisplayed) {
-            mRecentsListView.post(new Runnable() {
-                @Override
-                public void run() {
-                    if (-1 != mAdapter.getDirectoryGroupPosition()) {
-                        mRecentsListView.expandGroup(mAdapter.getDirectoryGroupPosition());
-                    }
-                }
-            });
-        }
+        // the directory group is expanded when the refreshed list is displayed
+        mExpandDirectoryGroupOnRefresh = isDisplayed;
+        mAdapter.notifySummariesChanged();
     }
 
     /**
@@ -402,45 +360,64 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
 
     /**
      * Refresh the summaries list.
-     * It also expands or collapses the section according to the latest known user preferences.
+     * The sections are expanded or collapsed when the refreshed list is displayed (see onSummariesListRefreshed).
      */
     protected void notifyDataSetChanged(){
-        mAdapter.notifyDataSetChanged();
+        mAdapter.notifySummariesChanged();
+    }
 
-        mRecentsListView.post(new Runnable() {
-            @Override
-            public void run() {
-                if (null != getActivity()) {
-                    int groupCount = mRecentsListView.getExpandableListAdapter().getGroupCount();
-                    boolean isExpanded;
-                    SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getActivity().getApplicationContext());
-
-                    for (int groupIndex = 0; groupIndex < groupCount; groupIndex++) {
-
-                        if (mAdapter.isInvitedRoomPosition(groupIndex)) {
-                            isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_INVITES_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
-                        } else if (mAdapter.isFavouriteRoomPosition(groupIndex)) {
-                            isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_FAVOURITE_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
-                        } else if (mAdapter.isNoTagRoomPosition(groupIndex)) { // "Rooms" group
-                            isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_ROOMS_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
-                        } else if (mAdapter.isLowPriorityRoomPosition(groupIndex)) {
-                            isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_LOW_PRIORITY_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
-                        } else if (mAdapter.isDirectoryGroupPosition(groupIndex)) { // public rooms (search mode)
-                            isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_LOW_PRIORITY_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
-                        } else {
-                            // unknown group index, just skipp
-                            break;
-                        }
+    /**
+     * Refresh the summaries list after some rooms updates.
+     * @param roomIds the updated room ids.
+     */
+    protected void notifyRoomsChanged(Collection<String> roomIds) {
+        mAdapter.notifyRoomsChanged(roomIds);
+    }
 
-                        if (CommonActivityUtils.GROUP_IS_EXPANDED == isExpanded) {
-                            mRecentsListView.expandGroup(groupIndex);
-                        } else {
-                            mRecentsListView.collapseGroup(groupIndex);
-                        }
-                    }
+    @Override
+    public void onSummariesListRefreshed() {
+        // expand or collapse the sections according to the latest known user preferences.
+        refreshGroupsExpandState();
+
+        if (mExpandDirectoryGroupOnRefresh) {
+            mExpandDirectoryGroupOnRefresh = false;
+
+            if (-1 != mAdapter.getDirectoryGroupPosition()) {
+                mAdapter.setGroupExpanded(mAdapter.getDirectoryGroupPosition(), true);
+            }
+        }
+    }
+
+    /**
+     * Expand or collapse the sections according to the latest known user preferences.
+     */
+    private void refreshGroupsExpandState() {
+        if (null != getActivity()) {
+            int groupCount = mAdapter.getGroupCount();
+            boolean isExpanded;
+            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getActivity().getApplicationContext());
+
+            for (int groupIndex = 0; groupIndex < groupCount; groupIndex++) {
+
+                if (mAdapter.isInvitedRoomPosition(groupIndex)) {
+                    isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_INVITES_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
+                } else if (mAdapter.isFavouriteRoomPosition(groupIndex)) {
+                    isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_FAVOURITE_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
+                } else if (mAdapter.isNoTagRoomPosition(groupIndex)) { // "Rooms" group
+                    isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_ROOMS_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
+                } else if (mAdapter.isLowPriorityRoomPosition(groupIndex)) {
+                    isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_LOW_PRIORITY_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
+                } else if (mAdapter.isDirectoryGroupPosition(groupIndex)) { // public rooms (search mode)
+                    isExpanded = preferences.getBoolean(KEY_EXPAND_STATE_LOW_PRIORITY_GROUP, CommonActivityUtils.GROUP_IS_EXPANDED);
+                } else {
+                    // unknown group index, just skipp
+                    break;
                 }
+
+                // the expanded states are kept by the adapter, so only the updated groups are redrawn
+                mAdapter.setGroupExpanded(groupIndex, CommonActivityUtils.GROUP_IS_EXPANDED == isExpanded);
             }
-        });
+        }
     }
 
     /**
@@ -505,10 +482,16 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
                     public void run() {
                         Log.d(LOG_TAG, "onLiveEventsChunkProcessed");
                         if (!mIsPaused && refreshOnChunkEnd && !mIsWaitingTagOrderEcho) {
-                            notifyDataSetChanged();
+                            // only the updated rooms are moved
+                            notifyRoomsChanged(mUpdatedRoomIds);
                         }
 
                         refreshOnChunkEnd = false;
+
+                        // the updates are kept until the tag order echo is received
+                        if (!mIsWaitingTagOrderEcho) {
+                            mUpdatedRoomIds.clear();
+                        }
                     }
                 });
             }
@@ -520,7 +503,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
                     public void run() {
 
                         // refresh the UI at the end of the next events chunk
-                        refreshOnChunkEnd |= ((event.roomId != null) && RoomSummary.isSupportedEvent(event)) ||
+                        boolean refreshRoom = ((event.roomId != null) && RoomSummary.isSupportedEvent(event)) ||
                                 Event.EVENT_TYPE_STATE_ROOM_MEMBER.equals(event.type) ||
                                 Event.EVENT_TYPE_TAGS.equals(event.type) ||
                                 Event.EVENT_TYPE_REDACTION.equals(event.type) ||
@@ -528,6 +511,12 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
                                 Event.EVENT_TYPE_STATE_ROOM_AVATAR.equals(event.type) ||
                                 Event.EVENT_TYPE_STATE_ROOM_THIRD_PARTY_INVITE.equals(event.type);
 
+                        if (refreshRoom && (null != event.roomId)) {
+                            mUpdatedRoomIds.add(event.roomId);
+                        }
+
+                        refreshOnChunkEnd |= refreshRoom;
+
                         // highlight notified messages
                         // the SDK only highlighted invitation messages
                         // it lets the application chooses the behaviour.
@@ -551,12 +540,16 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
             @Override
             public void onReceiptEvent(String roomId, List<String> senderIds) {
                 // refresh only if the current user read some messages (to update the unread messages counters)
-                refreshOnChunkEnd |= (senderIds.indexOf(VectorRecentsListFragment.this.mSession.getCredentials().userId) >= 0);
+                if (senderIds.indexOf(VectorRecentsListFragment.this.mSession.getCredentials().userId) >= 0) {
+                    mUpdatedRoomIds.add(roomId);
+                    refreshOnChunkEnd = true;
+                }
             }
 
             @Override
             public void onRoomTagEvent(String roomId) {
                 mIsWaitingTagOrderEcho = false;
+                mUpdatedRoomIds.add(roomId);
                 refreshOnChunkEnd = true;
             }
 
@@ -599,7 +592,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
             }
         };
 
-        mSession.getDataHandler().addListener(mEventsListener);
+        SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
     }
 
     /**
@@ -607,7 +600,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
      */
     private void removeSessionListener() {
         if (mSession.isAlive()) {
-            mSession.getDataHandler().removeListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mEventsListener);
         }
     }
 
@@ -738,115 +731,123 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
     }
 
     /**
-     * Start the drag and drop mode
+     * Drag and drop of the rooms, they are dragged after a long press.
+     * The dragged row is moved in the adapter while it is dragged over the other rows,
+     * the room tag is updated when it is dropped.
      */
-    private void startDragAndDrop() {
-        mIsWaitingTagOrderEcho = false;
+    private class RoomsDragCallback extends ItemTouchHelper.Callback {
+        @Override
+        public int getMovementFlags(RecyclerView recyclerView, RecyclerView.ViewHolder viewHolder) {
+            int position = viewHolder.getAdapterPosition();
+
+            if (isDragAndDropSupported() && (RecyclerView.NO_POSITION != position) &&
+                    (mAdapter.getChildPositionAt(position) >= 0) && groupIsMovable(mAdapter.getGroupPositionAt(position))) {
+                return makeMovementFlags(ItemTouchHelper.UP | ItemTouchHelper.DOWN, 0);
+            }
 
-        if (isDragAndDropSupported() && groupIsMovable(mRecentsListView.getTouchedGroupPosition())) {
-            // enable the drag and drop mode
-            mAdapter.setIsDragAndDropMode(true);
-            mSession.getDataHandler().removeListener(mEventsListener);
+            return 0;
+        }
 
-            int groupPos = mRecentsListView.getTouchedGroupPosition();
-            int childPos = mRecentsListView.getTouchedChildPosition();
+        @Override
+        public boolean onMove(RecyclerView recyclerView, RecyclerView.ViewHolder viewHolder, RecyclerView.ViewHolder target) {
+            return moveDraggedRoom(viewHolder.getAdapterPosition(), target.getAdapterPosition());
+        }
 
-            mDraggedView = mAdapter.getChildView(groupPos, childPos, false, null, null);
-            mDraggedView.setBackgroundColor(getResources().getColor(R.color.vector_silver_color));
-            mDraggedView.setAlpha(0.3f);
+        @Override
+        public void onSwiped(RecyclerView.ViewHolder viewHolder, int direction) {
+            // the rooms cannot be swiped
+        }
 
-            RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.WRAP_CONTENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
-            params.addRule(RelativeLayout.ALIGN_PARENT_LEFT, RelativeLayout.TRUE);
-            params.addRule(RelativeLayout.ALIGN_PARENT_TOP, RelativeLayout.TRUE);
-            mSelectedCellLayout.addView(mDraggedView, params);
+        @Override
+        public void onSelectedChanged(RecyclerView.ViewHolder viewHolder, int actionState) {
+            super.onSelectedChanged(viewHolder, actionState);
 
-            mDestGroupPosition = mOriginGroupPosition = groupPos;
-            mDestChildPosition = mOriginChildPosition = childPos;
+            if ((ItemTouchHelper.ACTION_STATE_DRAG == actionState) && (null != viewHolder)) {
+                startDragAndDrop(viewHolder);
+            }
+        }
 
-            onTouchMove(mRecentsListView.getTouchedY(), groupPos, childPos);
+        @Override
+        public void clearView(RecyclerView recyclerView, RecyclerView.ViewHolder viewHolder) {
+            super.clearView(recyclerView, viewHolder);
+            onDrop(viewHolder);
         }
     }
 
     /**
-     * Drag and drop managemnt
-     * @param y the touch Y position
-     * @param groupPosition the touched group position
-     * @param childPosition the touched child position
+     * Start the drag and drop mode
+     * @param viewHolder the dragged row
      */
-    public void onTouchMove(int y, int groupPosition, int childPosition) {
-        // check if the recents list is drag & drop mode
-        if ((null != mDraggedView) && (!mIgnoreScrollEvent)){
-
-            // display the cell if it is not yet visible
-            if (mSelectedCellLayout.getVisibility() != View.VISIBLE) {
-                mSelectedCellLayout.setVisibility(View.VISIBLE);
-            }
-
-            // compute the next first cell postion
-            int nextFirstVisiblePosition = -1;
+    private void startDragAndDrop(RecyclerView.ViewHolder viewHolder) {
+        mIsWaitingTagOrderEcho = false;
 
-            // scroll over the screen top
-            if (y < 0) {
-                // scroll up
-                if ((mRecentsListView.getFirstVisiblePosition() > 0)) {
-                    nextFirstVisiblePosition = mRecentsListView.getFirstVisiblePosition() - 1;
-                }
+        int position = viewHolder.getAdapterPosition();
 
-                y = 0;
-            }
+        if (RecyclerView.NO_POSITION != position) {
+            // enable the drag and drop mode
+            mAdapter.setIsDragAndDropMode(true);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mEventsListener);
 
-            // scroll over the screen bottom
-            if ((y + mSelectedCellLayout.getHeight()) > mRecentsListView.getHeight()) {
+            mDraggedViewHolder = viewHolder;
+            mDraggedViewHolder.itemView.setBackgroundColor(getResources().getColor(R.color.vector_silver_color));
 
-                // scroll down
-                if (mRecentsListView.getLastVisiblePosition() < mRecentsListView.getCount()) {
-                    nextFirstVisiblePosition = mRecentsListView.getFirstVisiblePosition() + 2;
-                }
+            mDestGroupPosition = mOriginGroupPosition = mAdapter.getGroupPositionAt(position);
+            mDestChildPosition = mOriginChildPosition = mAdapter.getChildPositionAt(position);
+        }
+    }
 
-                y = mRecentsListView.getHeight() - mSelectedCellLayout.getHeight();
-            }
+    /**
+     * Move the dragged room over another row.
+     * @param fromPosition the dragged row position
+     * @param toPosition the target row position
+     * @return true if the room has been moved
+     */
+    private boolean moveDraggedRoom(int fromPosition, int toPosition) {
+        if ((null == mDraggedViewHolder) || (RecyclerView.NO_POSITION == fromPosition) || (RecyclerView.NO_POSITION == toPosition)) {
+            return false;
+        }
 
-            // move the overlay child view with the y position
-            RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(mSelectedCellLayout.getLayoutParams());
-            layoutParams.topMargin = y;
-            mSelectedCellLayout.setLayoutParams(layoutParams);
+        boolean isMovingDown = toPosition > fromPosition;
+        int groupPosition = mAdapter.getGroupPositionAt(toPosition);
+        int childPosition = mAdapter.getChildPositionAt(toPosition);
 
-            // virtually insert the moving cell in the recents list
-            if ((groupPosition != mDestGroupPosition) || (childPosition != mDestChildPosition)) {
+        if (childPosition < 0) {
+            // over a section header : the room is moved to the top of this section or to the bottom of the previous one
+            if (!isMovingDown) {
+                groupPosition--;
 
-                // move cell
-                mAdapter.moveChildView(mDestGroupPosition, mDestChildPosition, groupPosition, childPosition);
-                // refresh
-                notifyDataSetChanged();
+                if (groupPosition < 0) {
+                    return false;
+                }
 
-                // backup
-                mDestGroupPosition = groupPosition;
-                mDestChildPosition = childPosition;
+                childPosition = mAdapter.getChildrenCount(groupPosition);
+            } else {
+                childPosition = 0;
             }
+        } else if (isMovingDown && (groupPosition != mDestGroupPosition)) {
+            // entering a section from its top : the room is inserted after the target one
+            childPosition++;
+        }
 
-            // the first selected position has been updated
-            if (-1 != nextFirstVisiblePosition) {
-                mIgnoreScrollEvent = true;
+        if (!groupIsMovable(groupPosition) || !mAdapter.isGroupExpanded(groupPosition)) {
+            return false;
+        }
 
-                mRecentsListView.setSelection(nextFirstVisiblePosition);
+        // move cell
+        mAdapter.moveChildView(mDestGroupPosition, mDestChildPosition, groupPosition, childPosition);
 
-                // avoid moving to quickly i.e moving only each 100ms
-                mRecentsListView.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        mIgnoreScrollEvent = false;
-                    }
-                }, 100);
-            }
-        }
+        // backup
+        mDestGroupPosition = groupPosition;
+        mDestChildPosition = Math.min(childPosition, mAdapter.getChildrenCount(groupPosition) - 1);
+
+        return true;
     }
 
     @Override
-    public void onOverScrolled(int scrollX, int scrollY, boolean clampedX, boolean clampedY) {
-        if (clampedY && (0 == scrollY)) {
-            if (null != getListener()) {
-                mScrollEventListener.onRecentsListOverScrollUp();
-            }
+    public void onOverScrollUp() {
+        // the list is not scrolled while a room is dragged
+        if ((null == mDraggedViewHolder) && (null != getListener())) {
+            mScrollEventListener.onRecentsListOverScrollUp();
         }
     }
 
@@ -878,18 +879,15 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
 
     /**
      * The drag ends.
+     * @param viewHolder the dropped row
      */
-    public void onDrop() {
+    private void onDrop(RecyclerView.ViewHolder viewHolder) {
         // check if the list wad in drag & drop mode
-        if (null != mDraggedView) {
-
-            // remove the overlay child view
-            ViewGroup viewParent = (ViewGroup) mDraggedView.getParent();
-            viewParent.removeView(mDraggedView);
-            mDraggedView = null;
+        if (null != mDraggedViewHolder) {
 
-            // hide the overlay layout
-            mSelectedCellLayout.setVisibility(View.GONE);
+            // restore the row background
+            viewHolder.itemView.setBackgroundColor(Color.TRANSPARENT);
+            mDraggedViewHolder = null;
 
             // same place, nothing to do
             if ((mOriginGroupPosition == mDestGroupPosition) && (mOriginChildPosition == mDestChildPosition)) {
@@ -924,7 +922,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
         // in drag and drop mode
         // the events listener is unplugged while playing with the cell
         if (mAdapter.isInDragAndDropMode()) {
-            mSession.getDataHandler().addListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
             mAdapter.setIsDragAndDropMode(false);
             if (!mIsWaitingTagOrderEcho) {
                 notifyDataSetChanged();
@@ -966,7 +964,7 @@ public class VectorRecentsListFragment extends Fragment implements VectorRoomSum
 
             // restore the listener because the room tag event could be sent before getting the replaceTag response.
             mIsWaitingTagOrderEcho = true;
-            mSession.getDataHandler().addListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
 
             // and work
             room.replaceTag(oldTag, newtag, tagOrder, new ApiCallback<Void>() {
@@ -61,6 +61,7 @@ import org.matrix.androidsdk.rest.model.User;
 
 import im.vector.VectorApp;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.activity.CommonActivityUtils;
 import im.vector.activity.MXCActionBarActivity;
 import im.vector.activity.VectorMemberDetailsActivity;
@@ -275,7 +276,7 @@ public class VectorRoomDetailsMembersFragment extends Fragment {
 
         // sanity check
         if (null != mRoom) {
-            mRoom.removeEventListener(mEventListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mEventListener);
         }
 
         if (mIsMultiSelectionMode) {
@@ -312,7 +313,7 @@ public class VectorRoomDetailsMembersFragment extends Fragment {
 
         // sanity check
         if (null != mRoom) {
-            mRoom.addEventListener(mEventListener);
+            SessionEventsDispatcher.getInstance(mSession).addRoomListener(mRoom, mEventListener);
         }
 
         // sanity check
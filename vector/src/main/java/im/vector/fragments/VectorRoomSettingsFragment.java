@@ -51,6 +51,7 @@ import org.matrix.androidsdk.util.ContentManager;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.activity.CommonActivityUtils;
 import im.vector.activity.VectorMediasPickerActivity;
 import im.vector.preference.RoomAvatarPreference;
@@ -303,7 +304,7 @@ public class VectorRoomSettingsFragment extends PreferenceFragment implements Sh
 
         if (null != mRoom) {
             Matrix.getInstance(getActivity()).removeNetworkEventListener(mNetworkListener);
-            mRoom.removeEventListener(mEventListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mEventListener);
         }
 
         // remove preference changes listener
@@ -316,7 +317,7 @@ public class VectorRoomSettingsFragment extends PreferenceFragment implements Sh
 
         if (null != mRoom) {
             Matrix.getInstance(getActivity()).addNetworkEventListener(mNetworkListener);
-            mRoom.addEventListener(mEventListener);
+            SessionEventsDispatcher.getInstance(mSession).addRoomListener(mRoom, mEventListener);
             updateUi();
 
             updateRoomDirectoryVisibilityAsync();
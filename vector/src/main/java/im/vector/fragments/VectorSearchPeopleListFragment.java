@@ -34,6 +34,7 @@ import org.matrix.androidsdk.rest.model.User;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 
 import im.vector.activity.VectorBaseSearchActivity;
 import im.vector.activity.VectorMemberDetailsActivity;
@@ -202,7 +203,7 @@ public class  VectorSearchPeopleListFragment extends Fragment {
         super.onPause();
         mAdapter.setSearchedPattern(null, null, null);
 
-        mSession.getDataHandler().removeListener(mEventsListener);
+        SessionEventsDispatcher.getInstance(mSession).removeListener(mEventsListener);
         ContactsManager.removeListener(mContactsListener);
     }
 
@@ -220,7 +221,7 @@ public class  VectorSearchPeopleListFragment extends Fragment {
             }
         }
 
-        mSession.getDataHandler().addListener(mEventsListener);
+        SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
         ContactsManager.addListener(mContactsListener);
     }
 }
@@ -19,12 +19,12 @@ package im.vector.fragments;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ExpandableListView;
 import android.widget.Toast;
 
 import org.matrix.androidsdk.MXSession;
@@ -52,7 +52,7 @@ import im.vector.activity.VectorBaseSearchActivity;
 import im.vector.activity.VectorPublicRoomsActivity;
 import im.vector.activity.VectorRoomActivity;
 import im.vector.adapters.VectorRoomSummaryAdapter;
-import im.vector.view.RecentsExpandableListView;
+import im.vector.view.RecentsRecyclerView;
 
 public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
 
@@ -95,9 +95,8 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
 
         View v = inflater.inflate(args.getInt(ARG_LAYOUT_ID), container, false);
         mWaitingView = v.findViewById(R.id.listView_spinner_views);
-        mRecentsListView = (RecentsExpandableListView)v.findViewById(R.id.fragment_recents_list);
-        // the chevron is managed in the header view
-        mRecentsListView.setGroupIndicator(null);
+        mRecentsListView = (RecentsRecyclerView)v.findViewById(R.id.fragment_recents_list);
+        mRecentsListView.setLayoutManager(new LinearLayoutManager(getActivity()));
         // create the adapter
         mAdapter = new VectorRoomSummaryAdapter(getActivity().getApplicationContext(), mSession, true, false, R.layout.adapter_item_vector_recent_room, R.layout.adapter_item_vector_recent_header, this);
         mRecentsListView.setAdapter(mAdapter);
@@ -108,10 +107,10 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
         // Set rooms click listener:
         // - reset the unread count
         // - start the corresponding room activity
-        mRecentsListView.setOnChildClickListener(new ExpandableListView.OnChildClickListener() {
+        // the groups are always expanded in search mode, i.e. the headers clicks are ignored by the adapter
+        mAdapter.setOnChildClickListener(new VectorRoomSummaryAdapter.OnChildClickListener() {
             @Override
-            public boolean onChildClick(ExpandableListView parent, View v,
-                                        int groupPosition, int childPosition, long id) {
+            public void onChildClick(int groupPosition, int childPosition) {
 
                 if (mAdapter.isRoomByIdGroupPosition(groupPosition)) {
                     final String roomIdOrAlias = mAdapter.getSearchedPattern();
@@ -187,18 +186,6 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
                         getActivity().startActivity(intent);
                     }
                 }
-
-                // click is handled
-                return true;
-            }
-        });
-
-        // disable the collapse
-        mRecentsListView.setOnGroupClickListener(new ExpandableListView.OnGroupClickListener() {
-            @Override
-            public boolean onGroupClick(ExpandableListView parent, View v, int groupPosition, long id) {
-                // Doing nothing
-                return true;
             }
         });
 
@@ -234,17 +221,6 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
         });
     }
 
-    /**
-     * Expands all existing sections.
-     */
-    private void expandsAllSections() {
-        final int groupCount = mAdapter.getGroupCount();
-
-        for(int groupIndex = 0; groupIndex < groupCount; groupIndex++) {
-            mRecentsListView.expandGroup(groupIndex);
-        }
-    }
-
     /**
      * Search a pattern in the room
      * @param pattern
@@ -263,7 +239,6 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
             @Override
             public void run() {
                 mRecentsListView.setVisibility(View.VISIBLE);
-                expandsAllSections();
                 onSearchResultListener.onSearchSucceed(1);
             }
         });
@@ -282,7 +257,7 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
 
                                 mPublicRoomsList = PublicRoomsManager.getPublicRooms();
                                 mAdapter.setPublicRoomsList(mPublicRoomsList);
-                                mAdapter.notifyDataSetChanged();
+                                mAdapter.notifySummariesChanged();
                             }
                         });
                     }
@@ -326,6 +301,12 @@ public class VectorSearchRoomsListFragment extends VectorRecentsListFragment {
      */
     protected void notifyDataSetChanged() {
         // the groups are always expanded.
-        mAdapter.notifyDataSetChanged();
+        mAdapter.notifySummariesChanged();
+    }
+
+    @Override
+    public void onSummariesListRefreshed() {
+        // do nothing
+        // the groups are always expanded in search mode.
     }
 }
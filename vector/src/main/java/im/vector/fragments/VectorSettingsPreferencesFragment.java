@@ -66,12 +66,14 @@ import java.util.List;
 
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
 import im.vector.VectorApp;
 import im.vector.activity.VectorMediasPickerActivity;
 import im.vector.ga.GAHelper;
 import im.vector.gcm.GcmRegistrationManager;
 import im.vector.preference.UserAvatarPreference;
 import im.vector.preference.VectorCustomActionEditTextPreference;
+import im.vector.util.ListenersProfiler;
 import im.vector.util.ResourceUtils;
 import im.vector.util.VectorUtils;
 
@@ -252,6 +254,33 @@ public class VectorSettingsPreferencesFragment extends PreferenceFragment {
             });
         }
 
+        // events listeners profiling
+        final SwitchPreference profileListenersPref = (SwitchPreference)preferenceManager.findPreference(getActivity().getResources().getString(R.string.settings_key_profile_listeners));
+
+        if (null != profileListenersPref) {
+            profileListenersPref.setChecked(ListenersProfiler.getInstance().isEnabled());
+
+            profileListenersPref.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+                    ListenersProfiler.getInstance().setEnabled(getActivity(), (boolean)newValue);
+                    return true;
+                }
+            });
+        }
+
+        Preference listenersProfilePref = preferenceManager.findPreference(getActivity().getResources().getString(R.string.settings_key_listeners_profile));
+
+        if (null != listenersProfilePref) {
+            listenersProfilePref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    displayListenersProfile();
+                    return true;
+                }
+            });
+        }
+
         final EditTextPreference displaynamePref = (EditTextPreference)preferenceManager.findPreference(getActivity().getResources().getString(R.string.settings_display_name));
         displaynamePref.setSummary(mSession.getMyUser().displayname);
         displaynamePref.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
@@ -359,7 +388,7 @@ public class VectorSettingsPreferencesFragment extends PreferenceFragment {
         super.onPause();
 
         if (mSession.isAlive()) {
-            mSession.getDataHandler().removeListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).removeListener(mEventsListener);
             Matrix.getInstance(getActivity()).removeNetworkEventListener(mNetworkListener);
         }
     }
@@ -369,7 +398,7 @@ public class VectorSettingsPreferencesFragment extends PreferenceFragment {
         super.onResume();
 
         if (mSession.isAlive()) {
-            mSession.getDataHandler().addListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(mSession).addListener(mEventsListener);
 
             Matrix.getInstance(getActivity()).addNetworkEventListener(mNetworkListener);
 
@@ -734,6 +763,31 @@ public class VectorSettingsPreferencesFragment extends PreferenceFragment {
         }
     }
 
+    /**
+     * Display the events listeners profile.
+     */
+    private void displayListenersProfile() {
+        String dump = ListenersProfiler.getInstance().getDump();
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(R.string.settings_listeners_profile);
+        builder.setMessage((null != dump) ? dump : getString(R.string.settings_listeners_profile_empty));
+        builder.setPositiveButton(R.string.ok, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+        builder.setNeutralButton(R.string.settings_listeners_profile_reset, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                ListenersProfiler.getInstance().reset();
+                dialog.dismiss();
+            }
+        });
+        builder.show();
+    }
+
     /**
      * Update the displayname.
      */
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.services;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.data.RoomState;
+import org.matrix.androidsdk.listeners.MXEventListener;
+import org.matrix.androidsdk.rest.model.Event;
+
+import im.vector.SessionEventsDispatcher;
+
+import java.util.HashMap;
+
+/**
+ * Adapt the sync delay of each session while the application is in background and the event stream is polled.
+ * The delay is widened after the empty syncs and narrowed when some events are received.
+ * It is bounded by the user-set background sync delay and a maximum delay which depends on the charging state,
+ * the network type and the doze mode.
+ * The sessions events are listened in the UI thread, where the sessions are updated.
+ * The metrics of the latest adapted period are kept when the scheduler is stopped (see getMetrics).
+ */
+public class AdaptiveSyncScheduler {
+    private static final String LOG_TAG = "AdaptiveSyncScheduler";
+
+    // the maximum delay is this factor * the user-set delay
+    private static final int MAX_DELAY_FACTOR = 4;
+    // the minimum value of the maximum delay (ms)
+    private static final int MIN_MAX_DELAY_MS = 60 * 1000;
+    // the delay step when the user-set delay is 0 (ms)
+    private static final int DELAY_STEP_MS = 5 * 1000;
+
+    /**
+     * The sync state of a session.
+     */
+    private class SessionSyncState {
+        public final MXSession mSession;
+
+        // the current delay
+        public int mDelay;
+        // the number of live events received since the latest sync
+        public int mPendingEventsCount = 0;
+
+        // metrics
+        public long mStartTs = System.currentTimeMillis();
+        public int mSyncsCount = 0;
+        public int mEmptySyncsCount = 0;
+
+        public final MXEventListener mListener = new MXEventListener() {
+            @Override
+            public void onLiveEvent(Event event, RoomState roomState) {
+                onLiveEventReceived(SessionSyncState.this);
+            }
+
+            @Override
+            public void onLiveEventsChunkProcessed() {
+                onSyncDone(SessionSyncState.this);
+            }
+        };
+
+        public SessionSyncState(MXSession session, int delay) {
+            mSession = session;
+            mDelay = delay;
+        }
+    }
+
+    private final Context mContext;
+
+    // the sync states by matrix id
+    private final HashMap<String, SessionSyncState> mSyncStateByMatrixId = new HashMap<>();
+    // the metrics of the latest adapted period by matrix id
+    private final HashMap<String, String> mLastMetricsByMatrixId = new HashMap<>();
+
+    // the user-set bounds
+    private int mMinDelay = 0;
+    private int mTimeout = 0;
+
+    // true when the delays are adapted
+    private boolean mIsStarted = false;
+
+    public AdaptiveSyncScheduler(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Start to adapt the sync delays.
+     * @param sessions the sessions
+     * @param minDelay the user-set sync delay (ms)
+     * @param timeout the user-set sync timeout (ms)
+     */
+    public synchronized void start(Iterable<MXSession> sessions, int minDelay, int timeout) {
+        mMinDelay = minDelay;
+        mTimeout = timeout;
+        mIsStarted = true;
+
+        for (MXSession session : sessions) {
+            addSession(session);
+        }
+    }
+
+    /**
+     * Stop to adapt the sync delays.
+     * The sessions delays are not updated.
+     */
+    public synchronized void stop() {
+        for (SessionSyncState state : mSyncStateByMatrixId.values()) {
+            String metrics = getMetrics(state);
+            Log.d(LOG_TAG, "## stop() : " + metrics);
+            mLastMetricsByMatrixId.put(state.mSession.getMyUserId(), metrics);
+
+            if (state.mSession.isAlive()) {
+                SessionEventsDispatcher.getInstance(state.mSession).removeListener(state.mListener);
+            }
+        }
+
+        mSyncStateByMatrixId.clear();
+        mIsStarted = false;
+    }
+
+    /**
+     * Add a session to the scheduler.
+     * It is ignored if the scheduler is not started.
+     * @param session the session
+     */
+    public synchronized void addSession(MXSession session) {
+        if (!mIsStarted || !session.isAlive() || mSyncStateByMatrixId.containsKey(session.getMyUserId())) {
+            return;
+        }
+
+        SessionSyncState state = new SessionSyncState(session, mMinDelay);
+        mSyncStateByMatrixId.put(session.getMyUserId(), state);
+        SessionEventsDispatcher.getInstance(session).addListener(state.mListener);
+
+        session.setSyncDelay(mMinDelay);
+        session.setSyncTimeout(mTimeout);
+    }
+
+    /**
+     * Remove a session from the scheduler.
+     * @param session the session
+     */
+    public synchronized void removeSession(MXSession session) {
+        SessionSyncState state = mSyncStateByMatrixId.remove(session.getMyUserId());
+
+        if ((null != state) && session.isAlive()) {
+            SessionEventsDispatcher.getInstance(session).removeListener(state.mListener);
+        }
+    }
+
+    /**
+     * Provide the sync metrics of a session.
+     * The metrics of the latest adapted period are provided when the scheduler is stopped.
+     * @param matrixId the matrix id
+     * @return the metrics description, null if the sync delay of the session has never been adapted.
+     */
+    public synchronized String getMetrics(String matrixId) {
+        SessionSyncState state = mSyncStateByMatrixId.get(matrixId);
+        return (null != state) ? getMetrics(state) : mLastMetricsByMatrixId.get(matrixId);
+    }
+
+    /**
+     * @return the metrics description of a session sync state.
+     */
+    private String getMetrics(SessionSyncState state) {
+        float hours = Math.max(System.currentTimeMillis() - state.mStartTs, 1) / (3600.0f * 1000.0f);
+        float syncsPerHour = state.mSyncsCount / hours;
+        float emptySyncsRatio = (0 != state.mSyncsCount) ? ((float) state.mEmptySyncsCount / state.mSyncsCount) : 0;
+
+        return state.mSession.getMyUserId() + " : " + state.mSyncsCount + " syncs (" + syncsPerHour + " syncs/hour), empty syncs ratio " + emptySyncsRatio + ", current delay " + state.mDelay + " ms";
+    }
+
+    /**
+     * A live event has been received for a session.
+     * @param state the session sync state
+     */
+    private synchronized void onLiveEventReceived(SessionSyncState state) {
+        state.mPendingEventsCount++;
+    }
+
+    /**
+     * A sync response has been processed for a session.
+     * @param state the session sync state
+     */
+    private synchronized void onSyncDone(SessionSyncState state) {
+        if (!mIsStarted || (state != mSyncStateByMatrixId.get(state.mSession.getMyUserId()))) {
+            return;
+        }
+
+        state.mSyncsCount++;
+
+        int minDelay = mMinDelay;
+        int maxDelay = getMaxDelay();
+        int step = Math.max(mMinDelay, DELAY_STEP_MS);
+        int delay;
+
+        if (0 == state.mPendingEventsCount) {
+            state.mEmptySyncsCount++;
+            // widen the delay
+            delay = state.mDelay + step;
+        } else {
+            // narrow the delay according to the received events
+            delay = state.mDelay / (1 + state.mPendingEventsCount);
+        }
+
+        delay = Math.max(minDelay, Math.min(maxDelay, delay));
+        state.mPendingEventsCount = 0;
+
+        if (delay != state.mDelay) {
+            Log.d(LOG_TAG, "## onSyncDone() : " + state.mSession.getMyUserId() + " sync delay " + state.mDelay + " -> " + delay + " ms (max " + maxDelay + " ms)");
+            state.mDelay = delay;
+            state.mSession.setSyncDelay(delay);
+        }
+    }
+
+    /**
+     * Compute the maximum sync delay according to the device state.
+     * @return the maximum delay in ms
+     */
+    private int getMaxDelay() {
+        int maxDelay = Math.max(mMinDelay * MAX_DELAY_FACTOR, MIN_MAX_DELAY_MS);
+
+        try {
+            // the device is charging : the radio wakeups are not an issue
+            Intent batteryStatus = mContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+
+            if ((null != batteryStatus) && (0 != batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0))) {
+                return mMinDelay;
+            }
+
+            // doze mode : the syncs should be as rare as possible
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                PowerManager pm = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+
+                if (pm.isDeviceIdleMode()) {
+                    return maxDelay;
+                }
+            }
+
+            // a wifi sync is cheaper than a mobile one
+            ConnectivityManager cm = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkInfo networkInfo = cm.getActiveNetworkInfo();
+
+            if ((null != networkInfo) && (ConnectivityManager.TYPE_WIFI == networkInfo.getType())) {
+                maxDelay = Math.max(mMinDelay, maxDelay / 2);
+            }
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## getMaxDelay() failed " + e.getMessage());
+        }
+
+        return maxDelay;
+    }
+}
@@ -23,15 +23,15 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Build;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.support.v4.app.NotificationCompat;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
-import android.widget.ImageView;
 
 import org.matrix.androidsdk.MXSession;
 import org.matrix.androidsdk.call.IMXCall;
@@ -47,18 +47,21 @@ import org.matrix.androidsdk.util.EventDisplay;
 import im.vector.VectorApp;
 import im.vector.Matrix;
 import im.vector.R;
+import im.vector.SessionEventsDispatcher;
+import im.vector.StoresStartupManager;
 import im.vector.ViewedRoomTracker;
 import im.vector.activity.CallViewActivity;
 import im.vector.activity.CommonActivityUtils;
 import im.vector.activity.VectorHomeActivity;
 import im.vector.gcm.GcmRegistrationManager;
+import im.vector.util.NotificationAvatarLoader;
 import im.vector.util.NotificationUtils;
 import im.vector.util.VectorUtils;
 
-import java.io.File;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
@@ -102,7 +105,64 @@ public class EventStreamService extends Service {
 
     private boolean mIsForegound = false;
 
-    private Notification mLatestNotification = null;
+    /**
+     * Lightweight description of a notified event.
+     * The matching notification is only built when the events chunk is processed.
+     */
+    private static class NotifiedEvent {
+        public final String mMatrixId;
+        public final Event mEvent;
+        public final RoomState mRoomState;
+        public final BingRule mBingRule;
+
+        public NotifiedEvent(String matrixId, Event event, RoomState roomState, BingRule bingRule) {
+            mMatrixId = matrixId;
+            mEvent = event;
+            mRoomState = roomState;
+            mBingRule = bingRule;
+        }
+    }
+
+    /**
+     * The texts and settings of a message notification.
+     * They are read from the session data in the UI thread because the SDK is not thread safe,
+     * the notification itself is built in a background thread.
+     */
+    private static class NotificationContent {
+        public MXSession mSession;
+        public String mMatrixId;
+        public String mSenderId;
+        public String mFrom;
+        public String mAvatarUrl;
+        public String mCallId;
+        public String mBody;
+        public String mRoomId;
+        public String mRoomName;
+        public boolean mIsMultiAccounts;
+        public int mBadgeCount;
+        public boolean mIsDefaultSound;
+    }
+
+    // the notified events received in the current events chunk (one per room)
+    private final LinkedHashMap<String, NotifiedEvent> mPendingNotifiedEvents = new LinkedHashMap<>();
+    // the number of notified events received in the current events chunk
+    private int mPendingNotifiedEventsCount = 0;
+    // the number of notifications which have not been built because a newer event has been notified in the same chunk
+    private int mAvoidedNotificationBuildsCount = 0;
+    // incremented each time the displayed notification is updated or cleared
+    // to ignore the notifications built in the background thread which are now obsolete.
+    private int mNotificationGeneration = 0;
+
+    // rate limit the notifications posts and the screen wakeups
+    private NotificationDeliveryPolicy mNotificationDeliveryPolicy = null;
+
+    // adapt the sync delays while the application is in background
+    private AdaptiveSyncScheduler mAdaptiveSyncScheduler = null;
+
+    // the notifications are built in a background thread
+    private HandlerThread mNotificationsThread = null;
+    private android.os.Handler mNotificationsThreadHandler = null;
+    private android.os.Handler mUIHandler = null;
 
     private static EventStreamService mActiveEventStreamService = null;
 
@@ -136,7 +196,12 @@ public class EventStreamService extends Service {
         mNotificationRoomId = null;
         mNotificationEventId = null;
         mNotificationCallId = null;
-        mLatestNotification = null;
+        mNotificationGeneration++;
+
+        // the next notification can alert again
+        if (null != mNotificationDeliveryPolicy) {
+            mNotificationDeliveryPolicy.reset();
+        }
     }
 
     /**
@@ -221,9 +286,6 @@ public class EventStreamService extends Service {
         }
     }
 
-    // this imageView is used to preload the avatar thumbnail
-    static private ImageView mDummyImageView;
-
     private MXCallsManager.MXCallsManagerListener mCallsManagerListener = new MXCallsManager.MXCallsManagerListener() {
 
         /**
@@ -311,7 +373,6 @@ public class EventStreamService extends Service {
                 return;
             }
 
-            String senderID = event.getSender();
             // FIXME: Support event contents with no body
             if (!event.content.getAsJsonObject().has("body")) {
                 // only the membership events are supported
@@ -347,84 +408,13 @@ public class EventStreamService extends Service {
                 return;
             }
 
-            boolean isInvitationEvent = false;
-            String body;
-
-            String notifiedCallId = null;
-
             // call invitation
-            if (event.isCallEvent()) {
-                if (event.type.equals(Event.EVENT_TYPE_CALL_INVITE)) {
-                    body = getApplicationContext().getString(R.string.incoming_call);
-
-                    try {
-                        mNotificationCallId = notifiedCallId = event.getContentAsJsonObject().get("call_id").getAsString();
-                     } catch (Exception e) {}
-
-
-                } else {
-                    EventDisplay eventDisplay = new EventDisplay(getApplicationContext(), event, room.getLiveState());
-                    body = eventDisplay.getTextualDisplay().toString();
-                }
-            } else if (Event.EVENT_TYPE_STATE_ROOM_MEMBER.equals(event.type)) {
-                body = EventDisplay.getMembershipNotice(getApplicationContext(), event, roomState);
-
+            if (event.isCallEvent() && event.type.equals(Event.EVENT_TYPE_CALL_INVITE)) {
                 try {
-                    isInvitationEvent = "invite".equals(event.getContentAsJsonObject().getAsJsonPrimitive("membership").getAsString());
+                    mNotificationCallId = event.getContentAsJsonObject().get("call_id").getAsString();
                 } catch (Exception e) {}
-
-
-            } else {
-                body = event.getContentAsJsonObject().getAsJsonPrimitive("body").getAsString();
-            }
-
-            String from = "";
-            Bitmap largeBitmap = null;
-
-            // when the event is an invitation one
-            // don't check if the sender ID is known because the members list are not yet downloaded
-            if (!isInvitationEvent) {
-                RoomMember member = room.getMember(senderID);
-
-                // invalid member
-                if (null == member) {
-                    return;
-                }
-
-                from = member.getName();
-
-                // is there any avatar url
-                if (!TextUtils.isEmpty(member.avatarUrl)) {
-                    int size = getApplicationContext().getResources().getDimensionPixelSize(R.dimen.profile_avatar_size);
-
-                    // check if the thumbnail is already downloaded
-                    File f = session.getMediasCache().thumbnailCacheFile(member.avatarUrl, size);
-
-                    if (null != f) {
-                        BitmapFactory.Options options = new BitmapFactory.Options();
-                        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-                        largeBitmap = BitmapFactory.decodeFile(f.getPath(), options);
-                    } else {
-                        // else load it
-                        mDummyImageView = new ImageView(getApplicationContext());
-                        session.getMediasCache().loadAvatarThumbnail(session.getHomeserverConfig(), mDummyImageView, member.avatarUrl, size);
-                    }
-                }
             }
 
-            if (null == largeBitmap) {
-                largeBitmap = VectorUtils.getAvatar(getApplicationContext(), VectorUtils.getAvatarcolor(senderID), TextUtils.isEmpty(from) ? senderID : from, true);
-            }
-
-            String roomName = null;
-            if(session.getMyUser() != null) {
-                roomName = room.getName(session.getMyUserId());
-            }
-
-            mNotificationSessionId = session.getCredentials().userId;
-            mNotificationRoomId = roomId;
-            mNotificationEventId = event.eventId;
-
             if (bingRule.isCallRingNotificationSound(bingRule.notificationSound())) {
                 if (null == CallViewActivity.getActiveCall()) {
                     Log.d(LOG_TAG, "onBingEvent starting");
@@ -432,46 +422,37 @@ public class EventStreamService extends Service {
                 }
             }
 
-            Log.d(LOG_TAG, "onBingEvent : with sound " + bingRule.isDefaultNotificationSound(bingRule.notificationSound()));
-
-            mLatestNotification = NotificationUtils.buildMessageNotification(
-                    EventStreamService.this,
-                    from, session.getCredentials().userId,
-                    notifiedCallId,
-                    Matrix.getMXSessions(getApplicationContext()).size() > 1,
-                    largeBitmap,
-                    CommonActivityUtils.getBadgeCount(),
-                    CommonActivityUtils.getBadgeCount(),
-                    body,
-                    event.roomId,
-                    roomName,
-                    bingRule.isDefaultNotificationSound(bingRule.notificationSound()));
+            // the notification is only built when the chunk is fully processed
+            // a newer event of the same room replaces the previous one.
+            String key = session.getCredentials().userId + "|" + roomId;
+            mPendingNotifiedEvents.remove(key);
+            mPendingNotifiedEvents.put(key, new NotifiedEvent(session.getCredentials().userId, event, roomState, bingRule));
+            mPendingNotifiedEventsCount++;
         }
 
         @Override
         public void onLiveEventsChunkProcessed() {
-            if (null != mLatestNotification) {
-                // check first if the message has not been read
-                checkNotification();
-
-                // if it is still defined.
-                if (null != mLatestNotification) {
-                    try {
-                        NotificationManager nm = (NotificationManager) EventStreamService.this.getSystemService(Context.NOTIFICATION_SERVICE);
-                        nm.cancelAll();
-                        nm.notify(MSG_NOTIFICATION_ID, mLatestNotification);
-
-                        // turn the screen on for 3 seconds
-                        PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
-                        PowerManager.WakeLock wl = pm.newWakeLock(PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP, "MXEventListener");
-                        wl.acquire(3000);
-                        wl.release();
-                    } catch (Exception e) {
-                        Log.e(LOG_TAG, "onLiveEventsChunkProcessed crashed " + e.getLocalizedMessage());
-                    }
+            if (!mPendingNotifiedEvents.isEmpty()) {
+                // only the latest notified event is displayed
+                NotifiedEvent notifiedEvent = null;
 
-                    mLatestNotification = null;
+                for (NotifiedEvent anEvent : mPendingNotifiedEvents.values()) {
+                    notifiedEvent = anEvent;
                 }
+
+                int avoidedBuilds = mPendingNotifiedEventsCount - 1;
+                mAvoidedNotificationBuildsCount += avoidedBuilds;
+
+                Log.d(LOG_TAG, "onLiveEventsChunkProcessed : " + mPendingNotifiedEventsCount + " notified events in " + mPendingNotifiedEvents.size() + " rooms, " + avoidedBuilds + " notification builds avoided (" + mAvoidedNotificationBuildsCount + " since the service started)");
+
+                mPendingNotifiedEvents.clear();
+                mPendingNotifiedEventsCount = 0;
+
+                mNotificationSessionId = notifiedEvent.mMatrixId;
+                mNotificationRoomId = notifiedEvent.mEvent.roomId;
+                mNotificationEventId = notifiedEvent.mEvent.eventId;
+
+                buildAndDisplayNotification(notifiedEvent);
             }
 
             // special catchup cases
@@ -496,6 +477,262 @@ public class EventStreamService extends Service {
         }
     };
 
+    /**
+     * Build the notification of a notified event in a background thread
+     * and display it in the UI thread.
+     * @param notifiedEvent the notified event
+     */
+    private void buildAndDisplayNotification(final NotifiedEvent notifiedEvent) {
+        if (null == mNotificationsThread) {
+            mNotificationsThread = new HandlerThread("NotificationsThread", Thread.MIN_PRIORITY);
+            mNotificationsThread.start();
+            mNotificationsThreadHandler = new android.os.Handler(mNotificationsThread.getLooper());
+            mUIHandler = new android.os.Handler(Looper.getMainLooper());
+        }
+
+        if (null == mNotificationDeliveryPolicy) {
+            mNotificationDeliveryPolicy = new NotificationDeliveryPolicy(getApplicationContext());
+        }
+
+        final int generation = ++mNotificationGeneration;
+        NotificationContent content = null;
+
+        try {
+            content = getNotificationContent(notifiedEvent);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "buildAndDisplayNotification failed " + e.getLocalizedMessage());
+        }
+
+        if (null == content) {
+            return;
+        }
+
+        final NotificationContent fContent = content;
+
+        mNotificationsThreadHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Notification notification = null;
+
+                try {
+                    notification = buildMessageNotification(fContent);
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "buildAndDisplayNotification failed " + e.getLocalizedMessage());
+                }
+
+                if (null == notification) {
+                    return;
+                }
+
+                final Notification fNotification = notification;
+
+                // the notifications requested during the quiet period are merged
+                mUIHandler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        // a newer notification has been requested or the notification has been cleared
+                        if (generation != mNotificationGeneration) {
+                            Log.d(LOG_TAG, "buildAndDisplayNotification : the notification is obsolete");
+                            mNotificationDeliveryPolicy.onPostMerged();
+                            return;
+                        }
+
+                        // check first if the message has not been read
+                        checkNotification();
+
+                        // if it is still defined.
+                        if (generation == mNotificationGeneration) {
+                            try {
+                                NotificationDeliveryPolicy.Delivery delivery = mNotificationDeliveryPolicy.onPost(notifiedEvent.mMatrixId + "|" + notifiedEvent.mEvent.roomId);
+
+                                // rate limited : update the displayed notification silently
+                                if (!delivery.mAlert) {
+                                    fNotification.defaults &= ~(Notification.DEFAULT_SOUND | Notification.DEFAULT_VIBRATE);
+                                    fNotification.sound = null;
+                                    fNotification.vibrate = null;
+                                    fNotification.flags |= Notification.FLAG_ONLY_ALERT_ONCE;
+                                }
+
+                                // the notification is updated in place (no cancel / re-post)
+                                NotificationManager nm = (NotificationManager) EventStreamService.this.getSystemService(Context.NOTIFICATION_SERVICE);
+                                nm.notify(MSG_NOTIFICATION_ID, fNotification);
+
+                                if (delivery.mWakeScreen) {
+                                    // turn the screen on for 3 seconds
+                                    PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+                                    PowerManager.WakeLock wl = pm.newWakeLock(PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP, "MXEventListener");
+                                    wl.acquire(3000);
+                                    wl.release();
+                                }
+
+                                Log.d(LOG_TAG, "buildAndDisplayNotification : alert " + delivery.mAlert + " wake screen " + delivery.mWakeScreen + " - " + mNotificationDeliveryPolicy.getReport());
+                            } catch (Exception e) {
+                                Log.e(LOG_TAG, "buildAndDisplayNotification crashed " + e.getLocalizedMessage());
+                            }
+                        }
+                    }
+                }, mNotificationDeliveryPolicy.getPostDelay());
+            }
+        });
+    }
+
+    /**
+     * Read the notification content of a notified event.
+     * It must be called in the UI thread.
+     * @param notifiedEvent the notified event
+     * @return the notification content, null if the notification cannot be built.
+     */
+    private NotificationContent getNotificationContent(NotifiedEvent notifiedEvent) {
+        Event event = notifiedEvent.mEvent;
+        BingRule bingRule = notifiedEvent.mBingRule;
+
+        MXSession session = Matrix.getMXSession(getApplicationContext(), notifiedEvent.mMatrixId);
+
+        if ((null == session) || !session.isAlive()) {
+            Log.d(LOG_TAG, "getNotificationContent : no session");
+            return null;
+        }
+
+        Room room = session.getDataHandler().getRoom(event.roomId);
+
+        if (null == room) {
+            Log.d(LOG_TAG, "getNotificationContent : the room does not exist");
+            return null;
+        }
+
+        NotificationContent content = new NotificationContent();
+        content.mSession = session;
+        content.mMatrixId = session.getCredentials().userId;
+        content.mSenderId = event.getSender();
+        content.mRoomId = event.roomId;
+        content.mFrom = "";
+
+        boolean isInvitationEvent = false;
+
+        // call invitation
+        if (event.isCallEvent()) {
+            if (event.type.equals(Event.EVENT_TYPE_CALL_INVITE)) {
+                content.mBody = getApplicationContext().getString(R.string.incoming_call);
+
+                try {
+                    content.mCallId = event.getContentAsJsonObject().get("call_id").getAsString();
+                } catch (Exception e) {}
+            } else {
+                EventDisplay eventDisplay = new EventDisplay(getApplicationContext(), event, room.getLiveState());
+                content.mBody = eventDisplay.getTextualDisplay().toString();
+            }
+        } else if (Event.EVENT_TYPE_STATE_ROOM_MEMBER.equals(event.type)) {
+            content.mBody = EventDisplay.getMembershipNotice(getApplicationContext(), event, notifiedEvent.mRoomState);
+
+            try {
+                isInvitationEvent = "invite".equals(event.getContentAsJsonObject().getAsJsonPrimitive("membership").getAsString());
+            } catch (Exception e) {}
+        } else {
+            content.mBody = event.getContentAsJsonObject().getAsJsonPrimitive("body").getAsString();
+        }
+
+        // when the event is an invitation one
+        // don't check if the sender ID is known because the members list are not yet downloaded
+        if (!isInvitationEvent) {
+            RoomMember member = room.getMember(content.mSenderId);
+
+            // invalid member
+            if (null == member) {
+                return null;
+            }
+
+            content.mFrom = member.getName();
+            content.mAvatarUrl = member.avatarUrl;
+        }
+
+        if (session.getMyUser() != null) {
+            content.mRoomName = room.getName(session.getMyUserId());
+        }
+
+        content.mIsMultiAccounts = Matrix.getMXSessions(getApplicationContext()).size() > 1;
+        content.mBadgeCount = CommonActivityUtils.getBadgeCount();
+        content.mIsDefaultSound = bingRule.isDefaultNotificationSound(bingRule.notificationSound());
+
+        return content;
+    }
+
+    /**
+     * Build the message notification from its content.
+     * The avatar is decoded (and downloaded if it is not yet cached) so it must be called in a background thread.
+     * @param content the notification content
+     * @return the notification
+     */
+    private Notification buildMessageNotification(NotificationContent content) {
+        Bitmap largeBitmap = null;
+
+        if (!TextUtils.isEmpty(content.mAvatarUrl)) {
+            // the avatar is decoded once and downloaded without any view if it is not yet cached
+            largeBitmap = NotificationAvatarLoader.getNotificationIcon(getApplicationContext(), content.mSession, content.mAvatarUrl);
+        }
+
+        if (null == largeBitmap) {
+            largeBitmap = VectorUtils.getAvatar(getApplicationContext(), VectorUtils.getAvatarcolor(content.mSenderId), TextUtils.isEmpty(content.mFrom) ? content.mSenderId : content.mFrom, true);
+        }
+
+        Log.d(LOG_TAG, "buildMessageNotification : with sound " + content.mIsDefaultSound);
+
+        return NotificationUtils.buildMessageNotification(
+                EventStreamService.this,
+                content.mFrom, content.mMatrixId,
+                content.mCallId,
+                content.mIsMultiAccounts,
+                largeBitmap,
+                content.mBadgeCount,
+                content.mBadgeCount,
+                content.mBody,
+                content.mRoomId,
+                content.mRoomName,
+                content.mIsDefaultSound);
+    }
+
+    /**
+     * Start to adapt the sync delay of each session.
+     * It should be called when the application is suspended and the events stream is polled.
+     * @param minDelay the user-set sync delay (ms)
+     * @param timeout the user-set sync timeout (ms)
+     */
+    public void startAdaptiveSync(int minDelay, int timeout) {
+        if (null == mAdaptiveSyncScheduler) {
+            mAdaptiveSyncScheduler = new AdaptiveSyncScheduler(getApplicationContext());
+        }
+
+        if (null != mSessions) {
+            mAdaptiveSyncScheduler.start(mSessions, minDelay, timeout);
+        }
+    }
+
+    /**
+     * Stop to adapt the sync delays.
+     * It should be called when the application is resumed.
+     */
+    public void stopAdaptiveSync() {
+        if (null != mAdaptiveSyncScheduler) {
+            mAdaptiveSyncScheduler.stop();
+        }
+    }
+
+    /**
+     * Provide the adaptive sync metrics of an account.
+     * @param matrixId the account id
+     * @return the metrics description, null if the sync delay is not adapted.
+     */
+    public String getAdaptiveSyncMetrics(String matrixId) {
+        return (null != mAdaptiveSyncScheduler) ? mAdaptiveSyncScheduler.getMetrics(matrixId) : null;
+    }
+
+    /**
+     * Provide the notifications delivery counters (posts, suppressed re-posts and wakeups).
+     * @return the counters description, null if no notification has been delivered.
+     */
+    public String getNotificationDeliveryReport() {
+        return (null != mNotificationDeliveryPolicy) ? mNotificationDeliveryPolicy.getReport() : null;
+    }
+
     /**
      * Add some accounts to the current service.
      * @param matrixIds the account identifiers to add.
@@ -508,10 +745,14 @@ public class EventStreamService extends Service {
 
                 mSessions.add(session);
                 mMatrixIds.add(matrixId);
-                session.getDataHandler().addListener(mEventsListener);
+                SessionEventsDispatcher.getInstance(session).addListener(mEventsListener);
                 session.getDataHandler().getCallsManager().addListener(mCallsManagerListener);
                 // perform a full sync
                 session.startEventStream(null);
+
+                if (null != mAdaptiveSyncScheduler) {
+                    mAdaptiveSyncScheduler.addSession(session);
+                }
             }
         }
     }
@@ -529,9 +770,13 @@ public class EventStreamService extends Service {
                 if (null != session) {
 
                     session.stopEventStream();
-                    session.getDataHandler().removeListener(mEventsListener);
+                    SessionEventsDispatcher.getInstance(session).removeListener(mEventsListener);
                     session.getDataHandler().getCallsManager().removeListener(mCallsManagerListener);
 
+                    if (null != mAdaptiveSyncScheduler) {
+                        mAdaptiveSyncScheduler.removeSession(session);
+                    }
+
                     mSessions.remove(session);
                     mMatrixIds.remove(matrixId);
                 }
@@ -637,29 +882,17 @@ public class EventStreamService extends Service {
         mActiveEventStreamService = this;
 
         for(MXSession session : mSessions) {
-            session.getDataHandler().addListener(mEventsListener);
+            SessionEventsDispatcher.getInstance(session).addListener(mEventsListener);
             session.getDataHandler().getCallsManager().addListener(mCallsManagerListener);
-            final IMXStore store = session.getDataHandler().getStore();
-
-            // the store is ready (no data loading in progress...)
-            if (store.isReady()) {
-                startEventStream(session, store);
-            } else {
-                final MXSession fSession = session;
-                // wait that the store is ready  before starting the events listener
-                store.setMXStoreListener(new IMXStore.MXStoreListener() {
-                    @Override
-                    public void onStoreReady(String accountId) {
-                        startEventStream(fSession, store);
-                    }
+            final MXSession fSession = session;
 
-                    @Override
-                    public void onStoreCorrupted(String accountId, String description) {
-                        //Toast.makeText(getApplicationContext(), accountId + " : " + description, Toast.LENGTH_LONG).show();
-                        startEventStream(fSession, store);
-                    }
-                });
-            }
+            // start each events stream as soon as its own store is ready (no data loading in progress...)
+            StoresStartupManager.getInstance().runWhenStoreReady(session, new Runnable() {
+                @Override
+                public void run() {
+                    startEventStream(fSession, fSession.getDataHandler().getStore());
+                }
+            });
         }
 
         if (!Matrix.getInstance(getApplicationContext()).getSharedGcmRegistrationManager().useGCM()) {
@@ -683,11 +916,28 @@ public class EventStreamService extends Service {
             for(MXSession session : mSessions) {
                 if (session.isAlive()) {
                     session.stopEventStream();
-                    session.getDataHandler().removeListener(mEventsListener);
+                    SessionEventsDispatcher.getInstance(session).removeListener(mEventsListener);
                     session.getDataHandler().getCallsManager().removeListener(mCallsManagerListener);
                 }
             }
         }
+        stopAdaptiveSync();
+
+        if (null != mNotificationsThread) {
+            mNotificationsThread.quit();
+            mNotificationsThread = null;
+        }
+
+        // the notifications which are still waiting to be posted are obsolete
+        mNotificationGeneration++;
+
+        mPendingNotifiedEvents.clear();
+        mPendingNotifiedEventsCount = 0;
+
+        if (null != mNotificationDeliveryPolicy) {
+            Log.d(LOG_TAG, "## stop(): notifications delivery " + mNotificationDeliveryPolicy.getReport());
+        }
+
         mMatrixIds = null;
         mSessions = null;
         mState = StreamAction.STOP;
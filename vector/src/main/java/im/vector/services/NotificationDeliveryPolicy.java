@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import im.vector.R;
+
+/**
+ * Decide how the message notifications are delivered.
+ * The notifications posted during a quiet period are merged (only the latest one is displayed).
+ * A displayed notification is alerting (sound, vibration, screen wakeup) at most once per room per interval,
+ * the other updates are silent. The screen wakeups are also limited globally and follow the user wake policy.
+ * The suppressed wakeups and re-posts are counted.
+ */
+public class NotificationDeliveryPolicy {
+
+    // the wake policies
+    public static final String WAKE_POLICY_ALWAYS = "always";
+    public static final String WAKE_POLICY_RATE_LIMITED = "rate_limited";
+    public static final String WAKE_POLICY_NEVER = "never";
+
+    // the notifications posted less than this delay after the previous one are merged (ms)
+    private static final long QUIET_PERIOD_MS = 2 * 1000;
+    // a room notification alerts at most once per interval (ms)
+    private static final long ROOM_ALERT_INTERVAL_MS = 30 * 1000;
+    // max number of screen wakeups per window
+    private static final int MAX_WAKEUPS_PER_WINDOW = 3;
+    private static final long WAKEUPS_WINDOW_MS = 5 * 60 * 1000;
+
+    /**
+     * The delivery of a notification.
+     */
+    public static class Delivery {
+        // true if the notification plays its sound / vibration
+        public final boolean mAlert;
+        // true if the screen must be turned on
+        public final boolean mWakeScreen;
+
+        private Delivery(boolean alert, boolean wakeScreen) {
+            mAlert = alert;
+            mWakeScreen = wakeScreen;
+        }
+    }
+
+    private final Context mContext;
+
+    // the latest post timestamp
+    private long mLastPostTs = 0;
+    // the latest alert timestamp by room key
+    private final HashMap<String, Long> mLastAlertTsByRoom = new HashMap<>();
+    // the latest wakeups timestamps
+    private final LinkedList<Long> mWakeupsTs = new LinkedList<>();
+
+    // counters
+    private int mPostsCount = 0;
+    private int mMergedPostsCount = 0;
+    private int mSilentPostsCount = 0;
+    private int mWakeupsCount = 0;
+    private int mSuppressedWakeupsCount = 0;
+
+    public NotificationDeliveryPolicy(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @return the user wake policy.
+     */
+    public String getWakePolicy() {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String wakePolicy = preferences.getString(mContext.getString(R.string.settings_key_notification_wake_policy), WAKE_POLICY_RATE_LIMITED);
+
+        if (!TextUtils.equals(wakePolicy, WAKE_POLICY_ALWAYS) && !TextUtils.equals(wakePolicy, WAKE_POLICY_NEVER)) {
+            wakePolicy = WAKE_POLICY_RATE_LIMITED;
+        }
+
+        return wakePolicy;
+    }
+
+    /**
+     * Provide the delay before posting a notification, to merge the notifications of a quiet period.
+     * @return the delay in ms
+     */
+    public synchronized long getPostDelay() {
+        long elapsed = System.currentTimeMillis() - mLastPostTs;
+        return (elapsed < QUIET_PERIOD_MS) ? (QUIET_PERIOD_MS - elapsed) : 0;
+    }
+
+    /**
+     * A notification has not been posted because a newer one has been requested.
+     */
+    public synchronized void onPostMerged() {
+        mMergedPostsCount++;
+    }
+
+    /**
+     * A notification is going to be posted.
+     * @param roomKey the room key (account id + room id)
+     * @return the way to deliver it
+     */
+    public synchronized Delivery onPost(String roomKey) {
+        long now = System.currentTimeMillis();
+
+        mPostsCount++;
+        mLastPostTs = now;
+
+        // per room alert rate limit
+        Long lastAlertTs = mLastAlertTsByRoom.get(roomKey);
+        boolean alert = (null == lastAlertTs) || ((now - lastAlertTs) >= ROOM_ALERT_INTERVAL_MS);
+
+        if (alert) {
+            mLastAlertTsByRoom.put(roomKey, now);
+        } else {
+            mSilentPostsCount++;
+        }
+
+        // global wakeups rate limit
+        while (!mWakeupsTs.isEmpty() && ((now - mWakeupsTs.getFirst()) >= WAKEUPS_WINDOW_MS)) {
+            mWakeupsTs.removeFirst();
+        }
+
+        String wakePolicy = getWakePolicy();
+        boolean wakeScreen;
+
+        if (TextUtils.equals(wakePolicy, WAKE_POLICY_NEVER)) {
+            wakeScreen = false;
+        } else if (TextUtils.equals(wakePolicy, WAKE_POLICY_ALWAYS)) {
+            wakeScreen = true;
+        } else {
+            wakeScreen = alert && (mWakeupsTs.size() < MAX_WAKEUPS_PER_WINDOW);
+        }
+
+        if (wakeScreen) {
+            mWakeupsTs.add(now);
+            mWakeupsCount++;
+        } else {
+            mSuppressedWakeupsCount++;
+        }
+
+        return new Delivery(alert, wakeScreen);
+    }
+
+    /**
+     * Forget the rooms alerts (e.g. when the notification is cleared).
+     */
+    public synchronized void reset() {
+        mLastAlertTsByRoom.clear();
+    }
+
+    /**
+     * @return the delivery counters description.
+     */
+    public synchronized String getReport() {
+        return mPostsCount + " posts, " + mMergedPostsCount + " re-posts suppressed, " + mSilentPostsCount + " silent updates, " + mWakeupsCount + " wakeups, " + mSuppressedWakeupsCount + " wakeups suppressed (wake policy " + getWakePolicy() + ")";
+    }
+}
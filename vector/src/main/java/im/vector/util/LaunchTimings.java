@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.util;
+
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import im.vector.StartupTasksScheduler;
+
+/**
+ * Measure the application launches, from VectorApp.onCreate (cold launch) or SplashActivity.onCreate (warm launch)
+ * to the first frame of VectorHomeActivity.
+ * Each launch is split in named spans. The results are logged and appended as a JSON line to the launch timings file,
+ * so they can be compared run to run.
+ */
+public class LaunchTimings {
+    private static final String LOG_TAG = "LaunchTimings";
+
+    // the launch timings file, in the logs directory
+    private static final String LAUNCH_TIMINGS_FILE_NAME = "launch_timings.json";
+
+    // the spans
+    public static final String SPAN_APPLICATION_CREATE = "application_create";
+    public static final String SPAN_STORES_LOAD = "stores_load";
+    public static final String SPAN_INITIAL_SYNC = "initial_sync";
+    public static final String SPAN_PUSHER_REGISTRATION = "pusher_registration";
+    public static final String SPAN_SPLASH = "splash";
+    public static final String SPAN_HOME_FIRST_FRAME = "home_first_frame";
+
+    // the logs directory
+    private static File mLogDirectory = null;
+
+    // true when a launch is measured
+    private static boolean mIsLaunchInProgress = false;
+    // true for a cold launch (i.e the process has been created)
+    private static boolean mIsColdLaunch = false;
+    // the launch start timestamp
+    private static long mLaunchStartTs = 0;
+
+    // the spans start and end timestamps by name
+    private static final LinkedHashMap<String, long[]> mSpans = new LinkedHashMap<>();
+
+    // the latest completed launch description
+    private static String mLastResult = null;
+
+    /**
+     * Set the directory of the launch timings file.
+     * @param logDirectory the logs directory
+     */
+    public static void setLogDirectory(File logDirectory) {
+        mLogDirectory = logDirectory;
+    }
+
+    /**
+     * The application is created : a cold launch starts.
+     */
+    public static synchronized void onApplicationCreate() {
+        mSpans.clear();
+        mIsLaunchInProgress = true;
+        mIsColdLaunch = true;
+        mLaunchStartTs = System.currentTimeMillis();
+    }
+
+    /**
+     * The splash screen is created : a warm launch starts if no cold launch is in progress.
+     */
+    public static synchronized void onSplashCreate() {
+        if (!mIsLaunchInProgress) {
+            mSpans.clear();
+            mIsLaunchInProgress = true;
+            mIsColdLaunch = false;
+            mLaunchStartTs = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Start a span of the current launch.
+     * @param name the span name
+     */
+    public static synchronized void startSpan(String name) {
+        if (mIsLaunchInProgress && !mSpans.containsKey(name)) {
+            mSpans.put(name, new long[]{System.currentTimeMillis(), -1});
+        }
+    }
+
+    /**
+     * End a span of the current launch.
+     * @param name the span name
+     */
+    public static synchronized void endSpan(String name) {
+        long[] span = mSpans.get(name);
+
+        if (mIsLaunchInProgress && (null != span) && (span[1] < 0)) {
+            span[1] = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The home screen has been drawn : the launch is complete.
+     * Nothing is done if no launch is in progress (e.g the home screen is recreated).
+     * This method must be called from the UI thread.
+     */
+    public static void onHomeFirstFrame() {
+        final String result;
+
+        synchronized (LaunchTimings.class) {
+            if (!mIsLaunchInProgress) {
+                return;
+            }
+
+            endSpan(SPAN_HOME_FIRST_FRAME);
+            mIsLaunchInProgress = false;
+
+            result = buildResult();
+            mLastResult = result;
+        }
+
+        if (null == result) {
+            return;
+        }
+
+        Log.d(LOG_TAG, "## onHomeFirstFrame() : " + result);
+
+        StartupTasksScheduler.getInstance().scheduleInBackground("storeLaunchTimings", StartupTasksScheduler.PRIORITY_LOW, new Runnable() {
+            @Override
+            public void run() {
+                storeResult(result);
+            }
+        });
+    }
+
+    /**
+     * @return the latest completed launch description as a JSON string, null if there is none.
+     */
+    public static synchronized String getLastResult() {
+        return mLastResult;
+    }
+
+    /**
+     * @return the current launch description as a JSON string, null on failure.
+     */
+    private static String buildResult() {
+        try {
+            long endTs = System.currentTimeMillis();
+
+            JSONObject spans = new JSONObject();
+
+            for (Map.Entry<String, long[]> entry : mSpans.entrySet()) {
+                long[] span = entry.getValue();
+
+                // ignore the uncompleted spans
+                if (span[1] >= 0) {
+                    JSONObject spanJson = new JSONObject();
+                    spanJson.put("start_ms", span[0] - mLaunchStartTs);
+                    spanJson.put("duration_ms", span[1] - span[0]);
+                    spans.put(entry.getKey(), spanJson);
+                }
+            }
+
+            JSONObject result = new JSONObject();
+            result.put("type", mIsColdLaunch ? "cold" : "warm");
+            result.put("timestamp", mLaunchStartTs);
+            result.put("total_ms", endTs - mLaunchStartTs);
+            result.put("spans", spans);
+            result.put("startup_tasks", new JSONObject(StartupTasksScheduler.getInstance().getTimings()));
+
+            return result.toString();
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## buildResult() failed " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Append a launch description to the launch timings file.
+     * @param result the launch description
+     */
+    private static void storeResult(String result) {
+        if (null == mLogDirectory) {
+            return;
+        }
+
+        FileOutputStream stream = null;
+
+        try {
+            if (!mLogDirectory.exists()) {
+                mLogDirectory.mkdirs();
+            }
+
+            stream = new FileOutputStream(new File(mLogDirectory, LAUNCH_TIMINGS_FILE_NAME), true);
+            stream.write((result + "\n").getBytes());
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## storeResult() failed " + e.getMessage());
+        } finally {
+            try {
+                if (null != stream) {
+                    stream.close();
+                }
+            } catch (Exception e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import im.vector.R;
+
+/**
+ * Optional profiler of the events listeners.
+ * It records the calls count and the time spent per callback type per listener class.
+ * The listeners calls are reported by the SessionEventsDispatcher, including the room listeners
+ * (see SessionEventsDispatcher.addRoomListener).
+ * The profiling is disabled by default and can be enabled from the settings screen.
+ */
+public class ListenersProfiler {
+
+    private static ListenersProfiler instance = null;
+
+    /**
+     * The statistics of a callback type of a listener class.
+     */
+    private static class CallStats {
+        public final String mName;
+        public int mCallsCount = 0;
+        public long mTotalDurationNs = 0;
+        public long mMaxDurationNs = 0;
+
+        public CallStats(String name) {
+            mName = name;
+        }
+    }
+
+    // true when the listeners are profiled
+    private volatile boolean mIsEnabled = false;
+
+    // the statistics by "listener class.callback name"
+    private final HashMap<String, CallStats> mStatsByCall = new HashMap<>();
+
+    // the profiling start timestamp
+    private long mStartTs = System.currentTimeMillis();
+
+    private ListenersProfiler() {
+    }
+
+    public static synchronized ListenersProfiler getInstance() {
+        if (instance == null) {
+            instance = new ListenersProfiler();
+        }
+        return instance;
+    }
+
+    /**
+     * Restore the profiling state from the preferences.
+     * @param context the context
+     */
+    public void init(Context context) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        mIsEnabled = preferences.getBoolean(context.getString(R.string.settings_key_profile_listeners), false);
+    }
+
+    /**
+     * @return true if the listeners are profiled.
+     */
+    public boolean isEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * Enable or disable the listeners profiling.
+     * The statistics are reset when the profiling is enabled.
+     * @param context the context
+     * @param isEnabled true to enable the profiling
+     */
+    public void setEnabled(Context context, boolean isEnabled) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putBoolean(context.getString(R.string.settings_key_profile_listeners), isEnabled);
+        editor.commit();
+
+        if (isEnabled && !mIsEnabled) {
+            reset();
+        }
+
+        mIsEnabled = isEnabled;
+    }
+
+    /**
+     * Record a listener call.
+     * @param listenerClassName the listener class name
+     * @param callName the callback name
+     * @param durationNs the call duration in ns
+     */
+    public synchronized void record(String listenerClassName, String callName, long durationNs) {
+        if (!mIsEnabled) {
+            return;
+        }
+
+        String key = listenerClassName + "." + callName;
+        CallStats stats = mStatsByCall.get(key);
+
+        if (null == stats) {
+            stats = new CallStats(key);
+            mStatsByCall.put(key, stats);
+        }
+
+        stats.mCallsCount++;
+        stats.mTotalDurationNs += durationNs;
+        stats.mMaxDurationNs = Math.max(stats.mMaxDurationNs, durationNs);
+    }
+
+    /**
+     * Clear the statistics.
+     */
+    public synchronized void reset() {
+        mStatsByCall.clear();
+        mStartTs = System.currentTimeMillis();
+    }
+
+    /**
+     * Provide a text dump of the statistics, sorted by total time spent.
+     * @return the dump, null if there is no statistic.
+     */
+    public synchronized String getDump() {
+        if (mStatsByCall.isEmpty()) {
+            return null;
+        }
+
+        ArrayList<CallStats> statsList = new ArrayList<>(mStatsByCall.values());
+
+        Collections.sort(statsList, new Comparator<CallStats>() {
+            @Override
+            public int compare(CallStats stats1, CallStats stats2) {
+                return (stats1.mTotalDurationNs > stats2.mTotalDurationNs) ? -1 : ((stats1.mTotalDurationNs == stats2.mTotalDurationNs) ? 0 : 1);
+            }
+        });
+
+        String dump = "Listeners profile over " + ((System.currentTimeMillis() - mStartTs) / 1000L) + " s\n\n";
+
+        for (CallStats stats : statsList) {
+            dump += stats.mName + "\n";
+            dump += "   " + stats.mCallsCount + " calls, total " + toMs(stats.mTotalDurationNs) + " ms, avg " + toMs(stats.mTotalDurationNs / stats.mCallsCount) + " ms, max " + toMs(stats.mMaxDurationNs) + " ms\n";
+        }
+
+        return dump;
+    }
+
+    /**
+     * Convert a ns duration into a ms string with 2 decimals.
+     * @param durationNs the duration in ns
+     * @return the ms string
+     */
+    private static String toMs(long durationNs) {
+        return String.format("%.2f", durationNs / 1000000.0f);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 OpenMarket Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.gson.JsonElement;
+
+import org.matrix.androidsdk.MXSession;
+import org.matrix.androidsdk.db.MXMediasCache;
+
+import java.io.File;
+import java.util.HashSet;
+
+import im.vector.R;
+
+/**
+ * Provide the avatars displayed in the message notifications.
+ * The avatars are decoded once, squared and resized to the notification large icon size (64dp).
+ * They are cached by avatar url.
+ */
+public class NotificationAvatarLoader {
+    private static final String LOG_TAG = "NotifAvatarLoader";
+
+    // the notification large icon size in dp
+    private static final int NOTIFICATION_ICON_SIZE_DP = 64;
+
+    // the mime type used to download the avatars which are not yet in the thumbnails cache
+    private static final String AVATAR_MIME_TYPE = "image/jpeg";
+
+    // the decoded icons by avatar url
+    private static final LruCache<String, Bitmap> mIconByAvatarUrl = new LruCache<String, Bitmap>(2 * 1024 * 1024) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    };
+
+    // the avatar urls which are currently downloaded
+    private static final HashSet<String> mPendingDownloads = new HashSet<>();
+
+    /**
+     * Provide the notification icon of an avatar url.
+     * The icon is decoded from the medias cache if it is not yet cached.
+     * If the avatar is not yet downloaded, its download is triggered
+     * and null is returned.
+     * This method should not be called from the UI thread.
+     * @param context the context
+     * @param session the session
+     * @param avatarUrl the avatar url
+     * @return the notification icon, null if it is not yet available.
+     */
+    public static Bitmap getNotificationIcon(Context context, MXSession session, String avatarUrl) {
+        // sanity checks
+        if ((null == context) || (null == session) || TextUtils.isEmpty(avatarUrl)) {
+            return null;
+        }
+
+        Bitmap icon = mIconByAvatarUrl.get(avatarUrl);
+
+        if (null != icon) {
+            return icon;
+        }
+
+        int iconSize = (int) (NOTIFICATION_ICON_SIZE_DP * context.getResources().getDisplayMetrics().density);
+        int thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.profile_avatar_size);
+
+        MXMediasCache mediasCache = session.getMediasCache();
+
+        // the thumbnail could have been downloaded by the UI or by a previous notification
+        File file = mediasCache.thumbnailCacheFile(avatarUrl, thumbnailSize);
+
+        if (null == file) {
+            file = mediasCache.mediaCacheFile(avatarUrl, thumbnailSize, thumbnailSize, AVATAR_MIME_TYPE);
+        }
+
+        if (null != file) {
+            icon = decodeIcon(file, iconSize);
+
+            if (null != icon) {
+                mIconByAvatarUrl.put(avatarUrl, icon);
+            }
+        } else {
+            downloadAvatar(context, session, avatarUrl, thumbnailSize);
+        }
+
+        return icon;
+    }
+
+    /**
+     * Clear the decoded icons.
+     */
+    public static void clearCache() {
+        mIconByAvatarUrl.evictAll();
+    }
+
+    /**
+     * Trigger the avatar download without any view.
+     * @param context the context
+     * @param session the session
+     * @param avatarUrl the avatar url
+     * @param thumbnailSize the thumbnail size
+     */
+    private static void downloadAvatar(Context context, MXSession session, final String avatarUrl, int thumbnailSize) {
+        synchronized (mPendingDownloads) {
+            if (mPendingDownloads.contains(avatarUrl)) {
+                return;
+            }
+
+            mPendingDownloads.add(avatarUrl);
+        }
+
+        String downloadId = null;
+
+        try {
+            downloadId = session.getMediasCache().loadBitmap(context, session.getHomeserverConfig(), avatarUrl, thumbnailSize, thumbnailSize, AVATAR_MIME_TYPE);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## downloadAvatar() failed " + e.getMessage());
+        }
+
+        // the download is not started (the file is already cached or the url is invalid)
+        if (null == downloadId) {
+            synchronized (mPendingDownloads) {
+                mPendingDownloads.remove(avatarUrl);
+            }
+            return;
+        }
+
+        session.getMediasCache().addDownloadListener(downloadId, new MXMediasCache.DownloadCallback() {
+            @Override
+            public void onDownloadStart(String downloadId) {
+            }
+
+            @Override
+            public void onError(String downloadId, JsonElement jsonElement) {
+                Log.e(LOG_TAG, "## downloadAvatar() failed for " + avatarUrl);
+
+                synchronized (mPendingDownloads) {
+                    mPendingDownloads.remove(avatarUrl);
+                }
+            }
+
+            @Override
+            public void onDownloadProgress(String downloadId, int percentageProgress) {
+            }
+
+            @Override
+            public void onDownloadComplete(String downloadId) {
+                synchronized (mPendingDownloads) {
+                    mPendingDownloads.remove(avatarUrl);
+                }
+            }
+        });
+    }
+
+    /**
+     * Decode a square icon from an image file.
+     * @param file the image file
+     * @param iconSize the icon size in pixels
+     * @return the icon, null if the file cannot be decoded.
+     */
+    private static Bitmap decodeIcon(File file, int iconSize) {
+        Bitmap icon = null;
+
+        try {
+            // retrieve the image size to decode a subsampled image
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getPath(), options);
+
+            int minSide = Math.min(options.outWidth, options.outHeight);
+
+            options.inJustDecodeBounds = false;
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inSampleSize = 1;
+
+            while ((minSide / (options.inSampleSize * 2)) >= iconSize) {
+                options.inSampleSize *= 2;
+            }
+
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+
+            if (null != bitmap) {
+                int width = bitmap.getWidth();
+                int height = bitmap.getHeight();
+                int side = Math.min(width, height);
+
+                Bitmap squareBitmap = bitmap;
+
+                if (width != height) {
+                    squareBitmap = Bitmap.createBitmap(bitmap, (width - side) / 2, (height - side) / 2, side, side);
+                }
+
+                if (side != iconSize) {
+                    icon = Bitmap.createScaledBitmap(squareBitmap, iconSize, iconSize, true);
+                } else {
+                    icon = squareBitmap;
+                }
+            }
+        } catch (OutOfMemoryError oom) {
+            Log.e(LOG_TAG, "## decodeIcon() : out of memory");
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "## decodeIcon() failed " + e.getMessage());
+        }
+
+        return icon;
+    }
+
+    private NotificationAvatarLoader() {}
+}
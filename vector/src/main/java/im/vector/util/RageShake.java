@@ -49,6 +49,10 @@ import android.view.View;
 import org.matrix.androidsdk.MXSession;
 import im.vector.VectorApp;
 import im.vector.Matrix;
+import im.vector.ReadMarkerScheduler;
+import im.vector.RoomDisplayNamesCache;
+import im.vector.SessionEventsDispatcher;
+import im.vector.services.EventStreamService;
 import org.matrix.androidsdk.data.MyUser;
 
 /**
@@ -143,6 +147,23 @@ public class RageShake implements SensorEventListener {
                 message += "Phone : " + Build.MODEL.trim() + " (" + Build.VERSION.INCREMENTAL + " " + Build.VERSION.RELEASE + " " + Build.VERSION.CODENAME + ")\n";
                 message += "Vector version: " + Matrix.getInstance(mContext).getVersion(true) + "\n";
                 message += "SDK version:  " + Matrix.getInstance(mContext).getDefaultSession().getVersion(true) + "\n";
+
+                if ((null != EventStreamService.getInstance()) && (null != EventStreamService.getInstance().getNotificationDeliveryReport())) {
+                    message += "Notifications: " + EventStreamService.getInstance().getNotificationDeliveryReport() + "\n";
+                }
+
+                for (MXSession session : sessions) {
+                    message += "Room names cache (" + session.getMyUserId() + "): " + RoomDisplayNamesCache.getInstance(session).getStats() + "\n";
+                    message += "Events dispatcher (" + session.getMyUserId() + "): " + SessionEventsDispatcher.getInstance(session).getReport() + "\n";
+
+                    String adaptiveSyncMetrics = (null != EventStreamService.getInstance()) ? EventStreamService.getInstance().getAdaptiveSyncMetrics(session.getMyUserId()) : null;
+
+                    if (null != adaptiveSyncMetrics) {
+                        message += "Adaptive sync: " + adaptiveSyncMetrics + "\n";
+                    }
+                }
+
+                message += "Read receipts: " + ReadMarkerScheduler.getInstance().getRequestsCount() + " requests, " + ReadMarkerScheduler.getInstance().getSentCount() + " sent\n";
                 message += "\n";
                 message += "---------------------------------------------------------------------\n";
                 message += "Memory statuses \n";
@@ -209,6 +230,19 @@ public class RageShake implements SensorEventListener {
                         attachmentUris.add(Uri.fromFile(debugLogFile));
                     }
 
+                    // add the listeners profile
+                    String listenersProfile = ListenersProfiler.getInstance().isEnabled() ? ListenersProfiler.getInstance().getDump() : null;
+
+                    if (null != listenersProfile) {
+                        File listenersProfileFile = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS), "listeners-profile-" + new Date() + ".txt");
+                        FileOutputStream fos = new FileOutputStream(listenersProfileFile);
+                        fos.write(listenersProfile.getBytes());
+                        fos.flush();
+                        fos.close();
+
+                        attachmentUris.add(Uri.fromFile(listenersProfileFile));
+                    }
+
                     // add the stored logs
                     ArrayList<File> logsList = LogUtilities.getLogsFileList();
 
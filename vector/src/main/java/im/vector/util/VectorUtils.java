@@ -372,7 +372,21 @@ public class VectorUtils {
      */
     public static void loadRoomAvatar(Context context, MXSession session, ImageView imageView, Room room) {
         if (null != room) {
-            VectorUtils.loadUserAvatar(context, session, imageView, room.getAvatarUrl(), room.getRoomId(), VectorUtils.getRoomDisplayname(context, session, room));
+            loadRoomAvatar(context, session, imageView, room, VectorUtils.getRoomDisplayname(context, session, room));
+        }
+    }
+
+    /**
+     * Set the room avatar in an imageview.
+     * @param context the context
+     * @param session the session
+     * @param imageView the image view
+     * @param room the room
+     * @param displayName the room displayname
+     */
+    public static void loadRoomAvatar(Context context, MXSession session, ImageView imageView, Room room, String displayName) {
+        if (null != room) {
+            VectorUtils.loadUserAvatar(context, session, imageView, room.getAvatarUrl(), room.getRoomId(), displayName);
         }
     }
 
@@ -0,0 +1,70 @@
+/* 
+ * Copyright 2016 OpenMarket Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.vector.view;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+
+/**
+ * Defines a custom recycler view displaying the recents.
+ * It tracks the touch moves which pull the list down when it is scrolled to the top.
+ */
+public class RecentsRecyclerView extends RecyclerView {
+
+    public interface OverScrollEventsListener {
+        /**
+         * Called when the list is pulled down while it is scrolled to the top.
+         */
+        void onOverScrollUp();
+    }
+
+    // the latest touch Y position
+    private float mLatestTouchY = -1;
+
+    // the over scroll events listener
+    public OverScrollEventsListener mOverScrollEventsListener = null;
+
+    // default constructor
+    public RecentsRecyclerView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        final float y = event.getY();
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mLatestTouchY = y;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                // the rows are not scrolled anymore
+                if ((y > mLatestTouchY) && !canScrollVertically(-1) && (null != mOverScrollEventsListener)) {
+                    mOverScrollEventsListener.onOverScrollUp();
+                }
+
+                mLatestTouchY = y;
+                break;
+            default:
+                break;
+        }
+
+        return super.dispatchTouchEvent(event);
+    }
+}